@@ -0,0 +1,277 @@
+package com.rits.cloning.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * generates a reflection-free {@code com.rits.cloning.IGeneratedCloner} for every class annotated with
+ * {@code com.rits.cloning.GenerateCloner} or listed in the {@code cloning.generate} option (comma separated fully
+ * qualified class names). The generated cloners are listed in
+ * {@code META-INF/services/com.rits.cloning.IGeneratedCloner} so that {@code Cloner} registers them automatically.
+ * <p>
+ * A cloner is generated as {@code <Outer>_<Inner>_DeepCloner} in the package of the cloned class. It instantiates the
+ * class via its no-arg constructor, which runs for every clone (unlike reflective cloning which skips constructors),
+ * and copies every instance field, including inherited ones, directly. Fields which aren't accessible from the
+ * package or are final are only copied via their getter and setter if the {@code cloning.accessors=true} option is
+ * given, those accessors then run for every clone too. Classes where this isn't possible, or which hide a superclass
+ * field with a field of the same name, are reported as compilation errors.
+ *
+ * @author kostas.kougios
+ */
+@SupportedOptions({GenerateClonerProcessor.CLASSES_OPTION, GenerateClonerProcessor.ACCESSORS_OPTION})
+public class GenerateClonerProcessor extends AbstractProcessor {
+	static final String ANNOTATION = "com.rits.cloning.GenerateCloner";
+	static final String CLASSES_OPTION = "cloning.generate";
+	static final String ACCESSORS_OPTION = "cloning.accessors";
+	static final String SERVICE = "META-INF/services/com.rits.cloning.IGeneratedCloner";
+
+	private final Set<String> configured = new LinkedHashSet<>();
+	private final Set<String> generated = new TreeSet<>();
+	private boolean configuredProcessed;
+	private boolean accessors;
+
+	private Elements elements;
+	private Types types;
+	private Messager messager;
+
+	@Override
+	public synchronized void init(ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		elements = processingEnv.getElementUtils();
+		types = processingEnv.getTypeUtils();
+		messager = processingEnv.getMessager();
+		accessors = Boolean.parseBoolean(processingEnv.getOptions().get(ACCESSORS_OPTION));
+		String classes = processingEnv.getOptions().get(CLASSES_OPTION);
+		if (classes != null) {
+			for (String c : classes.split(",")) {
+				if (!c.trim().isEmpty()) configured.add(c.trim());
+			}
+		}
+	}
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		// configured classes aren't annotated, so the processor has to run for every compilation
+		return Collections.singleton(configured.isEmpty() ? ANNOTATION : "*");
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			writeServices();
+			return false;
+		}
+		TypeElement annotation = elements.getTypeElement(ANNOTATION);
+		if (annotation != null) {
+			for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (e.getKind() == ElementKind.CLASS) {
+					generate((TypeElement) e);
+				} else {
+					messager.printMessage(Diagnostic.Kind.ERROR, "@GenerateCloner is only supported on classes", e);
+				}
+			}
+		}
+		if (!configuredProcessed) {
+			configuredProcessed = true;
+			for (String c : configured) {
+				TypeElement type = elements.getTypeElement(c);
+				if (type == null) {
+					messager.printMessage(Diagnostic.Kind.ERROR, CLASSES_OPTION + ": class not found: " + c);
+				} else {
+					generate(type);
+				}
+			}
+		}
+		return false;
+	}
+
+	private void generate(TypeElement type) {
+		PackageElement pkg = elements.getPackageOf(type);
+		String clonerName = clonerSimpleName(type);
+		String clonerBinaryName = pkg.isUnnamed() ? clonerName : pkg.getQualifiedName() + "." + clonerName;
+		if (generated.contains(clonerBinaryName)) return;
+
+		if (!isInstantiable(type, pkg)) {
+			error(type, "it needs to be a non-abstract, static and accessible class with an accessible no-arg constructor");
+			return;
+		}
+
+		List<String> statements = new ArrayList<>();
+		String typeName = types.erasure(type.asType()).toString();
+		Set<String> names = new HashSet<>();
+		TypeElement t = type;
+		while (t != null && !t.getQualifiedName().contentEquals("java.lang.Object")) {
+			for (VariableElement f : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+				if (f.getModifiers().contains(Modifier.STATIC)) continue;
+				if (!names.add(f.getSimpleName().toString())) {
+					// the generated field accesses and accessors would resolve to the subclass field
+					error(type, "field " + t.getSimpleName() + "." + f.getSimpleName() + " is hidden by a field of a subclass");
+					return;
+				}
+				String statement = copyStatement(type, t, f, pkg);
+				if (statement == null) {
+					error(type, "field " + t.getSimpleName() + "." + f.getSimpleName() + " is not accessible, make it non-private and non-final"
+							+ (accessors ? " or add a getter and setter" : " or enable " + ACCESSORS_OPTION + " and add a getter and setter"));
+					return;
+				}
+				statements.add(statement);
+			}
+			TypeMirror superclass = t.getSuperclass();
+			t = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+		}
+
+		try {
+			JavaFileObject file = processingEnv.getFiler().createSourceFile(clonerBinaryName, type);
+			try (Writer w = file.openWriter()) {
+				if (!pkg.isUnnamed()) {
+					w.write("package " + pkg.getQualifiedName() + ";\n\n");
+				}
+				w.write("/**\n * deep cloner for {@link " + typeName + "}, generated by the cloning annotation processor.\n */\n");
+				w.write("@javax.annotation.processing.Generated(\"" + GenerateClonerProcessor.class.getName() + "\")\n");
+				w.write("public final class " + clonerName + " implements com.rits.cloning.IGeneratedCloner {\n");
+				w.write("\t@Override\n");
+				w.write("\tpublic Class<?> getClonedClass() {\n");
+				w.write("\t\treturn " + typeName + ".class;\n");
+				w.write("\t}\n\n");
+				w.write("\t@Override\n");
+				w.write("\t@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+				w.write("\tpublic Object clone(final Object t, final com.rits.cloning.IDeepCloner cloner, final java.util.Map<Object, Object> clones) {\n");
+				w.write("\t\tfinal " + typeName + " o = (" + typeName + ") t;\n");
+				w.write("\t\tfinal " + typeName + " c = new " + typeName + "();\n");
+				w.write("\t\tif (clones != null) {\n");
+				w.write("\t\t\tclones.put(o, c);\n");
+				w.write("\t\t}\n");
+				for (String statement : statements) {
+					w.write("\t\t" + statement + "\n");
+				}
+				w.write("\t\treturn c;\n");
+				w.write("\t}\n");
+				w.write("}\n");
+			}
+			generated.add(clonerBinaryName);
+		} catch (IOException e) {
+			error(type, e.toString());
+		}
+	}
+
+	/**
+	 * @return the statement copying field f declared in t from o to c, or null if the field isn't accessible and
+	 * either the accessors aren't enabled or the field has no accessible getter and setter
+	 */
+	private String copyStatement(TypeElement type, TypeElement t, VariableElement f, PackageElement pkg) {
+		String name = f.getSimpleName().toString();
+		boolean primitive = f.asType().getKind().isPrimitive();
+		if (isAccessible(f, pkg) && !f.getModifiers().contains(Modifier.FINAL)) {
+			String src = t == type ? "o" : "((" + types.erasure(t.asType()) + ") o)";
+			String dst = t == type ? "c" : "((" + types.erasure(t.asType()) + ") c)";
+			return dst + "." + name + " = " + value(src + "." + name, primitive) + ";";
+		}
+		if (!accessors) return null;
+		ExecutableElement getter = null;
+		ExecutableElement setter = null;
+		String property = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		for (ExecutableElement m : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+			if (m.getModifiers().contains(Modifier.STATIC) || !isAccessible(m, pkg)) continue;
+			String n = m.getSimpleName().toString();
+			if (m.getParameters().isEmpty() && (n.equals("get" + property) || n.equals("is" + property))
+					&& types.isSameType(m.getReturnType(), f.asType())) {
+				getter = m;
+			} else if (m.getParameters().size() == 1 && n.equals("set" + property)
+					&& types.isSameType(m.getParameters().get(0).asType(), f.asType())) {
+				setter = m;
+			}
+		}
+		if (getter == null || setter == null) return null;
+		return "c." + setter.getSimpleName() + "(" + value("o." + getter.getSimpleName() + "()", primitive) + ");";
+	}
+
+	private static String value(String read, boolean primitive) {
+		return primitive ? read : "clones == null ? " + read + " : cloner.deepClone(" + read + ", clones)";
+	}
+
+	private boolean isInstantiable(TypeElement type, PackageElement pkg) {
+		if (type.getModifiers().contains(Modifier.ABSTRACT)) return false;
+		for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+			TypeElement te = (TypeElement) e;
+			if (te.getModifiers().contains(Modifier.PRIVATE)) return false;
+			if (te.getNestingKind() == NestingKind.MEMBER && !te.getModifiers().contains(Modifier.STATIC)) return false;
+			if (te.getNestingKind() == NestingKind.LOCAL || te.getNestingKind() == NestingKind.ANONYMOUS) return false;
+		}
+		for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (c.getParameters().isEmpty() && isAccessible(c, pkg)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the member can be accessed from a class (not a subclass) in pkg
+	 */
+	private boolean isAccessible(Element member, PackageElement pkg) {
+		Set<Modifier> mods = member.getModifiers();
+		if (mods.contains(Modifier.PRIVATE)) return false;
+		if (mods.contains(Modifier.PUBLIC)) return true;
+		return elements.getPackageOf(member).equals(pkg);
+	}
+
+	private static String clonerSimpleName(TypeElement type) {
+		StringBuilder sb = new StringBuilder();
+		for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+			sb.insert(0, sb.length() == 0 ? e.getSimpleName() : e.getSimpleName() + "_");
+		}
+		return sb.append("_DeepCloner").toString();
+	}
+
+	private void writeServices() {
+		if (generated.isEmpty()) return;
+		try {
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE);
+			try (Writer w = file.openWriter()) {
+				for (String c : generated) {
+					w.write(c + "\n");
+				}
+			}
+		} catch (IOException e) {
+			messager.printMessage(Diagnostic.Kind.ERROR, "Can't write " + SERVICE + ": " + e);
+		}
+	}
+
+	private void error(TypeElement type, String reason) {
+		messager.printMessage(Diagnostic.Kind.ERROR, "Can't generate a cloner for " + type.getQualifiedName() + ": " + reason, type);
+	}
+}
@@ -0,0 +1,259 @@
+package com.rits.cloning.processor;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.ICloningStrategy;
+import com.rits.cloning.IDumpCloned;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestGenerateClonerProcessor {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String BASE = "package com.x;\n"
+			+ "public class Base {\n"
+			+ "	protected int id;\n"
+			+ "	private String name;\n"
+			+ "	public String getName() { return name; }\n"
+			+ "	public void setName(String name) { this.name = name; }\n"
+			+ "}\n";
+
+	private static final String DTO = "package com.x;\n"
+			+ "@com.rits.cloning.GenerateCloner\n"
+			+ "public class Dto extends Base {\n"
+			+ "	public static int constructed;\n"
+			+ "	long version;\n"
+			+ "	java.util.List<Dto> children = new java.util.ArrayList<>();\n"
+			+ "	Dto parent;\n"
+			+ "	transient String cache = \"cache\";\n"
+			+ "	@Deprecated String legacy = \"legacy\";\n"
+			+ "	public Dto() { constructed++; }\n"
+			+ "	public static class Item { int[] values; }\n"
+			+ "}\n";
+
+	private static final List<String> ACCESSORS = List.of("-A" + GenerateClonerProcessor.ACCESSORS_OPTION + "=true");
+
+	private static class Source extends SimpleJavaFileObject {
+		private final String code;
+
+		Source(String name, String code) {
+			super(URI.create("string:///" + name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			this.code = code;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return code;
+		}
+	}
+
+	private File compile(DiagnosticCollector<JavaFileObject> diagnostics, List<String> options, Source... sources) throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		File out = folder.newFolder();
+		try (StandardJavaFileManager fm = compiler.getStandardFileManager(diagnostics, null, null)) {
+			fm.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(out));
+			fm.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(out));
+			List<File> cp = new ArrayList<>();
+			for (String p : System.getProperty("java.class.path").split(File.pathSeparator)) {
+				cp.add(new File(p));
+			}
+			fm.setLocation(StandardLocation.CLASS_PATH, cp);
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fm, diagnostics, options, null, List.of(sources));
+			task.setProcessors(Collections.singletonList(new GenerateClonerProcessor()));
+			if (!task.call()) return null;
+		}
+		return out;
+	}
+
+	@Test
+	public void generatesAndRegistersCloner() throws Exception {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		File out = compile(diagnostics, ACCESSORS, new Source("com.x.Base", BASE), new Source("com.x.Dto", DTO));
+		assertNotNull(diagnostics.getDiagnostics().toString(), out);
+		assertTrue(new File(out, "com/x/Dto_DeepCloner.java").exists());
+		assertEquals("com.x.Dto_DeepCloner", Files.readString(new File(out, GenerateClonerProcessor.SERVICE).toPath()).trim());
+
+		ClassLoader previous = Thread.currentThread().getContextClassLoader();
+		try (URLClassLoader cl = new URLClassLoader(new URL[]{out.toURI().toURL()}, getClass().getClassLoader())) {
+			Thread.currentThread().setContextClassLoader(cl);
+			Cloner cloner = new Cloner();
+			Class<?> dtoClass = cl.loadClass("com.x.Dto");
+			Object dto = dtoClass.getConstructor().newInstance();
+			Object child = dtoClass.getConstructor().newInstance();
+			dtoClass.getMethod("setName", String.class).invoke(dto, "root");
+			Field parent = dtoClass.getDeclaredField("parent");
+			parent.setAccessible(true);
+			parent.set(child, dto);
+			Field childrenField = dtoClass.getDeclaredField("children");
+			childrenField.setAccessible(true);
+			@SuppressWarnings("unchecked") List<Object> children = (List<Object>) childrenField.get(dto);
+			children.add(child);
+			int constructed = dtoClass.getField("constructed").getInt(null);
+
+			Object clone = cloner.deepClone(dto);
+
+			// the generated cloner instantiates via the constructor, the reflective engine doesn't
+			assertEquals(constructed + 2, dtoClass.getField("constructed").getInt(null));
+			assertNotSame(dto, clone);
+			assertEquals("root", dtoClass.getMethod("getName").invoke(clone));
+			@SuppressWarnings("unchecked") List<Object> clonedChildren = (List<Object>) childrenField.get(clone);
+			assertNotSame(children, clonedChildren);
+			assertNotSame(child, clonedChildren.get(0));
+			assertSame(clone, parent.get(clonedChildren.get(0)));
+		} finally {
+			Thread.currentThread().setContextClassLoader(previous);
+		}
+	}
+
+	@Test
+	public void nulledFieldsFallBackOnReflection() throws Exception {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		File out = compile(diagnostics, ACCESSORS, new Source("com.x.Base", BASE), new Source("com.x.Dto", DTO));
+		assertNotNull(diagnostics.getDiagnostics().toString(), out);
+
+		ClassLoader previous = Thread.currentThread().getContextClassLoader();
+		try (URLClassLoader cl = new URLClassLoader(new URL[]{out.toURI().toURL()}, getClass().getClassLoader())) {
+			Thread.currentThread().setContextClassLoader(cl);
+			Class<?> dtoClass = cl.loadClass("com.x.Dto");
+			Field cache = dtoClass.getDeclaredField("cache");
+			cache.setAccessible(true);
+			Field legacy = dtoClass.getDeclaredField("legacy");
+			legacy.setAccessible(true);
+			Object dto = dtoClass.getConstructor().newInstance();
+			int constructed = dtoClass.getField("constructed").getInt(null);
+
+			Object clone = new Cloner().deepClone(dto);
+			assertEquals(constructed + 1, dtoClass.getField("constructed").getInt(null));
+			assertEquals("cache", cache.get(clone));
+			assertEquals("legacy", legacy.get(clone));
+
+			Cloner nullTransient = new Cloner();
+			nullTransient.setNullTransient(true);
+			clone = nullTransient.deepClone(dto);
+			assertNull(cache.get(clone));
+			assertEquals("legacy", legacy.get(clone));
+
+			Cloner nullAnnotated = new Cloner();
+			nullAnnotated.nullInsteadOfCloneFieldAnnotation(Deprecated.class);
+			clone = nullAnnotated.deepClone(dto);
+			assertEquals("cache", cache.get(clone));
+			assertNull(legacy.get(clone));
+			// both were cloned reflectively
+			assertEquals(constructed + 1, dtoClass.getField("constructed").getInt(null));
+		} finally {
+			Thread.currentThread().setContextClassLoader(previous);
+		}
+	}
+
+	@Test
+	public void strategiesAndDumpingFallBackOnReflection() throws Exception {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		File out = compile(diagnostics, ACCESSORS, new Source("com.x.Base", BASE), new Source("com.x.Dto", DTO));
+		assertNotNull(diagnostics.getDiagnostics().toString(), out);
+
+		ClassLoader previous = Thread.currentThread().getContextClassLoader();
+		try (URLClassLoader cl = new URLClassLoader(new URL[]{out.toURI().toURL()}, getClass().getClassLoader())) {
+			Thread.currentThread().setContextClassLoader(cl);
+			Class<?> dtoClass = cl.loadClass("com.x.Dto");
+			Field children = dtoClass.getDeclaredField("children");
+			children.setAccessible(true);
+			Object dto = dtoClass.getConstructor().newInstance();
+			int constructed = dtoClass.getField("constructed").getInt(null);
+
+			Cloner strategies = new Cloner();
+			strategies.registerCloningStrategy((o, field) -> field.getName().equals("children")
+					? ICloningStrategy.Strategy.SAME_INSTANCE_INSTEAD_OF_CLONE : ICloningStrategy.Strategy.IGNORE);
+			assertSame(children.get(dto), children.get(strategies.deepClone(dto)));
+
+			List<Class<?>> dumped = new ArrayList<>();
+			Cloner dumping = new Cloner();
+			dumping.setDumpCloned(new IDumpCloned() {
+				public void startCloning(Class<?> clz) {
+					dumped.add(clz);
+				}
+
+				public void cloning(Field field, Class<?> clz) {
+				}
+			});
+			dumping.deepClone(dto);
+			assertTrue(dumped.toString(), dumped.contains(dtoClass));
+			// both were cloned reflectively
+			assertEquals(constructed, dtoClass.getField("constructed").getInt(null));
+		} finally {
+			Thread.currentThread().setContextClassLoader(previous);
+		}
+	}
+
+	@Test
+	public void generatesConfiguredClasses() throws Exception {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		File out = compile(diagnostics, List.of("-A" + GenerateClonerProcessor.CLASSES_OPTION + "=com.x.Dto.Item", ACCESSORS.get(0)),
+				new Source("com.x.Base", BASE), new Source("com.x.Dto", DTO));
+		assertNotNull(diagnostics.getDiagnostics().toString(), out);
+		assertTrue(new File(out, "com/x/Dto_Item_DeepCloner.java").exists());
+	}
+
+	@Test
+	public void reportsInaccessibleFields() throws Exception {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		File out = compile(diagnostics, List.of(), new Source("com.x.Bad", "package com.x;\n"
+				+ "@com.rits.cloning.GenerateCloner\n"
+				+ "public class Bad {\n"
+				+ "	private int hidden;\n"
+				+ "}\n"));
+		assertNull(out);
+		assertReported(diagnostics, "Bad.hidden");
+	}
+
+	@Test
+	public void accessorsAreOptIn() throws Exception {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		File out = compile(diagnostics, List.of(), new Source("com.x.Base", BASE), new Source("com.x.Dto", DTO));
+		assertNull(out);
+		assertReported(diagnostics, "Base.name");
+	}
+
+	@Test
+	public void reportsHiddenFields() throws Exception {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		File out = compile(diagnostics, List.of(), new Source("com.x.Parent", "package com.x;\n"
+				+ "public class Parent {\n"
+				+ "	int value;\n"
+				+ "}\n"), new Source("com.x.Child", "package com.x;\n"
+				+ "@com.rits.cloning.GenerateCloner\n"
+				+ "public class Child extends Parent {\n"
+				+ "	int value;\n"
+				+ "}\n"));
+		assertNull(out);
+		assertReported(diagnostics, "Parent.value is hidden");
+	}
+
+	private static void assertReported(DiagnosticCollector<JavaFileObject> diagnostics, String message) {
+		boolean reported = false;
+		for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+			reported |= d.getKind() == Diagnostic.Kind.ERROR && d.getMessage(null).contains(message);
+		}
+		assertTrue(diagnostics.getDiagnostics().toString(), reported);
+	}
+}
@@ -0,0 +1,45 @@
+package com.rits.cloning;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * the canonical instances of equal immutable values, see {@link Cloner#setCanonicalizing}. The table is a bounded,
+ * lossy cache: it is split into buckets of two slots by hash code, and a value which isn't found replaces the least
+ * recently added one of its bucket. Equal values seen close to each other collapse to one instance, while the table
+ * never holds more than its capacity.
+ *
+ * @author kostas.kougios
+ */
+final class CanonicalTable {
+	private final AtomicReferenceArray<Object> table;
+	private final int mask;
+
+	/**
+	 * @param maxSize the max number of canonical values, rounded up to a power of two
+	 */
+	CanonicalTable(int maxSize) {
+		final int capacity = Integer.highestOneBit(Math.max(maxSize, 2) - 1) << 1;
+		table = new AtomicReferenceArray<>(capacity > 0 ? capacity : 1 << 30);
+		mask = table.length() - 1;
+	}
+
+	/**
+	 * @return the canonical instance equal to o, which is o unless an equal instance was interned earlier
+	 */
+	Object intern(Object o) {
+		final int h = o.hashCode();
+		final int i = (h ^ h >>> 16) & mask & ~1;
+		final Object first = table.get(i);
+		if (same(first, o)) return first;
+		final Object second = table.get(i + 1);
+		if (same(second, o)) return second;
+		// the first slot holds the most recently added value
+		table.lazySet(i + 1, first);
+		table.lazySet(i, o);
+		return o;
+	}
+
+	private static boolean same(Object c, Object o) {
+		return c == o || c != null && c.getClass() == o.getClass() && c.equals(o);
+	}
+}
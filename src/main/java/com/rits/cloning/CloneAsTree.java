@@ -0,0 +1,22 @@
+package com.rits.cloning;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * marks a class whose instances are always roots of trees, that is object graphs without cycles or objects referenced
+ * more than once. {@link Cloner#deepClone} clones such roots as {@link Cloner#deepCloneTree} does, without keeping track
+ * of the cloned objects.
+ *
+ * @author kostas.kougios
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+@Inherited
+public @interface CloneAsTree
+{
+}
@@ -0,0 +1,220 @@
+package com.rits.cloning;
+
+import java.util.Arrays;
+
+/**
+ * the state of a deep clone: the clones of the objects met so far and, when cloning {@link Cloner#setIterative
+ * iteratively}, the clones which are allocated and registered but not yet filled. Contexts are pooled and reused,
+ * see {@link Cloner#acquireContext}.
+ *
+ * @author kostas.kougios
+ */
+class CloneContext extends IdentityMap {
+	static final Object[] EMPTY_PENDING = new Object[0];
+	// contexts which grew bigger than this are not pooled, so that one huge clone doesn't retain memory forever
+	private static final int MAX_POOLED_CAPACITY = 1 << 12;
+	// the number of objects cloned iteratively as a tree before the tree is verified, see put()
+	private static final int MAX_UNVERIFIED_TREE_SIZE = 1 << 20;
+
+	final Cloner cloner;
+	// when cloning trees nothing is tracked, unless the tree is verified
+	boolean tree;
+	boolean verify;
+	// the objects cloned so far as a tree without verifying it, see put()
+	int unverified;
+	boolean iterative;
+	// (cloner, original, clone) triplets pending to be filled
+	Object[] pending = EMPTY_PENDING;
+	int pendingSize;
+	// original -> its persistent or compact clone, created on first use
+	private IdentityMap substitutes;
+	// original -> position of its pending triplet, created by complete() on first use. The triplets from indexed
+	// up aren't in it yet, the ones it points to may have been filled since
+	IdentityMap pendingIndex;
+	int indexed;
+
+	CloneContext(Cloner cloner) {
+		this.cloner = cloner;
+	}
+
+	CloneContext reset(boolean tree, boolean iterative, int expectedSize) {
+		this.tree = tree;
+		this.verify = tree && cloner.isVerifyTrees();
+		this.iterative = iterative;
+		this.unverified = 0;
+		if (!tree || verify) {
+			ensureCapacity(expectedSize);
+		}
+		return this;
+	}
+
+	/**
+	 * @return true if the context was cleared and can be reused, false if it grew too big to be kept around
+	 */
+	boolean clearForReuse() {
+		if (capacity() > MAX_POOLED_CAPACITY || pending.length > MAX_POOLED_CAPACITY) return false;
+		clear();
+		substitutes = null;
+		pendingIndex = null;
+		if (pendingSize > 0) {
+			// an exception left the clone incomplete
+			Arrays.fill(pending, 0, pendingSize, null);
+			pendingSize = 0;
+		}
+		return true;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (!tree) {
+			Object o = super.get(key);
+			if (o != null) return o;
+		}
+		return cloner.constantOrFrozen(key);
+	}
+
+	@Override
+	public Object put(Object key, Object value) {
+		if (tree) {
+			// a cycle never overflows the work stack, so big iterative trees are verified from some point on to
+			// fail instead of cloning the cycle until the memory runs out
+			if (!verify && iterative && ++unverified > MAX_UNVERIFIED_TREE_SIZE) verify = true;
+			if (verify && super.put(key, key) != null) {
+				throw new CloningException("Not a tree, " + key.getClass().getName() + " instance is referenced more than once");
+			}
+			return null;
+		}
+		return super.put(key, value);
+	}
+
+	/**
+	 * @return the clone of o which was registered, clone unless another thread cloned o at the same time
+	 */
+	Object registered(Object o, Object clone) {
+		return clone;
+	}
+
+	/**
+	 * @return the persistent or compact clone of o, null if it has none yet, see {@link Cloner#deepClone}
+	 */
+	Object substituteOf(Object o) {
+		return tree || substitutes == null ? null : substitutes.get(o);
+	}
+
+	/**
+	 * registers the persistent or compact clone of o
+	 *
+	 * @return the persistent or compact clone of o, clone unless another thread cloned o at the same time
+	 */
+	Object substituted(Object o, Object clone) {
+		if (!tree) {
+			if (substitutes == null) substitutes = new IdentityMap();
+			substitutes.put(o, clone);
+		}
+		return clone;
+	}
+
+	/**
+	 * allocates and registers the clone of o, its fields/elements are filled later by {@link #drain}
+	 */
+	Object defer(Object o, IDeepCloner cloner) {
+		if (cloner instanceof Cloner.IFreezableCloner) {
+			if (((IFreezable) o).isFrozen()) return o;
+			cloner = ((Cloner.IFreezableCloner) cloner).cloner;
+		}
+		if (!(cloner instanceof IDeferredCloner)) return registered(o, cloner.deepClone(o, this));
+		IDeferredCloner deferred = (IDeferredCloner) cloner;
+		Object clone = deferred.allocate(o, this);
+		Object registered = registered(o, clone);
+		if (registered != clone) return registered;
+		if (pendingSize + 3 > pending.length) {
+			pending = Arrays.copyOf(pending, Math.max(48, pending.length * 2));
+		}
+		pending[pendingSize++] = deferred;
+		pending[pendingSize++] = o;
+		pending[pendingSize++] = clone;
+		return clone;
+	}
+
+	/**
+	 * fills the pending clones, including the ones allocated meanwhile, until only the first mark entries remain
+	 */
+	void drain(int mark) {
+		try {
+			while (pendingSize > mark) {
+				Object clone = pending[--pendingSize];
+				Object o = pending[--pendingSize];
+				IDeferredCloner deferred = (IDeferredCloner) pending[--pendingSize];
+				pending[pendingSize] = pending[pendingSize + 1] = pending[pendingSize + 2] = null;
+				if (pendingSize < indexed) indexed = pendingSize;
+				// null if complete() filled it already
+				if (deferred != null) deferred.fill(o, clone, this);
+			}
+		} catch (IllegalAccessException e) {
+			throw new CloningException(e);
+		}
+		if (pendingSize == 0) pendingIndex = null;
+	}
+
+	/**
+	 * fills the clone of o, which was registered before, now if it is still pending. Fast cloners which hash their
+	 * elements need them complete.
+	 */
+	void complete(Object o, Object clone) {
+		final IDeferredCloner deferred = deferredCloner(o);
+		if (deferred == null) return;
+		final int i = pendingIndexOf(o);
+		if (i >= 0) {
+			pending[i] = null;
+			fill(deferred, o, clone);
+		} else {
+			completeFilled(deferred, o, clone);
+		}
+	}
+
+	/**
+	 * called by {@link #complete} for a clone which isn't pending in this context, so it was filled already or is
+	 * being filled by a caller
+	 */
+	void completeFilled(IDeferredCloner deferred, Object o, Object clone) {
+	}
+
+	/**
+	 * @return the cloner which fills the clones of o, null if they are complete once allocated
+	 */
+	private IDeferredCloner deferredCloner(Object o) {
+		final IDeepCloner plan = cloner.planOf(o.getClass());
+		return plan instanceof IDeferredCloner ? (IDeferredCloner) plan : null;
+	}
+
+	/**
+	 * @return the position of the pending triplet of o, -1 if o isn't pending
+	 */
+	private int pendingIndexOf(Object o) {
+		if (pendingSize == 0) return -1;
+		if (pendingIndex == null) {
+			pendingIndex = new IdentityMap();
+			indexed = 0;
+		}
+		for (; indexed < pendingSize; indexed += 3) {
+			pendingIndex.put(pending[indexed + 1], indexed);
+		}
+		final Object i = pendingIndex.get(o);
+		if (i == null) return -1;
+		final int p = (Integer) i;
+		return p < pendingSize && pending[p + 1] == o && pending[p] != null ? p : -1;
+	}
+
+	/**
+	 * fills clone and the clones allocated meanwhile
+	 */
+	void fill(IDeferredCloner deferred, Object o, Object clone) {
+		final int mark = pendingSize;
+		try {
+			deferred.fill(o, clone, this);
+		} catch (IllegalAccessException e) {
+			throw new CloningException(e);
+		}
+		drain(mark);
+	}
+}
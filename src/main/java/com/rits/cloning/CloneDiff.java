@@ -0,0 +1,253 @@
+package com.rits.cloning;
+
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * compares an original graph with a previous clone of it, see {@link Cloner#refreshClone}
+ *
+ * @author kostas.kougios
+ */
+final class CloneDiff {
+	private final Cloner cloner;
+	// original -> the object of the previous clone it corresponds to
+	private final IdentityMap matches = new IdentityMap();
+	// object of the previous clone -> its original, an object of the previous clone corresponds to one original only
+	private final IdentityMap matched = new IdentityMap();
+	// originals whose previous clone can't be reused
+	private final IdentityMap changed = new IdentityMap();
+	private final List<Object> changedList = new ArrayList<>();
+	// (original, previous clone, referencing original) triplets of every cloned reference
+	private Object[] edges = CloneContext.EMPTY_PENDING;
+	private int edgesSize;
+	// (original, previous clone) pairs to be compared
+	private final ArrayDeque<Object> pending = new ArrayDeque<>();
+
+	CloneDiff(Cloner cloner) {
+		this.cloner = cloner;
+	}
+
+	void compare(Object original, Object previousClone) {
+		child(original, previousClone, null);
+		try {
+			while (!pending.isEmpty()) {
+				final Object o = pending.pop();
+				final Object prev = pending.pop();
+				// already compared, or prev corresponds to another original: checked per edge below
+				if (matches.get(o) != null || matched.get(prev) != null) continue;
+				matches.put(o, prev);
+				matched.put(prev, o);
+				compareObjects(o, prev);
+			}
+		} catch (IllegalAccessException e) {
+			throw new CloningException(e);
+		}
+		// a reference whose previous clone doesn't correspond to the original it references now
+		for (int i = 0; i < edgesSize; i += 3) {
+			if (matches.get(edges[i]) != edges[i + 1]) changed(edges[i + 2]);
+		}
+		propagateChanges();
+	}
+
+	/**
+	 * registers the reusable objects of the previous clone as the clones of their originals
+	 */
+	void reuse(CloneContext context) {
+		for (Map.Entry<Object, Object> e : matches.entrySet()) {
+			if (!changed.containsKey(e.getKey())) context.put(e.getKey(), e.getValue());
+		}
+	}
+
+	private void changed(Object o) {
+		if (o != null && changed.put(o, o) == null) changedList.add(o);
+	}
+
+	/**
+	 * Collection.contains which treats the elements a collection rejects, i.e. nulls in a Set.of, as not contained
+	 */
+	private boolean contains(Collection<?> c, Object e) {
+		try {
+			return c.contains(e);
+		} catch (NullPointerException | ClassCastException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Map.containsKey which treats the keys a map rejects, i.e. a null key of a Map.of, as not contained
+	 */
+	private boolean containsKey(Map<?, ?> m, Object k) {
+		try {
+			return m.containsKey(k);
+		} catch (NullPointerException | ClassCastException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * compares v, referenced by parent, with pv which parent's previous clone references
+	 */
+	private void child(Object v, Object pv, Object parent) {
+		final Object e = cloner.expectedClone(v);
+		if (e != Cloner.CLONED) {
+			if (pv != e) changed(parent);
+		} else if (pv == null || pv == v || pv.getClass() != v.getClass()) {
+			changed(parent);
+		} else {
+			if (parent != null) {
+				if (edgesSize + 3 > edges.length) {
+					edges = Arrays.copyOf(edges, Math.max(48, edges.length * 2));
+				}
+				edges[edgesSize++] = v;
+				edges[edgesSize++] = pv;
+				edges[edgesSize++] = parent;
+			}
+			pending.push(pv);
+			pending.push(v);
+		}
+	}
+
+	private void compareObjects(Object o, Object prev) throws IllegalAccessException {
+		final IDeepCloner plan = cloner.planOf(o.getClass());
+		if (plan instanceof Cloner.CloneObjectCloner) {
+			final Cloner.CloneObjectCloner c = (Cloner.CloneObjectCloner) plan;
+			for (int i = 0; i < c.numFields; i++) {
+				final Field field = c.fields[i];
+				if (field.getType().isPrimitive()) {
+					if (!Fields.ACCESSOR.primitiveEquals(field, c.cookies[i], o, prev)) changed(o);
+					continue;
+				}
+				final Object v = Fields.ACCESSOR.get(field, c.cookies[i], o);
+				final Object pv = Fields.ACCESSOR.get(field, c.cookies[i], prev);
+				if (c.shouldClone[i]) {
+					child(v, pv, o);
+				} else if (v != pv) {
+					changed(o);
+				}
+			}
+		} else if (plan instanceof Cloner.CloneArrayCloner) {
+			compareArrays((Cloner.CloneArrayCloner) plan, o, prev);
+		} else if (plan instanceof Cloner.FastClonerCloner && o instanceof Collection) {
+			compareCollections((Collection<?>) o, (Collection<?>) prev);
+		} else if (plan instanceof Cloner.FastClonerCloner && o instanceof Map) {
+			compareMaps((Map<?, ?>) o, (Map<?, ?>) prev);
+		} else {
+			changed(o);
+		}
+	}
+
+	private void compareArrays(Cloner.CloneArrayCloner plan, Object o, Object prev) {
+		if (plan.primitive) {
+			if (!primitiveArraysEqual(o, prev)) changed(o);
+			return;
+		}
+		final Object[] a = (Object[]) o;
+		final Object[] pa = (Object[]) prev;
+		if (a.length != pa.length) {
+			changed(o);
+		} else if (plan.immutable) {
+			for (int i = 0; i < a.length; i++) {
+				if (a[i] != pa[i]) {
+					changed(o);
+					return;
+				}
+			}
+		} else {
+			for (int i = 0; i < a.length; i++) {
+				child(a[i], pa[i], o);
+			}
+		}
+	}
+
+	private boolean isUnordered(Object o) {
+		final Class<?> c = o.getClass();
+		return c == HashMap.class || c == HashSet.class || c == ConcurrentHashMap.class;
+	}
+
+	private void compareCollections(Collection<?> o, Collection<?> prev) {
+		if (o.size() != prev.size()) changed(o);
+		if (isUnordered(o)) {
+			// the order of the clone may differ, so the elements are looked up which works only if they aren't cloned
+			for (Object e : o) {
+				if (cloner.expectedClone(e) != e || !contains(prev, e)) {
+					changed(o);
+					return;
+				}
+			}
+		} else {
+			// after an insertion or removal the following elements are paired with the wrong previous clones, which
+			// are then found changed and cloned again
+			final Iterator<?> it = prev.iterator();
+			for (Object e : o) {
+				if (!it.hasNext()) break;
+				child(e, it.next(), o);
+			}
+		}
+	}
+
+	private void compareMaps(Map<?, ?> o, Map<?, ?> prev) {
+		if (o.size() != prev.size()) changed(o);
+		// ordered maps are compared entry by entry until the keys differ, then the values are looked up by key
+		final Iterator<? extends Map.Entry<?, ?>> it = isUnordered(o) ? null : prev.entrySet().iterator();
+		boolean aligned = it != null;
+		for (Map.Entry<?, ?> e : o.entrySet()) {
+			final Object k = e.getKey();
+			final Object ek = cloner.expectedClone(k);
+			if (aligned && it.hasNext()) {
+				final Map.Entry<?, ?> pe = it.next();
+				if (ek == Cloner.CLONED || ek == pe.getKey()) {
+					child(k, pe.getKey(), o);
+					child(e.getValue(), pe.getValue(), o);
+					continue;
+				}
+				changed(o);
+			}
+			aligned = false;
+			if (ek != k || !containsKey(prev, k)) {
+				// the value of a cloned key can't be looked up
+				changed(o);
+			} else {
+				child(e.getValue(), prev.get(k), o);
+			}
+		}
+	}
+
+	/**
+	 * marks every original which references a changed one as changed, up to the root
+	 */
+	private void propagateChanges() {
+		// the edges referencing each original, as linked lists of edge indexes
+		final IdentityMap first = new IdentityMap(edgesSize / 3);
+		final int[] next = new int[edgesSize / 3];
+		for (int i = 0, e = 0; i < edgesSize; i += 3, e++) {
+			final Integer previous = (Integer) first.put(edges[i], e);
+			next[e] = previous == null ? -1 : previous;
+		}
+		for (int i = 0; i < changedList.size(); i++) {
+			final Integer head = (Integer) first.get(changedList.get(i));
+			for (int e = head == null ? -1 : head; e >= 0; e = next[e]) {
+				changed(edges[e * 3 + 2]);
+			}
+		}
+	}
+
+	private static boolean primitiveArraysEqual(Object a, Object b) {
+		if (a instanceof int[]) return Arrays.equals((int[]) a, (int[]) b);
+		if (a instanceof long[]) return Arrays.equals((long[]) a, (long[]) b);
+		if (a instanceof byte[]) return Arrays.equals((byte[]) a, (byte[]) b);
+		if (a instanceof double[]) return Arrays.equals((double[]) a, (double[]) b);
+		if (a instanceof char[]) return Arrays.equals((char[]) a, (char[]) b);
+		if (a instanceof boolean[]) return Arrays.equals((boolean[]) a, (boolean[]) b);
+		if (a instanceof float[]) return Arrays.equals((float[]) a, (float[]) b);
+		return Arrays.equals((short[]) a, (short[]) b);
+	}
+}
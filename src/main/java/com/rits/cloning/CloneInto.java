@@ -0,0 +1,151 @@
+package com.rits.cloning;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * clones a graph into an existing one, see {@link Cloner#deepCloneInto}
+ *
+ * @author kostas.kougios
+ */
+final class CloneInto {
+	private final Cloner cloner;
+	private final CloneContext clones;
+	// the destination objects already reused, each one is the clone of a single source object
+	private final IdentityMap used = new IdentityMap();
+	// (source, destination) pairs to be filled
+	private final ArrayDeque<Object> pending = new ArrayDeque<>();
+	// the same for sets and maps, they are filled when nothing else is pending so that their keys are complete
+	private final ArrayDeque<Object> pendingHashed = new ArrayDeque<>();
+
+	CloneInto(Cloner cloner, CloneContext clones) {
+		this.cloner = cloner;
+		this.clones = clones;
+	}
+
+	Object cloneInto(Object src, Object dest) throws IllegalAccessException {
+		final Object clone = target(src, dest);
+		while (!pending.isEmpty() || !pendingHashed.isEmpty()) {
+			final ArrayDeque<Object> q = pending.isEmpty() ? pendingHashed : pending;
+			fill(q.pop(), q.pop());
+		}
+		return clone;
+	}
+
+	/**
+	 * @return the clone of v, which is dv if it can be reused
+	 */
+	private Object target(Object v, Object dv) {
+		final Object e = cloner.expectedClone(v);
+		if (e != Cloner.CLONED) return e;
+		final Object known = clones.get(v);
+		if (known != null) return known;
+		if (dv != null && dv != v && dv.getClass() == v.getClass() && !used.containsKey(dv) && isReusable(v, dv)) {
+			clones.put(v, dv);
+			used.put(dv, dv);
+			final ArrayDeque<Object> q = v instanceof Set || v instanceof Map ? pendingHashed : pending;
+			q.push(dv);
+			q.push(v);
+			return dv;
+		}
+		return clones.iterative ? cloner.cloneAndDrain(v, clones) : cloner.cloneInternal(v, clones);
+	}
+
+	private boolean isReusable(Object v, Object dv) {
+		final IDeepCloner plan = cloner.planOf(v.getClass());
+		if (plan instanceof Cloner.CloneObjectCloner) return true;
+		if (plan instanceof Cloner.CloneArrayCloner) return Array.getLength(v) == Array.getLength(dv);
+		return plan instanceof Cloner.FastClonerCloner && Cloner.REFILLABLE.containsKey(v.getClass());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void fill(Object s, Object d) throws IllegalAccessException {
+		final IDumpCloned dumpCloned = cloner.getDumpCloned();
+		if (dumpCloned != null) {
+			dumpCloned.startCloning(s.getClass());
+		}
+		final IDeepCloner plan = cloner.planOf(s.getClass());
+		if (plan instanceof Cloner.CloneObjectCloner) {
+			fillObject((Cloner.CloneObjectCloner) plan, s, d);
+		} else if (plan instanceof Cloner.CloneArrayCloner) {
+			fillArray((Cloner.CloneArrayCloner) plan, s, d);
+		} else if (s instanceof List) {
+			final List<Object> l = (List<Object>) d;
+			final Object[] previous = l.toArray();
+			l.clear();
+			int i = 0;
+			for (Object e : (List<?>) s) {
+				l.add(target(e, i < previous.length ? previous[i] : null));
+				i++;
+			}
+		} else if (s instanceof Set) {
+			final Set<Object> set = (Set<Object>) d;
+			set.clear();
+			for (Object e : (Set<?>) s) {
+				set.add(target(e, null));
+			}
+		} else {
+			fillMap((Map<?, ?>) s, (Map<Object, Object>) d);
+		}
+	}
+
+	private void fillObject(Cloner.CloneObjectCloner c, Object s, Object d) throws IllegalAccessException {
+		for (int i = 0; i < c.numFields; i++) {
+			final Field field = c.fields[i];
+			final Object cookie = c.cookies[i];
+			if (c.shouldClone[i]) {
+				final Object v = Fields.ACCESSOR.get(field, cookie, s);
+				Fields.ACCESSOR.set(field, cookie, d, fieldTarget(s, field, v, Fields.ACCESSOR.get(field, cookie, d)));
+			} else {
+				Fields.ACCESSOR.copy(field, cookie, s, d);
+			}
+		}
+		// the fields which the clones don't copy (i.e. transient ones when nulling them) are reset
+		for (int i = 0; i < c.skipped.length; i++) {
+			Fields.ACCESSOR.set(c.skipped[i], c.skippedCookies[i], d, c.skippedDefaults[i]);
+		}
+	}
+
+	private Object fieldTarget(Object o, Field field, Object v, Object dv) {
+		if (cloner.cloningStrategies != null) {
+			for (ICloningStrategy strategy : cloner.cloningStrategies) {
+				ICloningStrategy.Strategy s = strategy.strategyFor(o, field);
+				if (s == ICloningStrategy.Strategy.NULL_INSTEAD_OF_CLONE) return null;
+				if (s == ICloningStrategy.Strategy.SAME_INSTANCE_INSTEAD_OF_CLONE) return v;
+			}
+		}
+		return target(v, dv);
+	}
+
+	private void fillArray(Cloner.CloneArrayCloner c, Object s, Object d) {
+		if (c.primitive || c.immutable) {
+			System.arraycopy(s, 0, d, 0, Array.getLength(s));
+			return;
+		}
+		final Object[] sa = (Object[]) s;
+		final Object[] da = (Object[]) d;
+		for (int i = 0; i < sa.length; i++) {
+			da[i] = target(sa[i], da[i]);
+		}
+	}
+
+	private void fillMap(Map<?, ?> s, Map<Object, Object> d) {
+		// (key, value, previous value) triplets, the previous values are looked up before clearing d
+		final List<Object> entries = new ArrayList<>(s.size() * 3);
+		for (Map.Entry<?, ?> e : s.entrySet()) {
+			final Object k = target(e.getKey(), null);
+			entries.add(k);
+			entries.add(e.getValue());
+			entries.add(d.get(k));
+		}
+		d.clear();
+		for (int i = 0; i < entries.size(); i += 3) {
+			d.put(entries.get(i), target(entries.get(i + 1), entries.get(i + 2)));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.rits.cloning;
+
+import java.util.Arrays;
+
+/**
+ * the per class pools of the objects released by {@link Cloner#release}, which are reused as clones instead of new
+ * instances. Every pool holds up to a fixed number of objects, more released objects are left to the garbage collector.
+ *
+ * @author kostas.kougios
+ */
+final class CloneRecycler {
+	private final int maxPooled;
+	private final ClassValue<Pool> pools = new ClassValue<Pool>() {
+		@Override
+		protected Pool computeValue(Class<?> type) {
+			return new Pool(maxPooled);
+		}
+	};
+
+	/**
+	 * @param maxPooled the max number of objects pooled per class
+	 */
+	CloneRecycler(int maxPooled) {
+		this.maxPooled = maxPooled;
+	}
+
+	Pool pool(Class<?> c) {
+		return pools.get(c);
+	}
+
+	/**
+	 * released objects of a single class, already cleared. The array grows as objects are released, up to the max
+	 */
+	static final class Pool {
+		private static final Object[] EMPTY = new Object[0];
+		private final int maxPooled;
+		private Object[] objects = EMPTY;
+		private int size;
+
+		Pool(int maxPooled) {
+			this.maxPooled = maxPooled;
+		}
+
+		/**
+		 * @return a pooled object or null if the pool is empty
+		 */
+		synchronized Object poll() {
+			if (size == 0) return null;
+			final Object o = objects[--size];
+			objects[size] = null;
+			return o;
+		}
+
+		/**
+		 * @return true if o was pooled, false if the pool is full
+		 */
+		synchronized boolean offer(Object o) {
+			if (size == objects.length) {
+				if (size == maxPooled) return false;
+				objects = Arrays.copyOf(objects, (int) Math.min(maxPooled, Math.max(16, size * 2L)));
+			}
+			objects[size++] = o;
+			return true;
+		}
+	}
+}
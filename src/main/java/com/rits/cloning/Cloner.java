@@ -3,6 +3,8 @@ package com.rits.cloning;
 import org.objenesis.instantiator.ObjectInstantiator;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
@@ -13,6 +15,11 @@ import java.net.URL;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
 import java.util.regex.Pattern;
 
 /**
@@ -24,16 +31,33 @@ import java.util.regex.Pattern;
  * 18 Sep 2008
  */
 public class Cloner {
+	// the plans reference the cloner weakly, as they are kept by the cloned classes while the cloner keeps their ClassValue
+	private final WeakReference<Cloner> self = new WeakReference<>(this);
 	private final IInstantiationStrategy instantiationStrategy;
 	private final Set<Class<?>> ignored = new HashSet<>();
+	// the classes of registerImmutable, a subset of ignored which excludes the dontClone ones
+	private final Set<Class<?>> registeredImmutables = new HashSet<>();
 	private final Set<Class<?>> ignoredInstanceOf = new HashSet<>();
 	private final Set<Class<?>> nullInstead = new HashSet<>();
 	private final Set<Class<? extends Annotation>> nullInsteadFieldAnnotations = new HashSet<>();
 	private final Map<Class<?>, IFastCloner> fastCloners = new HashMap<>();
-	private final ConcurrentHashMap<Class<?>, Map<Field, Object /*cookie*/>> fieldsCache = new ConcurrentHashMap<>();
-	private List<ICloningStrategy> cloningStrategies;
+	// fields depend only on the class and allFields(), so they are never invalidated
+	private final ClassValue<Map<Field, Object /*cookie*/>> fieldsCache = new ClassValue<Map<Field, Object>>() {
+		@Override
+		protected Map<Field, Object> computeValue(Class<?> c) {
+			Map<Field, Object> m = new HashMap<>();
+			for (final Field field : allFields(c)) {
+				m.put(field, Fields.ACCESSOR.getCookie(field));
+			}
+			return m;
+		}
+	};
+	List<ICloningStrategy> cloningStrategies;
 
-	private Map<Object, Object> ignoredInstances;
+	// copied on write, so that clones in progress always see a complete table
+	private IdentityMap constants;
+	// the instances registered by registerFrozenGraph(Object), copied on write like the constants and null while empty
+	private volatile FrozenInstances frozenInstances;
 
 	public IDumpCloned getDumpCloned() {
 		return dumpCloned;
@@ -47,13 +71,32 @@ public class Cloner {
 	 *                   cloned classes.
 	 */
 	public void setDumpCloned(IDumpCloned dumpCloned) {
+		checkNotFrozen();
 		this.dumpCloned = dumpCloned;
+		invalidatePlans();
 	}
 
 	private IDumpCloned dumpCloned = null;
 	private boolean cloningEnabled = true;
 	private boolean nullTransient = false;
 	private boolean cloneSynthetics = true;
+	private CloningEngine engine = CloningEngine.fromSystemProperty();
+	private boolean iterative = false;
+	private boolean verifyTrees = false;
+	// the canonical instances of immutable values, null unless canonicalizing
+	private CanonicalTable canonicalTable = null;
+	// pools the released clones, null unless recycling
+	private CloneRecycler recycler = null;
+	// the classes of the fast cloners registered by users, whose clones may share objects with the original
+	private final Set<Class<?>> customFastCloned = new HashSet<>();
+	// the fast cloners of the collections cloned to persistent ones, null unless enabled
+	private Map<Class<?>, IFastCloner> persistentCollections = null;
+	// the fast cloners of the collections cloned to immutable compact ones, null unless enabled
+	private Map<Class<?>, IFastCloner> compactCollections = null;
+	private boolean compacting = false;
+	// set once a cloner built by ClonerBuilder is configured, after that the configuration can't change. The volatile
+	// write of the plans which follows publishes the whole configuration to the threads cloning
+	private boolean frozen = false;
 
 	public Cloner() {
 		this.instantiationStrategy = ObjenesisInstantiationStrategy.getInstance();
@@ -65,6 +108,15 @@ public class Cloner {
 		init();
 	}
 
+	/**
+	 * constructs a cloner with the configuration of a {@link ClonerBuilder}, which can't be changed afterwards
+	 */
+	Cloner(final ClonerBuilder.Configuration configuration) {
+		this(configuration.instantiationStrategy == null ? ObjenesisInstantiationStrategy.getInstance() : configuration.instantiationStrategy);
+		configuration.applyTo(this);
+		freezeConfiguration();
+	}
+
 	public boolean isNullTransient() {
 		return nullTransient;
 	}
@@ -77,17 +129,267 @@ public class Cloner {
 	 * @param nullTransient true for transient fields to be nulled
 	 */
 	public void setNullTransient(final boolean nullTransient) {
+		checkNotFrozen();
 		this.nullTransient = nullTransient;
+		invalidatePlans();
 	}
 
 	public void setCloneSynthetics(final boolean cloneSynthetics) {
+		checkNotFrozen();
 		this.cloneSynthetics = cloneSynthetics;
+		invalidatePlans();
+	}
+
+	public CloningEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * selects the engine used to copy the fields of reflectively cloned objects. Classes already cloned
+	 * will switch to the new engine on their next clone.
+	 *
+	 * @param engine the engine, see {@link CloningEngine}
+	 */
+	public void setEngine(final CloningEngine engine) {
+		checkNotFrozen();
+		if (engine == null) throw new NullPointerException("engine can't be null");
+		this.engine = engine;
+		invalidatePlans();
+	}
+
+	public boolean isIterative() {
+		return iterative;
+	}
+
+	/**
+	 * clones objects and arrays via an explicit work stack instead of recursing once per level of the object graph,
+	 * so that i.e. long linked structures or deep trees can be cloned without a StackOverflowError. The clones are
+	 * the same as when cloning recursively (default is false).
+	 * <p>
+	 * NOTE: fast cloners still recurse, except for the ones of the std lists which don't read their elements.
+	 *
+	 * @param iterative true to clone iteratively
+	 */
+	public void setIterative(final boolean iterative) {
+		checkNotFrozen();
+		this.iterative = iterative;
+	}
+
+	public boolean isVerifyTrees() {
+		return verifyTrees;
+	}
+
+	/**
+	 * makes {@link #deepCloneTree} and the cloning of {@link CloneAsTree} roots fail with a {@link CloningException}
+	 * when an object is met twice, i.e. because of a cycle or a shared reference. Useful for debugging only, as it
+	 * keeps track of the cloned objects (default is false).
+	 *
+	 * @param verifyTrees true to verify that trees are trees
+	 */
+	public void setVerifyTrees(final boolean verifyTrees) {
+		checkNotFrozen();
+		this.verifyTrees = verifyTrees;
+	}
+
+	public boolean isCanonicalizing() {
+		return canonicalTable != null;
+	}
+
+	/**
+	 * makes clones reference one canonical instance of equal immutable values, instead of the instances of the
+	 * original. Equal strings, numbers, UUIDs and instances of other immutable classes (registered ones and ones
+	 * annotated with {@link Immutable}) then collapse to one instance while cloning, i.e. the duplicates a deserialized
+	 * graph is full of. Only classes which override equals are canonicalized, URLs are not as their equals resolves host
+	 * names. Classes of {@link #dontClone} are not canonicalized, their instances are shared as they are.
+	 * <p>
+	 * The canonical instances are kept in a table of up to maxSize values, shared by all clones of this cloner. When it
+	 * is full, values replace older ones with a similar hash code, so equal values far apart in a huge graph may not
+	 * collapse (default is no canonicalizing).
+	 *
+	 * @param maxSize the max number of canonical instances kept, 0 to disable canonicalizing
+	 */
+	public void setCanonicalizing(final int maxSize) {
+		checkNotFrozen();
+		if (maxSize < 0) throw new IllegalArgumentException("maxSize can't be negative: " + maxSize);
+		canonicalTable = maxSize == 0 ? null : new CanonicalTable(maxSize);
+		invalidatePlans();
+	}
+
+	/**
+	 * @return true if the instances of clz are replaced by canonical ones, see {@link #setCanonicalizing}
+	 */
+	private boolean canonicalizes(Class<?> clz) {
+		if (canonicalTable == null || clz == URL.class || Enum.class.isAssignableFrom(clz)) return false;
+		if (!isCommonImmutable(clz) && !registeredImmutables.contains(clz) && !isImmutable(clz)) return false;
+		try {
+			return clz.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	public boolean isRecycling() {
+		return recycler != null;
+	}
+
+	/**
+	 * makes clones reuse the objects of graphs which were {@link #release released}, instead of allocating new ones.
+	 * Objects and ArrayLists, LinkedLists, HashMaps, LinkedHashMaps, HashSets, LinkedHashSets and ConcurrentHashMaps
+	 * are pooled per class, arrays are not pooled (default is no recycling).
+	 *
+	 * @param maxPooledPerClass the max number of released objects kept per class, 0 to disable recycling
+	 */
+	public void setRecycling(final int maxPooledPerClass) {
+		checkNotFrozen();
+		if (maxPooledPerClass < 0) throw new IllegalArgumentException("maxPooledPerClass can't be negative: " + maxPooledPerClass);
+		recycler = maxPooledPerClass == 0 ? null : new CloneRecycler(maxPooledPerClass);
+		invalidatePlans();
+	}
+
+	/**
+	 * returns a clone which is no longer used to the pools of {@link #setRecycling recycling}, so that later clones reuse
+	 * its objects. The clone and the objects reachable from it are cleared, and must not be used afterwards.
+	 * <p>
+	 * Objects which are never cloned (i.e. immutables, constants and frozen objects) are skipped, but release can't tell
+	 * cloned objects from others otherwise: the clone must not share objects with graphs still in use, i.e. it can't be a
+	 * clone of {@link #deepCloneDontCloneInstances} or one sharing objects with another clone via {@link #refreshClone}.
+	 * For the same reason release is refused while cloning strategies or custom fast cloners are registered, or when
+	 * cloneInternal is overridden, as those may put objects of the original into the clone.
+	 * Without recycling this does nothing.
+	 *
+	 * @param clone a clone which is no longer used
+	 * @throws IllegalStateException if the clones of this cloner may share objects with their originals
+	 */
+	public void release(final Object clone) {
+		if (clone == null || recycler == null) return;
+		if (cloningStrategies != null || !customFastCloned.isEmpty() || !inlineCaching) {
+			throw new IllegalStateException("clones can't be released while cloning strategies or custom fast cloners are registered or cloneInternal is overridden");
+		}
+		final IdentityMap seen = new IdentityMap();
+		final ArrayDeque<Object> pending = new ArrayDeque<>();
+		pending.push(clone);
+		try {
+			while (!pending.isEmpty()) {
+				final Object o = pending.pop();
+				if (seen.put(o, o) != null || expectedClone(o) != CLONED) continue;
+				// persistent collections share their nodes and elements with the later clones
+				if (o.getClass().getEnclosingClass() == PersistentCollections.class) continue;
+				IDeepCloner cloner = cloners.get(o.getClass());
+				if (cloner instanceof IFreezableCloner) cloner = ((IFreezableCloner) cloner).cloner;
+				if (cloner instanceof CloneObjectCloner) {
+					((CloneObjectCloner) cloner).recycle(o, pending);
+				} else if (cloner instanceof CloneArrayCloner) {
+					if (!((CloneArrayCloner) cloner).primitive) {
+						for (Object e : (Object[]) o) {
+							if (e != null) pending.push(e);
+						}
+					}
+				} else if (cloner instanceof FastClonerCloner) {
+					((FastClonerCloner) cloner).recycle(o, pending);
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new CloningException(e);
+		}
+	}
+
+	public boolean isPersistentCollections() {
+		return persistentCollections != null;
+	}
+
+	/**
+	 * clones ArrayLists, HashMaps and HashSets to immutable, persistent collections which implement the same
+	 * interfaces. The cloner remembers the last clone of every big collection and derives the next clone of the same
+	 * collection from it, sharing the unchanged parts. Cloning i.e. a big map of immutable values repeatedly then
+	 * allocates in proportion to the changes instead of the size of the map (default is false).
+	 * <p>
+	 * Only the collections which are the root of a clone or are referenced by fields of the types List, Set, Map,
+	 * Collection or Object are cloned so, as the persistent collections don't extend the cloned classes. Elements of
+	 * collections and arrays, and fields of other types, get ordinary clones.
+	 * <p>
+	 * NOTE: the clones of these collections can't be modified.
+	 *
+	 * @param persistentCollections true to clone to persistent collections
+	 */
+	public void setPersistentCollections(final boolean persistentCollections) {
+		checkNotFrozen();
+		this.persistentCollections = !persistentCollections ? null : Map.of(
+				ArrayList.class, new PersistentCollections.ListCloner(),
+				HashMap.class, new PersistentCollections.MapCloner(),
+				HashSet.class, new PersistentCollections.SetCloner());
+		invalidatePlans();
+	}
+
+	public boolean isCompacting() {
+		return compacting;
+	}
+
+	/**
+	 * trims the clones of ArrayList subclasses, Vectors, StringBuilders and StringBuffers to their size, instead of
+	 * copying the spare capacity of their backing arrays. The clones of the std collections are sized to their contents
+	 * anyway. Useful for clones which are kept around and rarely grow, i.e. cache entries (default is false).
+	 *
+	 * @param compacting true to trim the clones
+	 */
+	public void setCompacting(final boolean compacting) {
+		checkNotFrozen();
+		this.compacting = compacting;
+		invalidatePlans();
+	}
+
+	public boolean isCompactImmutableCollections() {
+		return compactCollections != null;
+	}
+
+	/**
+	 * clones ArrayLists, HashSets and HashMaps to the immutable collections of List.of, Set.of and Map.ofEntries, which
+	 * keep their contents in a single array and take a fraction of the memory of a HashMap or HashSet. Collections with
+	 * null elements, keys or values are cloned as usual. {@link #setPersistentCollections Persistent collections} take
+	 * precedence when both are enabled (default is false).
+	 * <p>
+	 * Only the collections which are the root of a clone or are referenced by fields of the types List, Set, Map,
+	 * Collection or Object are cloned so, as the immutable collections don't extend the cloned classes. Elements of
+	 * collections and arrays, and fields of other types, get ordinary clones.
+	 * <p>
+	 * NOTE: the clones of these collections can't be modified, and unlike the originals they throw a
+	 * NullPointerException when asked for null, i.e. by contains(null), get(null) or containsKey(null).
+	 *
+	 * @param compactImmutableCollections true to clone to immutable compact collections
+	 */
+	public void setCompactImmutableCollections(final boolean compactImmutableCollections) {
+		checkNotFrozen();
+		this.compactCollections = !compactImmutableCollections ? null : Map.of(
+				ArrayList.class, new CompactCollections.ListCloner(),
+				HashMap.class, new CompactCollections.MapCloner(),
+				HashSet.class, new CompactCollections.SetCloner());
+		invalidatePlans();
+	}
+
+	/**
+	 * @return true if the clones of clz are trimmed when {@link #setCompacting compacting}
+	 */
+	private static boolean isTrimmable(Class<?> clz) {
+		return ArrayList.class.isAssignableFrom(clz) || Vector.class.isAssignableFrom(clz)
+				|| clz == StringBuilder.class || clz == StringBuffer.class;
+	}
+
+	private static void trimToSize(Object o) {
+		if (o instanceof ArrayList) {
+			((ArrayList<?>) o).trimToSize();
+		} else if (o instanceof Vector) {
+			((Vector<?>) o).trimToSize();
+		} else if (o instanceof StringBuilder) {
+			((StringBuilder) o).trimToSize();
+		} else if (o instanceof StringBuffer) {
+			((StringBuffer) o).trimToSize();
+		}
 	}
 
 	private void init() {
 		registerKnownJdkImmutableClasses();
 		registerKnownConstants();
 		registerFastCloners();
+		registerGeneratedCloners();
 	}
 
 	/**
@@ -119,7 +421,72 @@ public class Cloner {
 		registerInaccessibleClassToBeFastCloned("java.util.ImmutableCollections$Set12",setOf12);
 	}
 
+	/**
+	 * registers the {@link IGeneratedCloner}s found on the classpath, see {@link GenerateCloner}. The classpath is
+	 * scanned once per class loader, later cloners reuse the generated cloners found then. Generated cloners copy every
+	 * field, so classes with fields treated differently by this cloner ({@link #setNullTransient},
+	 * {@link #nullInsteadOfCloneFieldAnnotation}, {@link #setCloneSynthetics}, {@link #setCloneAnonymousParent}) are
+	 * cloned reflectively anyway, and so are all classes while cloning strategies are registered or cloned classes are
+	 * dumped. Override this to skip or filter them.
+	 */
+	protected void registerGeneratedCloners() {
+		checkNotFrozen();
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		if (classLoader == null) classLoader = getClass().getClassLoader();
+		for (IGeneratedCloner generated : generatedCloners(classLoader)) {
+			fastCloners.put(generated.getClonedClass(), generated);
+		}
+		invalidatePlans();
+	}
+
+	// class loader -> the generated cloners it found. They reference its classes, so they are softly referenced to let
+	// the class loader be collected
+	private static final Map<ClassLoader, SoftReference<IGeneratedCloner[]>> GENERATED_CLONERS = new WeakHashMap<>();
+
+	private static IGeneratedCloner[] generatedCloners(ClassLoader classLoader) {
+		synchronized (GENERATED_CLONERS) {
+			SoftReference<IGeneratedCloner[]> found = GENERATED_CLONERS.get(classLoader);
+			IGeneratedCloner[] generated = found == null ? null : found.get();
+			if (generated != null) return generated;
+		}
+		// scanned without holding the lock as it loads classes, a concurrent scan finds the same cloners
+		List<IGeneratedCloner> l = new ArrayList<>();
+		Iterator<IGeneratedCloner> it = ServiceLoader.load(IGeneratedCloner.class, classLoader).iterator();
+		while (true) {
+			try {
+				if (!it.hasNext()) break;
+				l.add(it.next());
+			} catch (ServiceConfigurationError e) {
+				// ignore, i.e. a stale generated cloner which can't be loaded, the class is cloned reflectively
+			}
+		}
+		IGeneratedCloner[] generated = l.toArray(new IGeneratedCloner[0]);
+		synchronized (GENERATED_CLONERS) {
+			GENERATED_CLONERS.put(classLoader, new SoftReference<>(generated));
+		}
+		return generated;
+	}
+
+	/**
+	 * @return true if the reflective plan of clz would clone a field differently than a generated cloner, which clones
+	 * every field and knows neither cloning strategies nor dumping
+	 */
+	private boolean configuresFieldsOf(Class<?> clz) {
+		if (cloningStrategies != null || dumpCloned != null) return true;
+		if (!nullTransient && nullInsteadFieldAnnotations.isEmpty() && cloneSynthetics && cloneAnonymousParent) return false;
+		for (Class<?> c = clz; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field f : c.getDeclaredFields()) {
+				int modifiers = f.getModifiers();
+				if (Modifier.isStatic(modifiers)) continue;
+				if (nullTransient && Modifier.isTransient(modifiers) || CloneObjectCloner.isFieldNullInsteadBecauseOfAnnotation(this, f)) return true;
+				if (!cloneSynthetics && f.isSynthetic() || !cloneAnonymousParent && isAnonymousParent(f)) return true;
+			}
+		}
+		return false;
+	}
+
 	protected void registerInaccessibleClassToBeFastCloned(String className, IFastCloner fastCloner) {
+		checkNotFrozen();
 		try {
 			ClassLoader classLoader = getClass().getClassLoader();
 			Class<?> subListClz = classLoader.loadClass(className);
@@ -127,9 +494,70 @@ public class Cloner {
 		} catch (ClassNotFoundException e) {
 			// ignore, maybe a jdk without SubList
 		}
+		invalidatePlans();
+	}
+
+	private final IDeepCloner deepCloner = new SharingCloner(this, false);
+	private final IDeepCloner drainingCloner = new SharingCloner(this, true);
+
+	/**
+	 * the deep cloner passed to the fast cloners, which also tells them when the elements of a collection can be copied
+	 * in bulk
+	 */
+	private static class SharingCloner implements ISharingDeepCloner {
+		private final WeakReference<Cloner> owner;
+		private final boolean drain;
+
+		SharingCloner(Cloner cloner, boolean drain) {
+			this.owner = cloner.self;
+			this.drain = drain;
+		}
+
+		public <T> T deepClone(T o, Map<Object, Object> clones) {
+			final Cloner cloner = owner.get();
+			return drain ? cloner.cloneAndDrain(o, clones) : cloner.cloneInternal(o, clones);
+		}
+
+		public boolean allShared(Collection<?> c) {
+			final Cloner cloner = owner.get();
+			// an overridden cloneInternal may clone anything
+			if (!cloner.inlineCaching) return false;
+			Class<?> shared = null;
+			for (Object e : c) {
+				if (e == null) continue;
+				final Class<?> clz = e.getClass();
+				if (clz == shared) continue;
+				if (!cloner.sharesInstancesOf(clz)) return false;
+				shared = clz;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @return true if cloneInternal returns the instances of clz as they are
+	 */
+	private boolean sharesInstancesOf(Class<?> clz) {
+		if (isCommonImmutable(clz)) return canonicalTable == null || clz == Class.class;
+		return cloners.get(clz) == IGNORE_CLONER;
 	}
 
-	private final IDeepCloner deepCloner = this::cloneInternal;
+	/**
+	 * @return the index of the first element of a which cloneInternal doesn't return as it is, a.length if none
+	 */
+	private int sharedPrefix(Object[] a) {
+		if (!inlineCaching) return 0;
+		Class<?> shared = null;
+		for (int i = 0; i < a.length; i++) {
+			final Object e = a[i];
+			if (e == null) continue;
+			final Class<?> clz = e.getClass();
+			if (clz == shared) continue;
+			if (!sharesInstancesOf(clz)) return i;
+			shared = clz;
+		}
+		return a.length;
+	}
 
 	protected Object fastClone(final Object o, final Map<Object, Object> clones) {
 		final Class<?> c = o.getClass();
@@ -139,10 +567,88 @@ public class Cloner {
 	}
 
 	public void registerConstant(Object o) {
-		if (ignoredInstances == null) {
-			ignoredInstances = new IdentityHashMap<>();
+		registerConstants(Collections.singletonList(o));
+	}
+
+	/**
+	 * registers all objects as constants with a single copy of the constants
+	 */
+	void registerConstants(Collection<?> objects) {
+		checkNotFrozen();
+		IdentityMap c = new IdentityMap((constants == null ? 0 : constants.size()) + objects.size());
+		if (constants != null) c.putAll(constants);
+		for (Object o : objects) {
+			// null is never cloned anyway
+			if (o != null) c.put(o, o);
 		}
-		ignoredInstances.put(o, o);
+		constants = c;
+	}
+
+	/**
+	 * freezes root and every object reachable from it, so that they are never cloned: any clone referencing them
+	 * references the same instances, like {@link IFreezable} objects which are frozen. This is meant for data which is
+	 * published once and then only read (i.e. reference data or configuration), graphs pointing into it are cloned
+	 * without copying it again. The frozen objects must not be modified afterwards.
+	 * <p>
+	 * Objects which are never cloned (i.e. immutables) are not registered and the objects reachable only through them
+	 * are not frozen. The objects are weakly referenced, they are unregistered once garbage collected. Freezing is meant
+	 * to be rare, each call copies the registry of the frozen objects so that cloning can read it without locking.
+	 * Unlike the configuration, which {@link #isFrozen} refers to, frozen graphs can be registered with cloners built
+	 * by {@link ClonerBuilder} too, while they are cloning.
+	 *
+	 * @param root the root of the objects to be frozen
+	 */
+	public void registerFrozenGraph(final Object root) {
+		if (root == null) return;
+		synchronized (frozenInstancesLock) {
+			final FrozenInstances frozen = frozenInstances;
+			final List<Object> added = new ArrayList<>();
+			final IdentityMap seen = new IdentityMap();
+			final ArrayDeque<Object> stack = new ArrayDeque<>();
+			stack.push(root);
+			while (!stack.isEmpty()) {
+				final Object o = stack.pop();
+				final Class<?> c = o.getClass();
+				if (o == this || isCommonImmutable(c) || seen.put(o, o) != null || frozen != null && frozen.contains(o)) continue;
+				final IDeepCloner cloner = cloners.get(c);
+				if (cloner == IGNORE_CLONER || cloner == NULL_CLONER || cloner instanceof CanonicalCloner) continue;
+				added.add(o);
+				if (c.isArray()) {
+					if (!c.getComponentType().isPrimitive()) {
+						for (Object e : (Object[]) o) {
+							if (e != null) stack.push(e);
+						}
+					}
+					continue;
+				}
+				for (var entry : getFieldToCookieMap(c).entrySet()) {
+					final Field field = entry.getKey();
+					if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) continue;
+					try {
+						final Object v = Fields.ACCESSOR.get(field, entry.getValue(), o);
+						if (v != null) stack.push(v);
+					} catch (final IllegalArgumentException | IllegalAccessException e) {
+						throw new CloningException(e);
+					}
+				}
+			}
+			if (!added.isEmpty()) frozenInstances = FrozenInstances.plus(frozen, added);
+		}
+	}
+
+	private final Object frozenInstancesLock = new Object();
+
+	/**
+	 * @return the object which is the "clone" of o in every clone, o itself if it is a constant or frozen, else null
+	 */
+	Object constantOrFrozen(Object o) {
+		final IdentityMap c = constants;
+		if (c != null) {
+			final Object constant = c.get(o);
+			if (constant != null) return constant;
+		}
+		final FrozenInstances f = frozenInstances;
+		return f != null && f.contains(o) ? o : null;
 	}
 
 	public void registerConstant(Class<?> c, String privateFieldName) {
@@ -189,11 +695,14 @@ public class Cloner {
 	}
 
 	public void registerCloningStrategy(ICloningStrategy strategy) {
+		checkNotFrozen();
 		if (strategy == null) throw new NullPointerException("strategy can't be null");
 		if (cloningStrategies == null) {
 			cloningStrategies = new ArrayList<>();
 		}
 		cloningStrategies.add(strategy);
+		// strategies apply to fields which are otherwise copied by reference
+		invalidatePlans();
 	}
 
 	/**
@@ -206,14 +715,21 @@ public class Cloner {
 	 * @param classes array of classes
 	 */
 	public void registerStaticFields(final Class<?>... classes) {
-		for (final Class<?> c : classes) {
-			for (final Field field : getFieldToCookieMap(c).keySet()) {
-				final int mods = field.getModifiers();
-				if (Modifier.isStatic(mods) && !field.getType().isPrimitive()) {
-					registerConstant(c, field.getName());
+		final List<Object> values = new ArrayList<>();
+		try {
+			for (final Class<?> c : classes) {
+				for (var entry : getFieldToCookieMap(c).entrySet()) {
+					final Field field = entry.getKey();
+					final int mods = field.getModifiers();
+					if (Modifier.isStatic(mods) && !field.getType().isPrimitive()) {
+						values.add(Fields.ACCESSOR.get(field, entry.getValue(), null));
+					}
 				}
 			}
+		} catch (final SecurityException | IllegalArgumentException | IllegalAccessException e) {
+			throw new CloningException(e);
 		}
+		registerConstants(values);
 	}
 
 	/**
@@ -233,11 +749,15 @@ public class Cloner {
 	 *          be added to the clone.
 	 */
 	public void dontClone(final Class<?>... c) {
+		checkNotFrozen();
 		Collections.addAll(ignored, c);
+		invalidatePlans();
 	}
 
 	public void dontCloneInstanceOf(final Class<?>... c) {
+		checkNotFrozen();
 		Collections.addAll(ignoredInstanceOf, c);
+		invalidatePlans();
 	}
 
 	public void setDontCloneInstanceOf(final Class<?>... c) {
@@ -250,12 +770,16 @@ public class Cloner {
 	 * @param c the classes to nullify during cloning
 	 */
 	public void nullInsteadOfClone(final Class<?>... c) {
+		checkNotFrozen();
 		Collections.addAll(nullInstead, c);
+		invalidatePlans();
 	}
 
 	// spring framework friendly version of nullInsteadOfClone
 	public void setExtraNullInsteadOfClone(final Set<Class<?>> set) {
+		checkNotFrozen();
 		nullInstead.addAll(set);
+		invalidatePlans();
 	}
 
 	/**
@@ -265,12 +789,16 @@ public class Cloner {
 	 */
 	@SafeVarargs
 	final public void nullInsteadOfCloneFieldAnnotation(final Class<? extends Annotation>... a) {
+		checkNotFrozen();
 		Collections.addAll(nullInsteadFieldAnnotations, a);
+		invalidatePlans();
 	}
 
 	// spring framework friendly version of nullInsteadOfCloneAnnotation
 	public void setExtraNullInsteadOfCloneFieldAnnotation(final Set<Class<? extends Annotation>> set) {
+		checkNotFrozen();
 		nullInsteadFieldAnnotations.addAll(set);
+		invalidatePlans();
 	}
 
 	/**
@@ -279,21 +807,33 @@ public class Cloner {
 	 * @param c the immutable class
 	 */
 	public void registerImmutable(final Class<?>... c) {
+		checkNotFrozen();
 		Collections.addAll(ignored, c);
+		Collections.addAll(registeredImmutables, c);
+		invalidatePlans();
 	}
 
 	// spring framework friendly version of registerImmutable
 	public void setExtraImmutables(final Set<Class<?>> set) {
+		checkNotFrozen();
 		ignored.addAll(set);
+		registeredImmutables.addAll(set);
+		invalidatePlans();
 	}
 
 	public void registerFastCloner(final Class<?> c, final IFastCloner fastCloner) {
+		checkNotFrozen();
 		if (fastCloners.containsKey(c)) throw new IllegalArgumentException(c + " already fast-cloned!");
 		fastCloners.put(c, fastCloner);
+		if (fastCloner.getClass().getPackage() != Cloner.class.getPackage()) customFastCloned.add(c);
+		invalidatePlans();
 	}
 
 	public void unregisterFastCloner(final Class<?> c) {
+		checkNotFrozen();
 		fastCloners.remove(c);
+		customFastCloned.remove(c);
+		invalidatePlans();
 	}
 
 	/**
@@ -307,41 +847,414 @@ public class Cloner {
 		return instantiationStrategy.newInstance(c);
 	}
 
-	@SuppressWarnings("unchecked")
-	public <T> T fastCloneOrNewInstance(final Class<T> c) {
-		final T fastClone = (T) fastClone(c, null);
-		if (fastClone != null) return fastClone;
-		return newInstance(c);
+	@SuppressWarnings("unchecked")
+	public <T> T fastCloneOrNewInstance(final Class<T> c) {
+		final T fastClone = (T) fastClone(c, null);
+		if (fastClone != null) return fastClone;
+		return newInstance(c);
+	}
+
+	/**
+	 * deep clones "o".
+	 *
+	 * @param <T> the type of "o"
+	 * @param o   the object to be deep-cloned
+	 * @return a deep-clone of "o".
+	 */
+	public <T> T deepClone(final T o) {
+		if (o == null) return null;
+		if (!cloningEnabled) return o;
+		if (dumpCloned != null) {
+			dumpCloned.startCloning(o.getClass());
+		}
+		return cloneGraph(o, acquireContext(isTree(o.getClass()), o.getClass()));
+	}
+
+	/**
+	 * deep clones "o" which must be the root of a tree, that is an object graph without cycles and without objects
+	 * referenced more than once. The cloned objects are not tracked, which makes cloning trees faster. Objects met twice
+	 * are cloned twice and cycles lead to a StackOverflowError, see {@link #setVerifyTrees} to detect those.
+	 * <p>
+	 * When cloning {@link #setIterative iteratively} a cycle can't overflow the stack, so after the first 2^20 objects
+	 * the rest of the tree is verified: a cycle fails with a {@link CloningException} instead of cloning until the memory
+	 * runs out, and so does an object referenced more than once from then on.
+	 *
+	 * @param <T> the type of "o"
+	 * @param o   the root of the tree to be deep-cloned
+	 * @return a deep-clone of "o".
+	 * @see CloneAsTree
+	 */
+	public <T> T deepCloneTree(final T o) {
+		if (o == null) return null;
+		if (!cloningEnabled) return o;
+		if (dumpCloned != null) {
+			dumpCloned.startCloning(o.getClass());
+		}
+		return cloneGraph(o, acquireContext(true, o.getClass()));
+	}
+
+	/**
+	 * deep clones "o" using the threads of pool. Cloning starts on one thread and, once enough work is pending, the
+	 * independent parts of the graph (chunks of big arrays, the elements of big lists, objects with many references)
+	 * are split off to other workers. The clones are registered in a registry shared by all workers, so shared
+	 * references and cycles are cloned exactly like by {@link #deepClone}.
+	 * <p>
+	 * This pays off only for big graphs of several hundred thousand objects, smaller ones are faster cloned by
+	 * deepClone. Fast cloners which need complete elements, i.e. the ones of hash maps and sets, still clone their
+	 * elements on one thread. If two threads would need each other's clones complete, which takes hashed objects
+	 * referencing each other, the graph is cloned like by deepClone instead.
+	 *
+	 * @param <T>  the type of "o"
+	 * @param o    the object to be deep-cloned
+	 * @param pool the pool whose threads clone "o"
+	 * @return a deep-clone of "o".
+	 */
+	public <T> T deepCloneParallel(final T o, final ForkJoinPool pool) {
+		if (o == null) return null;
+		if (!cloningEnabled) return o;
+		if (dumpCloned != null) {
+			dumpCloned.startCloning(o.getClass());
+		}
+		final ParallelClone shared = new ParallelClone(this, pool.getParallelism(), isTree(o.getClass()), !cloners.substitutes.isEmpty());
+		try {
+			return pool.invoke(ForkJoinTask.adapt(() -> {
+				final ParallelContext context = new ParallelContext(shared);
+				return shared.run(context, () -> cloneRoot(o, context));
+			}));
+		} catch (ParallelClone.Aborted e) {
+			return cloneGraph(o, acquireContext(isTree(o.getClass()), o.getClass()));
+		}
+	}
+
+	/**
+	 * deep clones all roots in one pass. Unlike calling {@link #deepClone} for each root, objects referenced by more
+	 * than one root are cloned once, so the clones share them like the roots do. Null roots are kept as null.
+	 *
+	 * @param <T>   the type of the roots
+	 * @param roots the objects to be deep-cloned
+	 * @return a list with the deep-clone of each root, in the iteration order of roots
+	 */
+	public <T> List<T> deepCloneAll(final Collection<? extends T> roots) {
+		final Object[] clones = roots.toArray();
+		cloneRoots(clones);
+		@SuppressWarnings("unchecked") final List<T> list = (List<T>) new ArrayList<>(Arrays.asList(clones));
+		return list;
+	}
+
+	/**
+	 * deep clones all roots in one pass, see {@link #deepCloneAll(Collection)}.
+	 *
+	 * @param <T>   the type of the roots
+	 * @param roots the objects to be deep-cloned
+	 * @return an array of the same type as roots with the deep-clone of each root
+	 */
+	public <T> T[] deepCloneAll(final T[] roots) {
+		final T[] clones = roots.clone();
+		cloneRoots(clones);
+		return clones;
+	}
+
+	// caps the presizing of the clones map of deepCloneAll, the number of clones per root is only a guess
+	private static final int MAX_EXPECTED_BATCH_SIZE = 1 << 20;
+
+	/**
+	 * replaces each root by its deep-clone, using one clones map for all of them
+	 */
+	private void cloneRoots(final Object[] roots) {
+		if (!cloningEnabled || roots.length == 0) return;
+		Class<?> first = null;
+		for (int i = 0; i < roots.length && first == null; i++) {
+			if (roots[i] != null) first = roots[i].getClass();
+		}
+		if (first == null) return;
+		final long expectedSize = (long) graphSizes.get(first)[0] * roots.length;
+		final CloneContext context = acquireContext(false, (int) Math.min(expectedSize, MAX_EXPECTED_BATCH_SIZE));
+		try {
+			final Plans plans = cloners;
+			// rows of a batch are usually of the same class, so its plan is looked up once
+			Class<?> lastClass = null;
+			IDeepCloner lastCloner = null;
+			for (int i = 0; i < roots.length; i++) {
+				final Object o = roots[i];
+				if (o == null) continue;
+				final Class<?> c = o.getClass();
+				if (dumpCloned != null) {
+					dumpCloned.startCloning(c);
+				}
+				if (!inlineCaching) {
+					roots[i] = cloneInternal(o, context);
+				} else if (o != this) {
+					if (c != lastClass) {
+						lastClass = c;
+						final IDeepCloner substitute = plans.substitute(c);
+						lastCloner = substitute != null ? substitute : plans.get(c);
+					}
+					roots[i] = cloneKnown(o, lastCloner, context);
+				} else {
+					roots[i] = null;
+				}
+				if (context.iterative) context.drain(0);
+			}
+		} finally {
+			releaseContext(context);
+		}
+	}
+
+	/**
+	 * returns a copy-on-write deep clone of the list. Until it is modified, the returned list reads the original and
+	 * clones only the elements it hands out (each element once), so read-mostly callers are isolated from the original
+	 * without paying for cloning all of it. The first modification deep clones the whole list, keeping the elements
+	 * handed out so far.
+	 * <p>
+	 * The original must not be modified while the returned list is used, as it is shared until the first modification.
+	 * The returned list isn't thread safe.
+	 *
+	 * @param <T> the type of the elements
+	 * @param o   the list to be cloned
+	 * @return a lazy deep-clone of "o"
+	 */
+	public <T> List<T> lazyClone(final List<T> o) {
+		if (o == null) return null;
+		if (!cloningEnabled) return o;
+		return new LazyClones.LazyList<>(o, lazyCloner());
+	}
+
+	/**
+	 * returns a copy-on-write deep clone of the set, see {@link #lazyClone(List)}.
+	 *
+	 * @param <T> the type of the elements
+	 * @param o   the set to be cloned
+	 * @return a lazy deep-clone of "o"
+	 */
+	public <T> Set<T> lazyClone(final Set<T> o) {
+		if (o == null) return null;
+		if (!cloningEnabled) return o;
+		return new LazyClones.LazySet<>(o, lazyCloner());
+	}
+
+	/**
+	 * returns a copy-on-write deep clone of the map, see {@link #lazyClone(List)}. Keys and values are cloned when they
+	 * are handed out, i.e. by get() or while iterating.
+	 *
+	 * @param <K> the type of the keys
+	 * @param <V> the type of the values
+	 * @param o   the map to be cloned
+	 * @return a lazy deep-clone of "o"
+	 */
+	public <K, V> Map<K, V> lazyClone(final Map<K, V> o) {
+		if (o == null) return null;
+		if (!cloningEnabled) return o;
+		return new LazyClones.LazyMap<>(o, lazyCloner());
+	}
+
+	/**
+	 * @return clones with a context of its own, which lives as long as the lazy clone using it
+	 */
+	private UnaryOperator<Object> lazyCloner() {
+		final CloneContext context = new CloneContext(this).reset(false, iterative, 0);
+		return e -> context.iterative ? cloneAndDrain(e, context) : cloneInternal(e, context);
+	}
+
+	public <T> T deepCloneDontCloneInstances(final T o, final Object... dontCloneThese) {
+		if (o == null) return null;
+		if (!cloningEnabled) return o;
+		if (dumpCloned != null) {
+			dumpCloned.startCloning(o.getClass());
+		}
+		final CloneContext clones = acquireContext(false, o.getClass());
+		for (final Object dc : dontCloneThese) {
+			if (dc != null) clones.put(dc, dc);
+		}
+		return cloneGraph(o, clones);
+	}
+
+	/**
+	 * deep clones "original" again, reusing the parts of previousClone which are still up to date. previousClone must be
+	 * a clone of an earlier state of original (i.e. returned by deepClone or a previous refreshClone) which wasn't
+	 * modified since. Both graphs are walked together and an object of previousClone is reused when the fields of its
+	 * original still have the values they had when it was cloned, and the same is true for everything reachable from it.
+	 * Only the changed objects and the ones referencing them are cloned again, so when a small part of a big graph
+	 * changes, the new clone allocates only that part.
+	 * <p>
+	 * The fields are compared by value for primitives and by reference otherwise. Lists, maps and sets which are fast
+	 * cloned are compared element by element, unordered ones (HashMap, HashSet, ConcurrentHashMap) only when their keys
+	 * aren't cloned. Objects of previousClone are reused by both clones, so neither must be modified afterwards.
+	 * <p>
+	 * Nothing is reused for an unordered collection whose elements or keys are cloned, i.e. a HashSet of mutable
+	 * objects, as the previous clones of its elements can't be paired with the elements. It is always reported as
+	 * changed, so it is cloned again with its elements (unless they are reachable otherwise) and with every object
+	 * referencing it up to the root. The same is true for fast cloned objects other than collections and maps. A graph
+	 * whose root is such a collection is cloned completely every time.
+	 *
+	 * @param <T>           the type of original
+	 * @param original      the object to be deep-cloned
+	 * @param previousClone a clone of original made earlier, or null
+	 * @return a deep-clone of original sharing the up to date objects of previousClone
+	 */
+	public <T> T refreshClone(final T original, final T previousClone) {
+		if (original == null) return null;
+		if (!cloningEnabled) return original;
+		if (previousClone == null) return deepClone(original);
+		if (dumpCloned != null) {
+			dumpCloned.startCloning(original.getClass());
+		}
+		final CloneDiff diff = new CloneDiff(this);
+		diff.compare(original, previousClone);
+		final CloneContext context = acquireContext(false, graphSizes.get(original.getClass())[0]);
+		diff.reuse(context);
+		return cloneGraph(original, context);
+	}
+
+	// returned by expectedClone() for values which are cloned
+	static final Object CLONED = new Object();
+
+	/**
+	 * @return what every clone references instead of v, or CLONED if v is cloned
+	 */
+	Object expectedClone(Object v) {
+		if (v == null || v == this) return null;
+		final Class<?> c = v.getClass();
+		if (isCommonImmutable(c) && canonicalTable == null) return v;
+		final IDeepCloner cloner = cloners.get(c);
+		if (cloner == IGNORE_CLONER) return v;
+		if (cloner == NULL_CLONER) return null;
+		if (cloner instanceof CanonicalCloner) return ((CanonicalCloner) cloner).table.intern(v);
+		if (cloner instanceof IFreezableCloner && ((IFreezable) v).isFrozen()) return v;
+		final Object constant = constantOrFrozen(v);
+		return constant != null ? constant : CLONED;
+	}
+
+	/**
+	 * deep clones src into dest, an existing graph which is overwritten. dest and the objects reachable from it are
+	 * reused as the clones of the objects of src at the same place, provided they are of the same class (and arrays of the
+	 * same length), the rest is cloned like by {@link #deepClone}. This way a graph which is cloned repeatedly, i.e. into
+	 * alternating buffers, doesn't allocate a new clone every time.
+	 * <p>
+	 * Objects are filled field by field. ArrayLists, LinkedLists, HashMaps, LinkedHashMaps, HashSets, LinkedHashSets and
+	 * ConcurrentHashMaps are cleared and refilled, their elements (and the values of maps) reuse the elements at the same
+	 * position (or key) of the destination collection. Objects of dest which aren't reused are dropped, an object of dest
+	 * is reused at most once. Neither graph must be used by other threads meanwhile.
+	 *
+	 * @param <T>  the type of src
+	 * @param src  the object to be deep-cloned
+	 * @param dest the graph to clone into, or null
+	 * @return the deep-clone of src, which is dest unless it is of another class
+	 */
+	public <T> T deepCloneInto(final T src, final T dest) {
+		if (src == null) return null;
+		if (!cloningEnabled) return src;
+		if (dest == null) return deepClone(src);
+		if (dumpCloned != null) {
+			dumpCloned.startCloning(src.getClass());
+		}
+		final CloneContext context = acquireContext(false, src.getClass());
+		try {
+			@SuppressWarnings("unchecked") final T clone = (T) new CloneInto(this, context).cloneInto(src, dest);
+			graphSizes.get(src.getClass())[0] = context.size();
+			return clone;
+		} catch (IllegalAccessException e) {
+			throw new CloningException(e);
+		} finally {
+			releaseContext(context);
+		}
+	}
+
+	// the collections which can be cleared and refilled instead of cloned, with their default fast cloners
+	static final Map<Class<?>, Class<?>> REFILLABLE = Map.of(
+			ArrayList.class, FastClonerArrayList.class,
+			LinkedList.class, FastClonerLinkedList.class,
+			HashMap.class, FastClonerHashMap.class,
+			LinkedHashMap.class, FastClonerLinkedHashMap.class,
+			HashSet.class, FastClonerHashSet.class,
+			LinkedHashSet.class, FastClonerLinkedHashSet.class,
+			ConcurrentHashMap.class, FastClonerConcurrentHashMap.class);
+
+	private static final int POOL_SIZE = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+	/*
+	 * contexts ready for reuse. Slots are picked by thread id, so that threads mostly don't contend, but any thread can
+	 * take any context which also makes the pool work for virtual threads (unlike a ThreadLocal it doesn't hold one
+	 * context per thread)
+	 */
+	private final AtomicReferenceArray<CloneContext> contextPool = new AtomicReferenceArray<>(POOL_SIZE);
+
+	private static int poolSlot() {
+		@SuppressWarnings("deprecation") long id = Thread.currentThread().getId();
+		return (int) (id * 0x9E3779B97F4A7C15L >>> 40) & (POOL_SIZE - 1);
+	}
+
+	private CloneContext acquireContext(boolean tree, Class<?> root) {
+		return acquireContext(tree, tree ? 0 : graphSizes.get(root)[0]);
+	}
+
+	private CloneContext acquireContext(boolean tree, int expectedSize) {
+		int slot = poolSlot();
+		for (int i = 0; i < 2; i++) {
+			CloneContext context = contextPool.getAndSet((slot + i) & (POOL_SIZE - 1), null);
+			if (context != null) return context.reset(tree, iterative, expectedSize);
+		}
+		return new CloneContext(this).reset(tree, iterative, expectedSize);
+	}
+
+	private void releaseContext(CloneContext context) {
+		if (!context.clearForReuse()) return;
+		int slot = poolSlot();
+		for (int i = 0; i < 2; i++) {
+			if (contextPool.compareAndSet((slot + i) & (POOL_SIZE - 1), null, context)) return;
+		}
 	}
 
 	/**
-	 * deep clones "o".
-	 *
-	 * @param <T> the type of "o"
-	 * @param o   the object to be deep-cloned
-	 * @return a deep-clone of "o".
+	 * the number of clones of the last graph cloned per root class, used to presize the clones map of the next one
 	 */
-	public <T> T deepClone(final T o) {
-		if (o == null) return null;
-		if (!cloningEnabled) return o;
-		if (dumpCloned != null) {
-			dumpCloned.startCloning(o.getClass());
+	private static class GraphSizes extends ClassValue<int[]> {
+		@Override
+		protected int[] computeValue(Class<?> type) {
+			return new int[1];
 		}
-		Map<Object, Object> clones = new ClonesMap();
-		return cloneInternal(o, clones);
 	}
 
-	public <T> T deepCloneDontCloneInstances(final T o, final Object... dontCloneThese) {
-		if (o == null) return null;
-		if (!cloningEnabled) return o;
-		if (dumpCloned != null) {
-			dumpCloned.startCloning(o.getClass());
-		}
-		final Map<Object, Object> clones = new ClonesMap();
-		for (final Object dc : dontCloneThese) {
-			clones.put(dc, dc);
+	private final GraphSizes graphSizes = new GraphSizes();
+
+	private boolean isTree(final Class<?> clz) {
+		return trees.get(clz);
+	}
+
+	private <T> T cloneGraph(final T o, final CloneContext context) {
+		try {
+			final T clone = cloneRoot(o, context);
+			if (!context.tree) {
+				// racy but only a hint
+				graphSizes.get(o.getClass())[0] = context.size();
+			}
+			return clone;
+		} finally {
+			releaseContext(context);
 		}
-		return cloneInternal(o, clones);
+	}
+
+	/**
+	 * clones the root of a graph, which unlike other objects can be cloned to a persistent or compact collection
+	 */
+	private <T> T cloneRoot(final T o, final CloneContext context) {
+		final IDeepCloner substitute = inlineCaching ? cloners.substitute(o.getClass()) : null;
+		if (substitute == null) return context.iterative ? cloneAndDrain(o, context) : cloneInternal(o, context);
+		final int mark = context.pendingSize;
+		final T clone = cloneKnown(o, substitute, context);
+		if (context.iterative) context.drain(mark);
+		return clone;
+	}
+
+	/**
+	 * clones o and fills all clones allocated meanwhile, so that the returned clone is complete
+	 */
+	<T> T cloneAndDrain(final T o, final Map<Object, Object> clones) {
+		final CloneContext context = (CloneContext) clones;
+		final int mark = context.pendingSize;
+		final T clone = cloneInternal(o, clones);
+		// o was met before, its clone may still be pending while the caller i.e. hashes it
+		if (context.pendingSize == mark && clone != o && clone != null) context.complete(o, clone);
+		context.drain(mark);
+		return clone;
 	}
 
 	/**
@@ -359,8 +1272,20 @@ public class Cloner {
 	}
 
 	// caches immutables for quick reference
-	private final ConcurrentHashMap<Class<?>, Boolean> immutables = new ConcurrentHashMap<>();
+	private final ClassValue<Boolean> immutables = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> clz) {
+			return considerImmutable(clz) || isAnnotatedImmutable(clz);
+		}
+	};
 	private boolean cloneAnonymousParent = true;
+	// caches the CloneAsTree roots
+	private static final ClassValue<Boolean> trees = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> clz) {
+			return clz.isAnnotationPresent(CloneAsTree.class);
+		}
+	};
 
 	/**
 	 * override this to decide if a class is immutable. Immutable classes are not cloned.
@@ -383,14 +1308,13 @@ public class Cloner {
 	 * @return true if the clz is considered immutable
 	 */
 	private boolean isImmutable(final Class<?> clz) {
-		final Boolean isIm = immutables.get(clz);
-		if (isIm != null) return isIm;
-		if (considerImmutable(clz)) return true;
+		return immutables.get(clz);
+	}
 
+	private boolean isAnnotatedImmutable(final Class<?> clz) {
 		final Class<?> immutableAnnotation = getImmutableAnnotation();
 		for (final Annotation annotation : clz.getDeclaredAnnotations()) {
 			if (annotation.annotationType() == immutableAnnotation) {
-				immutables.put(clz, Boolean.TRUE);
 				return true;
 			}
 		}
@@ -400,20 +1324,99 @@ public class Cloner {
 				if (annotation.annotationType() == Immutable.class) {
 					final Immutable im = (Immutable) annotation;
 					if (im.subClass()) {
-						immutables.put(clz, Boolean.TRUE);
 						return true;
 					}
 				}
 			}
 			c = c.getSuperclass();
 		}
-		immutables.put(clz, Boolean.FALSE);
 		return false;
 	}
 
-	private final Map<Class<?>, IDeepCloner> cloners = new ConcurrentHashMap<>();
+	/**
+	 * the cloner of each class. A ClassValue doesn't keep the classes (and their classloaders) alive. When the
+	 * configuration changes the whole ClassValue is replaced, which drops all plans at once and the stale ones are
+	 * rebuilt on their next use.
+	 */
+	private class Plans extends ClassValue<IDeepCloner> {
+		// the cloners of the collections cloned to persistent or compact ones, see substitute()
+		private final Map<Class<?>, IDeepCloner> substitutes = substituteCloners();
+
+		@Override
+		protected IDeepCloner computeValue(Class<?> type) {
+			return findDeepCloner(type);
+		}
+
+		/**
+		 * @return the cloner which clones instances of type to another class, or null. Those clones are only assignable
+		 * to the root of a clone and to fields of interface types, see {@link #isSubstitutable}
+		 */
+		IDeepCloner substitute(Class<?> type) {
+			return substitutes.isEmpty() ? null : substitutes.get(type);
+		}
+	}
+
+	private Map<Class<?>, IDeepCloner> substituteCloners() {
+		final Map<Class<?>, IDeepCloner> m = new HashMap<>();
+		if (persistentCollections != null) {
+			for (Map.Entry<Class<?>, IFastCloner> e : persistentCollections.entrySet()) {
+				m.put(e.getKey(), new SubstituteCloner(this, e.getValue()));
+			}
+		}
+		// persistent collections take precedence
+		if (compactCollections != null) {
+			for (Map.Entry<Class<?>, IFastCloner> e : compactCollections.entrySet()) {
+				m.putIfAbsent(e.getKey(), new SubstituteCloner(this, e.getValue()));
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * @return true if a field of the type can reference the persistent or compact collection which substitutes a
+	 * collection
+	 */
+	private static boolean isSubstitutable(Class<?> type) {
+		return type == Object.class || type == Collection.class || type == List.class || type == Set.class || type == Map.class;
+	}
+
+	private volatile Plans cloners = new Plans();
+
+	/**
+	 * @return the plan cloning the instances of c, without the check for frozen instances
+	 */
+	IDeepCloner planOf(Class<?> c) {
+		final IDeepCloner cloner = cloners.get(c);
+		return cloner instanceof IFreezableCloner ? ((IFreezableCloner) cloner).cloner : cloner;
+	}
+
+	/**
+	 * freezes the configuration, called once a cloner built by {@link ClonerBuilder} is configured
+	 */
+	private void freezeConfiguration() {
+		frozen = true;
+		// the plans cached so far were computed while configuring, they are recomputed from the frozen configuration
+		invalidatePlans();
+	}
+
+	/**
+	 * @return true if the configuration of this cloner can't change, see {@link ClonerBuilder}
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) throw new IllegalStateException("the configuration of a cloner built by ClonerBuilder can't be changed");
+	}
+
+	/**
+	 * drops the cached per class cloners, called by every configuration change that affects how a class is cloned
+	 */
+	private void invalidatePlans() {
+		cloners = new Plans();
+	}
 
-	@SuppressWarnings("unchecked")
 	protected <T> T cloneInternal(T o, Map<Object, Object> clones) {
 		if (o == null) return null;
 		if (o == this) return null;
@@ -423,23 +1426,28 @@ public class Cloner {
 		// Fast path: most common immutable types - avoid all map lookups
 		// These classes are final and extremely common as field values,
 		// so checking them directly is faster than any map lookup
-		if (aClass == String.class || aClass == Integer.class || aClass == Long.class
-			|| aClass == Boolean.class || aClass == Double.class || aClass == Class.class
-			|| aClass == BigDecimal.class) {
-			return o;
+		if (isCommonImmutable(aClass)) {
+			final CanonicalTable canonical = canonicalTable;
+			@SuppressWarnings("unchecked") final T c = canonical == null || aClass == Class.class ? o : (T) canonical.intern(o);
+			return c;
 		}
 
 		// Check cloner cache before cycle detection. For immutable classes,
-		// this avoids the expensive IdentityHashMap.get() call entirely.
-		IDeepCloner cloner = cloners.get(aClass);
-		if (cloner == null) {
-			cloner = findDeepCloner(aClass);
-			cloners.put(aClass, cloner);
-		}
+		// this avoids the clones map lookup entirely.
+		return cloneKnown(o, cloners.get(aClass), clones);
+	}
+
+	/**
+	 * clones o whose cloner is already known
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T cloneKnown(T o, IDeepCloner cloner, Map<Object, Object> clones) {
 		if (cloner == IGNORE_CLONER) {
 			return o;
 		} else if (cloner == NULL_CLONER) {
 			return null;
+		} else if (cloner instanceof CanonicalCloner) {
+			return (T) ((CanonicalCloner) cloner).table.intern(o);
 		}
 
 		// Cycle detection - only needed for mutable objects
@@ -450,26 +1458,144 @@ public class Cloner {
 			}
 		}
 
+		if (clones instanceof CloneContext && ((CloneContext) clones).iterative) return (T) ((CloneContext) clones).defer(o, cloner);
 		return cloner.deepClone(o, clones);
 	}
 
+	private static boolean isCommonImmutable(Class<?> aClass) {
+		return aClass == String.class || aClass == Integer.class || aClass == Long.class
+			|| aClass == Boolean.class || aClass == Double.class || aClass == Class.class
+			|| aClass == BigDecimal.class;
+	}
+
+	/**
+	 * @return true if instances of clz are never cloned, that is {@link #findDeepCloner} returns IGNORE_CLONER for it.
+	 * Unlike looking up the cloner of clz, this doesn't create any plans so it can be used while creating one.
+	 */
+	private boolean isIgnorable(Class<?> clz) {
+		if (canonicalizes(clz)) return false;
+		if (isCommonImmutable(clz) || Enum.class.isAssignableFrom(clz)) return true;
+		if (IFreezable.class.isAssignableFrom(clz) || nullInstead.contains(clz)) return false;
+		if (ignored.contains(clz) || isImmutable(clz)) return true;
+		if (clz.isArray() || fastCloners.containsKey(clz)) return false;
+		for (final Class<?> iClz : ignoredInstanceOf) {
+			if (iClz.isAssignableFrom(clz)) return true;
+		}
+		return false;
+	}
+
+	// per field inline caches would bypass an overridden cloneInternal
+	private final boolean inlineCaching = !overridesCloneInternal();
+
+	private boolean overridesCloneInternal() {
+		for (Class<?> c = getClass(); c != Cloner.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod("cloneInternal", Object.class, Map.class);
+				return true;
+			} catch (NoSuchMethodException e) {
+				// not overridden here
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * the cloners of the last classes seen in a field, replaced as a whole so that it can be shared between threads. The
+	 * class and its cloner are referenced weakly: the plan holding the cache can be cached on a class of a parent class
+	 * loader (i.e. Object[] or Optional) and must not keep the class loaders of the values alive
+	 */
+	private static final class InlineCache {
+		// fields which keep seeing new classes stop being cached after this many misses
+		private static final int MAX_MISSES = 8;
+		private static final WeakReference<Class<?>> NO_CLASS = new WeakReference<>(null);
+		private static final InlineCache MEGAMORPHIC = new InlineCache(NO_CLASS, null, null, MAX_MISSES);
+
+		private final WeakReference<Class<?>> class1;
+		// the cloner is cached by the plans of class1, so it is reachable as long as class1 is
+		private final WeakReference<IDeepCloner> cloner1;
+		private final InlineCache previous;
+		private final int misses;
+
+		InlineCache(WeakReference<Class<?>> class1, WeakReference<IDeepCloner> cloner1, InlineCache previous, int misses) {
+			this.class1 = class1;
+			this.cloner1 = cloner1;
+			this.previous = previous;
+			this.misses = misses;
+		}
+	}
+
+	/**
+	 * clones the values of a single field of a class plan. The cloners of the last two classes seen in the field are
+	 * remembered, so that for (mostly) monomorphic fields the cloners don't have to be looked up per value.
+	 */
+	static final class FieldCloner implements BiFunction<Object, Object, Object> {
+		private final WeakReference<Cloner> owner;
+		// true if the field can reference a persistent or compact collection, see isSubstitutable
+		private final boolean substituting;
+		private InlineCache cache;
+
+		FieldCloner(Cloner cloner, boolean substituting) {
+			this.owner = cloner.self;
+			this.substituting = substituting;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Object apply(Object o, Object clones) {
+			return cloneValue(o, (Map<Object, Object>) clones);
+		}
+
+		Object cloneValue(Object o, Map<Object, Object> clones) {
+			final Cloner cloner = owner.get();
+			if (o == null || o == cloner) return null;
+			final Class<?> c = o.getClass();
+			final InlineCache ic = cache;
+			if (ic != null) {
+				if (ic.class1.get() == c) {
+					final IDeepCloner cached = ic.cloner1.get();
+					if (cached != null) return cloner.cloneKnown(o, cached, clones);
+				} else {
+					final InlineCache second = ic.previous;
+					if (second != null && second.class1.get() == c) {
+						final IDeepCloner cached = second.cloner1.get();
+						if (cached != null) return cloner.cloneKnown(o, cached, clones);
+					}
+				}
+				if (ic == InlineCache.MEGAMORPHIC) return cloner.cloneInternal(o, clones);
+			}
+			final Plans plans = cloner.cloners;
+			final IDeepCloner substitute = substituting ? plans.substitute(c) : null;
+			final IDeepCloner deepCloner = substitute != null ? substitute : plans.get(c);
+			final int misses = ic == null ? 0 : ic.misses + 1;
+			// keep just the current and the previous class
+			cache = misses >= InlineCache.MAX_MISSES ? InlineCache.MEGAMORPHIC
+					: new InlineCache(new WeakReference<>(c), new WeakReference<>(deepCloner),
+					ic == null ? null : new InlineCache(ic.class1, ic.cloner1, null, 0), misses);
+			return cloner.cloneKnown(o, deepCloner, clones);
+		}
+	}
+
 	private IDeepCloner findDeepCloner(Class<?> clz) {
 		if (Enum.class.isAssignableFrom(clz)) {
 			return IGNORE_CLONER;
 		} else if (IFreezable.class.isAssignableFrom(clz)) {
-			return new IFreezableCloner(clz);
+			return new IFreezableCloner(newObjectCloner(clz));
 		} else if (nullInstead.contains(clz)) {
 			return NULL_CLONER;
+		} else if (canonicalizes(clz)) {
+			return new CanonicalCloner(canonicalTable);
 		} else if (ignored.contains(clz)) {
 			return IGNORE_CLONER;
 		} else if (isImmutable(clz)) {
 			return IGNORE_CLONER;
 		} else if (clz.isArray()) {
-			return new CloneArrayCloner(clz);
+			return new CloneArrayCloner(this, clz);
 		} else {
-			final IFastCloner fastCloner = fastCloners.get(clz);
+			IFastCloner fastCloner = fastCloners.get(clz);
+			// generated cloners copy every field
+			if (fastCloner instanceof IGeneratedCloner && configuresFieldsOf(clz)) fastCloner = null;
 			if (fastCloner != null) {
-				return new FastClonerCloner(fastCloner);
+				return new FastClonerCloner(this, clz, fastCloner);
 			} else {
 				for (final Class<?> iClz : ignoredInstanceOf) {
 					if (iClz.isAssignableFrom(clz)) {
@@ -478,61 +1604,174 @@ public class Cloner {
 				}
 			}
 		}
-		return new CloneObjectCloner(clz);
+		return newObjectCloner(clz);
 	}
 
-	private class CloneArrayCloner implements IDeepCloner {
-
-		private final boolean primitive;
-		private final boolean immutable;
-		private final Class<?> componentType;
+	private CloneObjectCloner newObjectCloner(Class<?> clz) {
+		// only the reflective engine trims
+		if (compacting && isTrimmable(clz)) return new CloneObjectCloner(this, clz);
+		switch (engine) {
+			case GENERATED:
+				return HiddenClassCopiers.isAvailable() ? new GeneratedObjectCloner(this, clz) : new HandleObjectCloner(this, clz);
+			case HANDLES:
+				return new HandleObjectCloner(this, clz);
+			default:
+				return new CloneObjectCloner(this, clz);
+		}
+	}
 
-		CloneArrayCloner(Class<?> clz) {
-			primitive = clz.getComponentType().isPrimitive();
-			immutable = isImmutable(clz.getComponentType());
-			componentType = clz.getComponentType();
+	static class CloneArrayCloner implements IDeferredCloner {
+		private final WeakReference<Cloner> owner;
+		final boolean primitive;
+		final boolean immutable;
+		private final IDumpCloned dump;
+		// the cloner of the elements when the component type is final (including arrays, so multi-dimensional arrays
+		// get a plan per dimension) so that it doesn't have to be looked up per element. It's referenced strongly as
+		// the array class has the class loader of its component type, so this plan can't outlive the component type
+		private final IDeepCloner componentCloner;
+		// inline cache for the elements otherwise, null if inline caching is off
+		private final FieldCloner elementCloner;
+
+		CloneArrayCloner(Cloner cloner, Class<?> clz) {
+			owner = cloner.self;
+			dump = cloner.dumpCloned;
+			Class<?> componentType = clz.getComponentType();
+			primitive = componentType.isPrimitive();
+			immutable = cloner.isImmutable(componentType) && !cloner.canonicalizes(componentType);
+			boolean known = !primitive && !immutable && cloner.inlineCaching && Modifier.isFinal(componentType.getModifiers());
+			componentCloner = known ? cloner.cloners.get(componentType) : null;
+			elementCloner = !primitive && !immutable && cloner.inlineCaching && !known ? new FieldCloner(cloner, false) : null;
 		}
 
 		public <T> T deepClone(T o, Map<Object, Object> clones) {
-			if (dumpCloned != null) {
-				dumpCloned.startCloning(o.getClass());
+			@SuppressWarnings("unchecked") T newInstance = (T) allocate(o, clones);
+			fill(o, newInstance, clones);
+			return newInstance;
+		}
+
+		/**
+		 * clones the array itself, so the elements are already copied by reference and only need to be replaced by their
+		 * clones
+		 */
+		public Object allocate(Object o, Map<Object, Object> clones) {
+			if (dump != null) {
+				dump.startCloning(o.getClass());
 			}
-			int length = Array.getLength(o);
-			@SuppressWarnings("unchecked") T newInstance = (T) Array.newInstance(componentType, length);
+			Object newInstance = primitive ? clonePrimitiveArray(o) : ((Object[]) o).clone();
 			if (clones != null) {
 				clones.put(o, newInstance);
 			}
-			if (primitive || immutable) {
-				System.arraycopy(o, 0, newInstance, 0, length);
+			return newInstance;
+		}
+
+		public void fill(Object o, Object newInstance, Map<Object, Object> clones) {
+			if (primitive || immutable || clones == null || componentCloner == IGNORE_CLONER) return;
+			final Object[] src = (Object[]) o;
+			final Object[] dst = (Object[]) newInstance;
+			if (clones instanceof ParallelContext && src.length >= ParallelContext.PARALLEL_ARRAY_CHUNK * 2) {
+				((ParallelContext) clones).fillInChunks(this, src, dst);
 			} else {
-				if (clones == null) {
-					for (int i = 0; i < length; i++) {
-						Array.set(newInstance, i, Array.get(o, i));
-					}
-				} else {
-					for (int i = 0; i < length; i++) {
-						Array.set(newInstance, i, cloneInternal(Array.get(o, i), clones));
-					}
+				// the clone already references the elements which aren't cloned, i.e. all of them for an Object[] of strings
+				final int from = componentCloner == null ? owner.get().sharedPrefix(src) : 0;
+				fillRange(src, dst, from, src.length, clones);
+			}
+		}
+
+		void fillRange(final Object[] src, final Object[] dst, final int from, final int to, Map<Object, Object> clones) {
+			if (componentCloner != null) {
+				final Cloner owner = this.owner.get();
+				final IDeepCloner cloner = componentCloner;
+				for (int i = from; i < to; i++) {
+					final Object e = src[i];
+					if (e != null) dst[i] = owner.cloneKnown(e, cloner, clones);
+				}
+			} else if (elementCloner != null) {
+				final FieldCloner cloner = elementCloner;
+				for (int i = from; i < to; i++) {
+					dst[i] = cloner.cloneValue(src[i], clones);
+				}
+			} else {
+				final Cloner owner = this.owner.get();
+				for (int i = from; i < to; i++) {
+					dst[i] = owner.cloneInternal(src[i], clones);
 				}
 			}
-			return newInstance;
 		}
 	}
 
-	private class FastClonerCloner implements IDeepCloner {
+	private static Object clonePrimitiveArray(Object o) {
+		if (o instanceof int[]) return ((int[]) o).clone();
+		if (o instanceof long[]) return ((long[]) o).clone();
+		if (o instanceof byte[]) return ((byte[]) o).clone();
+		if (o instanceof double[]) return ((double[]) o).clone();
+		if (o instanceof char[]) return ((char[]) o).clone();
+		if (o instanceof boolean[]) return ((boolean[]) o).clone();
+		if (o instanceof float[]) return ((float[]) o).clone();
+		return ((short[]) o).clone();
+	}
+
+	static class FastClonerCloner implements IDeepCloner {
 		private final IFastCloner fastCloner;
 		private final IDeepCloner cloneInternal;
+		private final IDeepCloner cloneIteratively;
+		// the released collections reused as clones, null unless recycling a collection with its default fast cloner
+		private final CloneRecycler.Pool pool;
 
-		FastClonerCloner(IFastCloner fastCloner) {
+		FastClonerCloner(Cloner cloner, Class<?> clz, IFastCloner fastCloner) {
 			this.fastCloner = fastCloner;
-			this.cloneInternal = deepCloner;
+			this.cloneInternal = cloner.deepCloner;
+			// when cloning iteratively, the elements have to be complete unless the fast cloner doesn't look at them
+			this.cloneIteratively = fastCloner instanceof IElementAgnosticFastCloner ? cloner.deepCloner : cloner.drainingCloner;
+			final CloneRecycler recycler = cloner.recycler;
+			this.pool = recycler != null && REFILLABLE.get(clz) == fastCloner.getClass() ? recycler.pool(clz) : null;
 		}
 
 		public <T> T deepClone(T o, Map<Object, Object> clones) {
-			@SuppressWarnings("unchecked") T clone = (T) fastCloner.clone(o, cloneInternal, clones);
+			final IDeepCloner cloner = clones instanceof CloneContext && ((CloneContext) clones).iterative ? cloneIteratively : cloneInternal;
+			final Object pooled = pool == null ? null : pool.poll();
+			@SuppressWarnings("unchecked") T clone = (T) (pooled != null ? refill(o, pooled, cloner, clones) : fastCloner.clone(o, cloner, clones));
 			if (clones != null) clones.put(o, clone);
 			return clone;
 		}
+
+		/**
+		 * adds the clones of the elements of o to the empty collection c, like the default fast cloner of the class does
+		 */
+		@SuppressWarnings("unchecked")
+		private Object refill(Object o, Object c, IDeepCloner cloner, Map<Object, Object> clones) {
+			if (o instanceof Map) {
+				final Map<Object, Object> m = (Map<Object, Object>) c;
+				for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet()) {
+					m.put(cloner.deepClone(e.getKey(), clones), cloner.deepClone(e.getValue(), clones));
+				}
+			} else {
+				final Collection<Object> l = (Collection<Object>) c;
+				if (l instanceof ArrayList) ((ArrayList<Object>) l).ensureCapacity(((ArrayList<?>) o).size());
+				for (Object e : (Collection<?>) o) {
+					l.add(cloner.deepClone(e, clones));
+				}
+			}
+			return c;
+		}
+
+		/**
+		 * pushes the elements of the released collection o to pending, clears o and pools it
+		 */
+		void recycle(Object o, ArrayDeque<Object> pending) {
+			if (o instanceof Map) {
+				for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet()) {
+					if (e.getKey() != null) pending.push(e.getKey());
+					if (e.getValue() != null) pending.push(e.getValue());
+				}
+				if (pool != null) ((Map<?, ?>) o).clear();
+			} else if (o instanceof Collection) {
+				for (Object e : (Collection<?>) o) {
+					if (e != null) pending.push(e);
+				}
+				if (pool != null) ((Collection<?>) o).clear();
+			}
+			if (pool != null) pool.offer(o);
+		}
 	}
 
 	private static final IDeepCloner IGNORE_CLONER = new IgnoreClassCloner();
@@ -544,17 +1783,65 @@ public class Cloner {
 		}
 	}
 
+	/**
+	 * replaces immutable values by their canonical instances, see {@link #setCanonicalizing}
+	 */
+	private static class CanonicalCloner implements IDeepCloner {
+		final CanonicalTable table;
+
+		CanonicalCloner(CanonicalTable table) {
+			this.table = table;
+		}
+
+		@SuppressWarnings("unchecked")
+		public <T> T deepClone(T o, Map<Object, Object> clones) {
+			return (T) table.intern(o);
+		}
+	}
+
+	/**
+	 * clones a collection to a persistent or compact one, which can't be referenced by the fields of the cloned class. So
+	 * unlike the other clones these aren't registered in the clones map but apart, see {@link CloneContext#substituteOf},
+	 * and a field of the cloned class referencing the same collection gets an ordinary clone.
+	 */
+	private static class SubstituteCloner implements IDeepCloner {
+		private final WeakReference<Cloner> owner;
+		private final IFastCloner fastCloner;
+		private final IDeepCloner cloneInternal;
+		// when cloning iteratively, the elements have to be complete unless the fast cloner doesn't look at them
+		private final IDeepCloner cloneIteratively;
+
+		SubstituteCloner(Cloner cloner, IFastCloner fastCloner) {
+			this.owner = cloner.self;
+			this.fastCloner = fastCloner;
+			this.cloneInternal = cloner.deepCloner;
+			this.cloneIteratively = fastCloner instanceof IElementAgnosticFastCloner ? cloner.deepCloner : cloner.drainingCloner;
+		}
+
+		@SuppressWarnings("unchecked")
+		public <T> T deepClone(T o, Map<Object, Object> clones) {
+			if (!(clones instanceof CloneContext)) {
+				final Cloner cloner = owner.get();
+				return cloner.cloneKnown(o, cloner.cloners.get(o.getClass()), clones);
+			}
+			final CloneContext context = (CloneContext) clones;
+			final Object substitute = context.substituteOf(o);
+			if (substitute != null) return (T) substitute;
+			return (T) context.substituted(o, fastCloner.clone(o, context.iterative ? cloneIteratively : cloneInternal, clones));
+		}
+	}
+
 	private static class NullClassCloner implements IDeepCloner {
 		public <T> T deepClone(T o, Map<Object, Object> clones) {
 			throw new CloningException("Don't call this directly");
 		}
 	}
 
-	private class IFreezableCloner implements IDeepCloner {
+	static class IFreezableCloner implements IDeepCloner {
 		IDeepCloner cloner;
 
-		public IFreezableCloner(Class<?> clz) {
-			cloner = new CloneObjectCloner(clz);
+		public IFreezableCloner(IDeepCloner cloner) {
+			this.cloner = cloner;
 		}
 
 		public <T> T deepClone(T o, Map<Object, Object> clones) {
@@ -568,16 +1855,41 @@ public class Cloner {
 
 	private static final Field[] EMPTY_FIELD_ARRAY = new Field[0];
 
-	private class CloneObjectCloner implements IDeepCloner {
-
-		private final Field[] fields;
-		private final Object[] cookies;
-		private final boolean[] shouldClone;
-		private final int numFields;
-		private final ObjectInstantiator<?> instantiator;
-
-		CloneObjectCloner(Class<?> clz) {
+	static class CloneObjectCloner implements IDeferredCloner {
+		final WeakReference<Cloner> owner;
+		final Field[] fields;
+		final Object[] cookies;
+		final boolean[] shouldClone;
+		// per cloned field, null if inline caching is off
+		final FieldCloner[] fieldCloners;
+		final int numFields;
+		final ObjectInstantiator<?> instantiator;
+		// copies the primitive fields in bulk, null if they are copied one by one
+		private final Fields.BulkCopier bulkCopier;
+		// the fields which aren't copied by the bulkCopier
+		private final int[] singleFields;
+		// the configuration when the plan was created, a change invalidates the plan
+		final IDumpCloned dump;
+		// true without dumping and cloning strategies, so fields are copied without the checks for them
+		final boolean plain;
+		// the released instances reused as clones, null unless recycling
+		final CloneRecycler.Pool pool;
+		// the instance fields which aren't copied, so they keep the value of a new instance
+		final Field[] skipped;
+		final Object[] skippedCookies;
+		// the default values of the skipped fields, 0 or false for primitives and null otherwise
+		final Object[] skippedDefaults;
+		// a new instance, released instances are cleared by copying it
+		private Object blank;
+		// true if the clones are trimmed to their size, see setCompacting
+		private final boolean trim;
+
+		CloneObjectCloner(Cloner cloner, Class<?> clz) {
+			owner = cloner.self;
+			dump = cloner.dumpCloned;
+			plain = dump == null && cloner.cloningStrategies == null;
 			List<Field> l = new ArrayList<>();
+			List<Field> skippedList = new ArrayList<>();
 			List<Boolean> shouldCloneList = new ArrayList<>();
 			Class<?> sc = clz;
 			do {
@@ -586,30 +1898,64 @@ public class Cloner {
 					int modifiers = f.getModifiers();
 					boolean isStatic = Modifier.isStatic(modifiers);
 					if (!isStatic) {
-						if (!(nullTransient && Modifier.isTransient(modifiers)) && !isFieldNullInsteadBecauseOfAnnotation(f)) {
+						if (!(cloner.nullTransient && Modifier.isTransient(modifiers)) && !isFieldNullInsteadBecauseOfAnnotation(cloner, f)) {
 							l.add(f);
-							boolean shouldClone = (cloneSynthetics || !f.isSynthetic()) && (cloneAnonymousParent || !isAnonymousParent(f));
+							boolean shouldClone = (cloner.cloneSynthetics || !f.isSynthetic()) && (cloner.cloneAnonymousParent || !cloner.isAnonymousParent(f));
 							shouldCloneList.add(shouldClone);
+						} else {
+							skippedList.add(f);
 						}
 					}
 				}
 			} while ((sc = sc.getSuperclass()) != Object.class && sc != null);
 			fields = l.toArray(EMPTY_FIELD_ARRAY);
+			skipped = skippedList.toArray(EMPTY_FIELD_ARRAY);
+			skippedCookies = new Object[skipped.length];
+			skippedDefaults = new Object[skipped.length];
+			for (int i = 0; i < skipped.length; i++) {
+				skippedCookies[i] = Fields.ACCESSOR.getCookie(skipped[i]);
+				final Class<?> type = skipped[i].getType();
+				skippedDefaults[i] = type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+			}
+			pool = cloner.recycler == null ? null : cloner.recycler.pool(clz);
+			trim = cloner.compacting && isTrimmable(clz);
 			numFields = fields.length;
 			shouldClone = new boolean[numFields];
 			cookies = new Object[numFields];
+			// without cloning strategies, fields of final types which are never cloned (i.e. String or enums) are copied
+			// by reference like the primitives, without looking up the cloner of their value. An overridden cloneInternal
+			// sees every value though.
+			boolean prune = cloner.cloningStrategies == null && cloner.inlineCaching;
 			for (int i = 0; i < numFields; i++) {
-				shouldClone[i] = shouldCloneList.get(i) && !fields[i].getType().isPrimitive();
+				Class<?> type = fields[i].getType();
+				shouldClone[i] = shouldCloneList.get(i) && !type.isPrimitive()
+						&& !(prune && (Modifier.isFinal(type.getModifiers()) || type.isEnum()) && cloner.isIgnorable(type));
 				cookies[i] = Fields.ACCESSOR.getCookie(fields[i]);
 			}
-			instantiator = instantiationStrategy.getInstantiatorOf(clz);
+			fieldCloners = new FieldCloner[numFields];
+			final boolean substitutes = cloner.persistentCollections != null || cloner.compactCollections != null;
+			for (int i = 0; i < numFields; i++) {
+				if (shouldClone[i] && cloner.inlineCaching) fieldCloners[i] = new FieldCloner(cloner, substitutes && isSubstitutable(fields[i].getType()));
+			}
+			List<Field> primitives = new ArrayList<>();
+			for (Field f : fields) {
+				if (f.getType().isPrimitive() && !Modifier.isVolatile(f.getModifiers())) primitives.add(f);
+			}
+			bulkCopier = primitives.size() > 1 ? Fields.bulkCopier(primitives) : null;
+			int[] single = new int[numFields];
+			int numSingle = 0;
+			for (int i = 0; i < numFields; i++) {
+				if (bulkCopier == null || !primitives.contains(fields[i])) single[numSingle++] = i;
+			}
+			singleFields = Arrays.copyOf(single, numSingle);
+			instantiator = cloner.instantiationStrategy.getInstantiatorOf(clz);
 		}
 
-		private boolean isFieldNullInsteadBecauseOfAnnotation(Field f) {
-		    if(!nullInsteadFieldAnnotations.isEmpty()) {
+		private static boolean isFieldNullInsteadBecauseOfAnnotation(Cloner cloner, Field f) {
+		    if(!cloner.nullInsteadFieldAnnotations.isEmpty()) {
                 for (Annotation annotation : f.getAnnotations()) {
                     boolean isAnnotatedWithNullInsteadAnnotation =
-                            nullInsteadFieldAnnotations.contains(annotation.annotationType());
+                            cloner.nullInsteadFieldAnnotations.contains(annotation.annotationType());
                     if (isAnnotatedWithNullInsteadAnnotation) {
                         return true;
                     }
@@ -620,40 +1966,121 @@ public class Cloner {
 
 		public <T> T deepClone(T o, Map<Object, Object> clones) {
 			try {
-				if (dumpCloned != null) {
-					dumpCloned.startCloning(o.getClass());
-				}
-				@SuppressWarnings("unchecked") T newInstance = (T) instantiator.newInstance();
+				@SuppressWarnings("unchecked") T newInstance = (T) allocate(o, clones);
 				if (clones != null) {
-					clones.put(o, newInstance);
-					for (int i = 0; i < numFields; i++) {
-						Field field = fields[i];
-						Object cookie = cookies[i];
-						if (shouldClone[i]) {
-							Object fieldObject = Fields.ACCESSOR.get(field, cookie, o);
-							Object fieldObjectClone = applyCloningStrategy(clones, o, fieldObject, field);
-							Fields.ACCESSOR.set(field, cookie, newInstance, fieldObjectClone);
-							if (dumpCloned != null && fieldObjectClone != fieldObject) {
-								dumpCloned.cloning(field, o.getClass());
-							}
-						} else {
-							Fields.ACCESSOR.copy(field, cookie, o, newInstance);
-						}
-					}
+					fill(o, newInstance, clones);
 				} else {
-					// Shallow clone
-					for (int i = 0; i < numFields; i++) {
-						Fields.ACCESSOR.copy(fields[i], cookies[i], o, newInstance);
-					}
+					fillShallow(o, newInstance);
 				}
 				return newInstance;
 			} catch (IllegalAccessException e) {
 				throw new CloningException(e);
 			}
 		}
+
+		public Object allocate(Object o, Map<Object, Object> clones) {
+			if (dump != null) {
+				dump.startCloning(o.getClass());
+			}
+			Object newInstance = pool == null ? null : pool.poll();
+			if (newInstance == null) newInstance = instantiator.newInstance();
+			if (clones != null) {
+				clones.put(o, newInstance);
+			}
+			return newInstance;
+		}
+
+		/**
+		 * pushes the objects referenced by the released instance o to pending, clears o and pools it
+		 */
+		void recycle(Object o, ArrayDeque<Object> pending) throws IllegalAccessException {
+			for (int i = 0; i < numFields; i++) {
+				if (shouldClone[i]) {
+					final Object v = Fields.ACCESSOR.get(fields[i], cookies[i], o);
+					if (v != null) pending.push(v);
+				}
+			}
+			if (pool == null) return;
+			Object b = blank;
+			if (b == null) blank = b = instantiator.newInstance();
+			fillShallow(b, o);
+			for (int i = 0; i < skipped.length; i++) {
+				Fields.ACCESSOR.copy(skipped[i], skippedCookies[i], b, o);
+			}
+			pool.offer(o);
+		}
+
+		public void fill(Object o, Object newInstance, Map<Object, Object> clones) throws IllegalAccessException {
+			// when cloning iteratively, the backing array is filled later unless drained before trimming
+			final int mark = trim && clones instanceof CloneContext ? ((CloneContext) clones).pendingSize : -1;
+			if (bulkCopier != null) {
+				bulkCopier.copy(o, newInstance);
+			}
+			for (int i : singleFields) {
+				copyField(i, o, newInstance, clones);
+			}
+			if (trim) {
+				if (mark >= 0) ((CloneContext) clones).drain(mark);
+				trimToSize(newInstance);
+			}
+		}
+
+		void fillShallow(Object o, Object newInstance) throws IllegalAccessException {
+			if (bulkCopier != null) {
+				bulkCopier.copy(o, newInstance);
+			}
+			for (int i : singleFields) {
+				Fields.ACCESSOR.copy(fields[i], cookies[i], o, newInstance);
+			}
+		}
+
+		final void copyFieldShallow(int i, Object o, Object newInstance) throws IllegalAccessException {
+			Fields.ACCESSOR.copy(fields[i], cookies[i], o, newInstance);
+		}
+
+		final void copyField(int i, Object o, Object newInstance, Map<Object, Object> clones) throws IllegalAccessException {
+			Field field = fields[i];
+			Object cookie = cookies[i];
+			if (shouldClone[i]) {
+				Object fieldObject = Fields.ACCESSOR.get(field, cookie, o);
+				FieldCloner fieldCloner = fieldCloners[i];
+				Object fieldObjectClone = fieldCloner != null && plain
+						? fieldCloner.cloneValue(fieldObject, clones)
+						: owner.get().applyCloningStrategy(clones, o, fieldObject, field, fieldCloner);
+				Fields.ACCESSOR.set(field, cookie, newInstance, fieldObjectClone);
+				if (dump != null && fieldObjectClone != fieldObject) {
+					dump.cloning(field, o.getClass());
+				}
+			} else {
+				Fields.ACCESSOR.copy(field, cookie, o, newInstance);
+			}
+		}
+	}
+
+	final CloneFunction cloneFunction = new CloneFunction(this);
+
+	/**
+	 * clones the values of the fields without inline caches via cloneInternal
+	 */
+	static final class CloneFunction implements BiFunction<Object, Object, Object> {
+		private final WeakReference<Cloner> owner;
+
+		CloneFunction(Cloner cloner) {
+			this.owner = cloner.self;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Object apply(Object o, Object clones) {
+			return cloneInternal(o, (Map<Object, Object>) clones);
+		}
+
+		Object cloneInternal(Object o, Map<Object, Object> clones) {
+			return owner.get().cloneInternal(o, clones);
+		}
 	}
 
-	private Object applyCloningStrategy(Map<Object, Object> clones, Object o, Object fieldObject, Field field) {
+	private Object applyCloningStrategy(Map<Object, Object> clones, Object o, Object fieldObject, Field field, FieldCloner fieldCloner) {
 		if (cloningStrategies != null) {
 			for (ICloningStrategy strategy : cloningStrategies) {
 				ICloningStrategy.Strategy s = strategy.strategyFor(o, field);
@@ -661,7 +2088,7 @@ public class Cloner {
 				if (s == ICloningStrategy.Strategy.SAME_INSTANCE_INSTEAD_OF_CLONE) return fieldObject;
 			}
 		}
-		return cloneInternal(fieldObject, clones);
+		return fieldCloner != null ? fieldCloner.cloneValue(fieldObject, clones) : cloneInternal(fieldObject, clones);
 	}
 
 	private boolean isAnonymousParent(final Field field) {
@@ -728,19 +2155,7 @@ public class Cloner {
 	 * @return the map of fields to cookies
 	 */
 	private Map<Field, Object> getFieldToCookieMap(final Class<?> c) {
-		Map<Field, Object> m = fieldsCache.get(c);
-		if (m == null) {
-			List<Field> fields = allFields(c);
-			m = new HashMap<>();
-			for (final Field field : fields) {
-				m.put(field, Fields.ACCESSOR.getCookie(field));
-			}
-			Map<Field, Object> m0 = fieldsCache.putIfAbsent(c, m);
-			if (m0 != null) {
-				m = m0;
-			}
-		}
-		return m;
+		return fieldsCache.get(c);
 	}
 
 	public boolean isDumpClonedClasses() {
@@ -755,24 +2170,29 @@ public class Cloner {
 	 * @param dumpClonedClasses true to enable printing all cloned classes
 	 */
 	public void setDumpClonedClasses(final boolean dumpClonedClasses) {
+		checkNotFrozen();
+		invalidatePlans();
 		if (dumpClonedClasses) {
-			dumpCloned = new IDumpCloned() {
-				public void startCloning(Class<?> clz) {
-					System.out.println("clone>" + clz);
-				}
-
-				public void cloning(Field field, Class<?> clz) {
-					System.out.println("cloned field>" + field + "  -- of class " + clz);
-				}
-			};
+			dumpCloned = DUMP_CLONED_CLASSES;
 		} else dumpCloned = null;
 	}
 
+	static final IDumpCloned DUMP_CLONED_CLASSES = new IDumpCloned() {
+		public void startCloning(Class<?> clz) {
+			System.out.println("clone>" + clz);
+		}
+
+		public void cloning(Field field, Class<?> clz) {
+			System.out.println("cloned field>" + field + "  -- of class " + clz);
+		}
+	};
+
 	public boolean isCloningEnabled() {
 		return cloningEnabled;
 	}
 
 	public void setCloningEnabled(final boolean cloningEnabled) {
+		checkNotFrozen();
 		this.cloningEnabled = cloningEnabled;
 	}
 
@@ -780,7 +2200,9 @@ public class Cloner {
 	 * if false, anonymous classes parent class won't be cloned. Default is true
 	 */
 	public void setCloneAnonymousParent(final boolean cloneAnonymousParent) {
+		checkNotFrozen();
 		this.cloneAnonymousParent = cloneAnonymousParent;
+		invalidatePlans();
 	}
 
 	public boolean isCloneAnonymousParent() {
@@ -802,15 +2224,4 @@ public class Cloner {
 	public static Cloner shared() {
 		return new Cloner(new ObjenesisInstantiationStrategy());
 	}
-
-	private class ClonesMap extends IdentityHashMap<Object, Object> {
-		@Override
-		public Object get(Object key) {
-			if (ignoredInstances != null) {
-				Object o = ignoredInstances.get(key);
-				if (o != null) return o;
-			}
-			return super.get(key);
-		}
-	}
 }
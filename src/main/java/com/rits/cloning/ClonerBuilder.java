@@ -0,0 +1,314 @@
+package com.rits.cloning;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * builds cloners whose configuration can't change after they are built. Such a cloner can be shared by any number of
+ * threads without the caveat of a configured {@link Cloner} that its configuration must not be altered while it is
+ * used, any attempt to change it throws an IllegalStateException.
+ * <p>
+ * i.e.
+ * <pre>
+ * Cloner cloner = new ClonerBuilder()
+ * 		.dontClone(SessionImplementor.class)
+ * 		.registerImmutable(Money.class)
+ * 		.nullTransient(true)
+ * 		.build();
+ * </pre>
+ * The methods have the same meaning as the ones of Cloner with the same name. A builder can build any number of
+ * cloners, each one with the configuration of the builder when it was built.
+ *
+ * @author kostas.kougios
+ */
+public class ClonerBuilder {
+	private IInstantiationStrategy instantiationStrategy;
+	private final Set<Class<?>> dontClone = new LinkedHashSet<>();
+	private final Set<Class<?>> dontCloneInstanceOf = new LinkedHashSet<>();
+	private final Set<Class<?>> nullInsteadOfClone = new LinkedHashSet<>();
+	private final Set<Class<? extends Annotation>> nullInsteadOfCloneFieldAnnotations = new LinkedHashSet<>();
+	private final Set<Class<?>> immutables = new LinkedHashSet<>();
+	// the unregistered fast cloners are removed before the registered ones are added
+	private final Set<Class<?>> unregisteredFastCloners = new LinkedHashSet<>();
+	private final Map<Class<?>, IFastCloner> fastCloners = new LinkedHashMap<>();
+	private final List<ICloningStrategy> cloningStrategies = new ArrayList<>();
+	private final List<Object> constants = new ArrayList<>();
+	private final List<Class<?>> constantClasses = new ArrayList<>();
+	private final List<String> constantFields = new ArrayList<>();
+	private final Set<Class<?>> staticFields = new LinkedHashSet<>();
+	private boolean nullTransient = false;
+	private boolean cloneSynthetics = true;
+	private boolean cloneAnonymousParent = true;
+	private IDumpCloned dumpCloned = null;
+	private boolean cloningEnabled = true;
+	private CloningEngine engine = null;
+	private boolean persistentCollections = false;
+	private boolean compacting = false;
+	private boolean compactImmutableCollections = false;
+	private int canonicalizing = 0;
+	private int recycling = 0;
+	private boolean iterative = false;
+	private boolean verifyTrees = false;
+
+	/**
+	 * @param instantiationStrategy instantiates the clones, the default one if not set
+	 * @return this builder
+	 */
+	public ClonerBuilder instantiationStrategy(final IInstantiationStrategy instantiationStrategy) {
+		this.instantiationStrategy = instantiationStrategy;
+		return this;
+	}
+
+	public ClonerBuilder dontClone(final Class<?>... c) {
+		Collections.addAll(dontClone, c);
+		return this;
+	}
+
+	public ClonerBuilder dontCloneInstanceOf(final Class<?>... c) {
+		Collections.addAll(dontCloneInstanceOf, c);
+		return this;
+	}
+
+	public ClonerBuilder nullInsteadOfClone(final Class<?>... c) {
+		Collections.addAll(nullInsteadOfClone, c);
+		return this;
+	}
+
+	@SafeVarargs
+	public final ClonerBuilder nullInsteadOfCloneFieldAnnotation(final Class<? extends Annotation>... a) {
+		// only reads the elements, passing the array on would be reported as possible heap pollution
+		for (Class<? extends Annotation> annotation : a) {
+			nullInsteadOfCloneFieldAnnotations.add(annotation);
+		}
+		return this;
+	}
+
+	public ClonerBuilder registerImmutable(final Class<?>... c) {
+		Collections.addAll(immutables, c);
+		return this;
+	}
+
+	public ClonerBuilder registerFastCloner(final Class<?> c, final IFastCloner fastCloner) {
+		if (fastCloners.containsKey(c)) throw new IllegalArgumentException(c + " already fast-cloned!");
+		fastCloners.put(c, fastCloner);
+		return this;
+	}
+
+	public ClonerBuilder unregisterFastCloner(final Class<?> c) {
+		fastCloners.remove(c);
+		unregisteredFastCloners.add(c);
+		return this;
+	}
+
+	public ClonerBuilder registerCloningStrategy(final ICloningStrategy strategy) {
+		if (strategy == null) throw new NullPointerException("strategy can't be null");
+		cloningStrategies.add(strategy);
+		return this;
+	}
+
+	public ClonerBuilder registerConstant(final Object o) {
+		if (o != null) constants.add(o);
+		return this;
+	}
+
+	public ClonerBuilder registerConstant(final Class<?> c, final String privateFieldName) {
+		constantClasses.add(c);
+		constantFields.add(privateFieldName);
+		return this;
+	}
+
+	public ClonerBuilder registerStaticFields(final Class<?>... classes) {
+		Collections.addAll(staticFields, classes);
+		return this;
+	}
+
+	public ClonerBuilder nullTransient(final boolean nullTransient) {
+		this.nullTransient = nullTransient;
+		return this;
+	}
+
+	public ClonerBuilder cloneSynthetics(final boolean cloneSynthetics) {
+		this.cloneSynthetics = cloneSynthetics;
+		return this;
+	}
+
+	public ClonerBuilder cloneAnonymousParent(final boolean cloneAnonymousParent) {
+		this.cloneAnonymousParent = cloneAnonymousParent;
+		return this;
+	}
+
+	public ClonerBuilder dumpCloned(final IDumpCloned dumpCloned) {
+		this.dumpCloned = dumpCloned;
+		return this;
+	}
+
+	public ClonerBuilder dumpClonedClasses(final boolean dumpClonedClasses) {
+		this.dumpCloned = dumpClonedClasses ? Cloner.DUMP_CLONED_CLASSES : null;
+		return this;
+	}
+
+	public ClonerBuilder cloningEnabled(final boolean cloningEnabled) {
+		this.cloningEnabled = cloningEnabled;
+		return this;
+	}
+
+	public ClonerBuilder engine(final CloningEngine engine) {
+		if (engine == null) throw new NullPointerException("engine can't be null");
+		this.engine = engine;
+		return this;
+	}
+
+	public ClonerBuilder persistentCollections(final boolean persistentCollections) {
+		this.persistentCollections = persistentCollections;
+		return this;
+	}
+
+	public ClonerBuilder compacting(final boolean compacting) {
+		this.compacting = compacting;
+		return this;
+	}
+
+	public ClonerBuilder compactImmutableCollections(final boolean compactImmutableCollections) {
+		this.compactImmutableCollections = compactImmutableCollections;
+		return this;
+	}
+
+	public ClonerBuilder canonicalizing(final int maxSize) {
+		if (maxSize < 0) throw new IllegalArgumentException("maxSize can't be negative: " + maxSize);
+		this.canonicalizing = maxSize;
+		return this;
+	}
+
+	public ClonerBuilder recycling(final int maxPooledPerClass) {
+		if (maxPooledPerClass < 0) throw new IllegalArgumentException("maxPooledPerClass can't be negative: " + maxPooledPerClass);
+		this.recycling = maxPooledPerClass;
+		return this;
+	}
+
+	public ClonerBuilder iterative(final boolean iterative) {
+		this.iterative = iterative;
+		return this;
+	}
+
+	public ClonerBuilder verifyTrees(final boolean verifyTrees) {
+		this.verifyTrees = verifyTrees;
+		return this;
+	}
+
+	/**
+	 * @return a new cloner with the configuration of this builder, which can't be changed
+	 */
+	public Cloner build() {
+		return new Cloner(new Configuration(this));
+	}
+
+	/**
+	 * a snapshot of the configuration of a builder, which later changes of the builder don't affect. The cloner built
+	 * from it is configured by its constructor.
+	 */
+	static final class Configuration {
+		final IInstantiationStrategy instantiationStrategy;
+		final Class<?>[] dontClone;
+		final Class<?>[] dontCloneInstanceOf;
+		final Class<?>[] nullInsteadOfClone;
+		final Class<? extends Annotation>[] nullInsteadOfCloneFieldAnnotations;
+		final Class<?>[] immutables;
+		final Class<?>[] unregisteredFastCloners;
+		final Class<?>[] fastClonedClasses;
+		final IFastCloner[] fastCloners;
+		final ICloningStrategy[] cloningStrategies;
+		final Object[] constants;
+		final Class<?>[] constantClasses;
+		final String[] constantFields;
+		final Class<?>[] staticFields;
+		final boolean nullTransient;
+		final boolean cloneSynthetics;
+		final boolean cloneAnonymousParent;
+		final IDumpCloned dumpCloned;
+		final boolean cloningEnabled;
+		final CloningEngine engine;
+		final boolean persistentCollections;
+		final boolean compacting;
+		final boolean compactImmutableCollections;
+		final int canonicalizing;
+		final int recycling;
+		final boolean iterative;
+		final boolean verifyTrees;
+
+		@SuppressWarnings("unchecked")
+		private Configuration(final ClonerBuilder b) {
+			instantiationStrategy = b.instantiationStrategy;
+			dontClone = b.dontClone.toArray(new Class<?>[0]);
+			dontCloneInstanceOf = b.dontCloneInstanceOf.toArray(new Class<?>[0]);
+			nullInsteadOfClone = b.nullInsteadOfClone.toArray(new Class<?>[0]);
+			nullInsteadOfCloneFieldAnnotations = (Class<? extends Annotation>[]) b.nullInsteadOfCloneFieldAnnotations.toArray(new Class<?>[0]);
+			immutables = b.immutables.toArray(new Class<?>[0]);
+			unregisteredFastCloners = b.unregisteredFastCloners.toArray(new Class<?>[0]);
+			fastClonedClasses = b.fastCloners.keySet().toArray(new Class<?>[0]);
+			fastCloners = b.fastCloners.values().toArray(new IFastCloner[0]);
+			cloningStrategies = b.cloningStrategies.toArray(new ICloningStrategy[0]);
+			constants = b.constants.toArray();
+			constantClasses = b.constantClasses.toArray(new Class<?>[0]);
+			constantFields = b.constantFields.toArray(new String[0]);
+			staticFields = b.staticFields.toArray(new Class<?>[0]);
+			nullTransient = b.nullTransient;
+			cloneSynthetics = b.cloneSynthetics;
+			cloneAnonymousParent = b.cloneAnonymousParent;
+			dumpCloned = b.dumpCloned;
+			cloningEnabled = b.cloningEnabled;
+			engine = b.engine;
+			persistentCollections = b.persistentCollections;
+			compacting = b.compacting;
+			compactImmutableCollections = b.compactImmutableCollections;
+			canonicalizing = b.canonicalizing;
+			recycling = b.recycling;
+			iterative = b.iterative;
+			verifyTrees = b.verifyTrees;
+		}
+
+		/**
+		 * configures a cloner being constructed
+		 */
+		void applyTo(final Cloner cloner) {
+			cloner.dontClone(dontClone);
+			cloner.dontCloneInstanceOf(dontCloneInstanceOf);
+			cloner.nullInsteadOfClone(nullInsteadOfClone);
+			cloner.nullInsteadOfCloneFieldAnnotation(nullInsteadOfCloneFieldAnnotations);
+			cloner.registerImmutable(immutables);
+			for (Class<?> c : unregisteredFastCloners) {
+				cloner.unregisterFastCloner(c);
+			}
+			for (int i = 0; i < fastClonedClasses.length; i++) {
+				cloner.registerFastCloner(fastClonedClasses[i], fastCloners[i]);
+			}
+			for (ICloningStrategy strategy : cloningStrategies) {
+				cloner.registerCloningStrategy(strategy);
+			}
+			cloner.registerConstants(Arrays.asList(constants));
+			for (int i = 0; i < constantClasses.length; i++) {
+				cloner.registerConstant(constantClasses[i], constantFields[i]);
+			}
+			cloner.registerStaticFields(staticFields);
+			cloner.setNullTransient(nullTransient);
+			cloner.setCloneSynthetics(cloneSynthetics);
+			cloner.setCloneAnonymousParent(cloneAnonymousParent);
+			cloner.setDumpCloned(dumpCloned);
+			cloner.setCloningEnabled(cloningEnabled);
+			if (engine != null) cloner.setEngine(engine);
+			cloner.setPersistentCollections(persistentCollections);
+			cloner.setCompacting(compacting);
+			cloner.setCompactImmutableCollections(compactImmutableCollections);
+			cloner.setCanonicalizing(canonicalizing);
+			cloner.setRecycling(recycling);
+			cloner.setIterative(iterative);
+			cloner.setVerifyTrees(verifyTrees);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.rits.cloning;
+
+/**
+ * The mechanism a {@link Cloner} uses to copy the fields of the objects it clones reflectively (that is, objects
+ * which aren't immutable, arrays or handled by an {@link IFastCloner}).
+ *
+ * <p>The default engine can be specified via the {@code com.rits.cloning.CloningEngine} system-property and can be
+ * changed per cloner via {@link Cloner#setEngine}.
+ *
+ * @author kostas.kougios
+ */
+public enum CloningEngine {
+	/**
+	 * (default) walks the fields of each class and copies them via the {@code com.rits.cloning.Fields.accessor}
+	 */
+	REFLECTION,
+	/**
+	 * generates a dedicated copier class per cloned class with straight-line field reads and writes. Requires Java 15+,
+	 * classes which can't be handled this way fall back on {@link #REFLECTION}, JVMs without hidden classes on
+	 * {@link #HANDLES}
+	 */
+	GENERATED,
+	/**
+	 * composes a single {@link java.lang.invoke.MethodHandle} per cloned class out of field getters and setters, the
+	 * instantiator and the per field clone calls. Doesn't generate any bytecode, fields which can't be accessed via
+	 * handles fall back on {@link #REFLECTION}
+	 */
+	HANDLES;
+
+	/**
+	 * @return the engine configured via the {@code com.rits.cloning.CloningEngine} system-property
+	 */
+	static CloningEngine fromSystemProperty() {
+		return valueOf(System.getProperty(CloningEngine.class.getName(), REFLECTION.name()).trim().toUpperCase());
+	}
+}
@@ -0,0 +1,372 @@
+package com.rits.cloning;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * a pipeline stage which deep clones every item passing through it, so that cloning overlaps with producing and
+ * consuming the items. Items are cloned by up to parallelism tasks of an executor and published in the order they were
+ * received. At most window items are requested from upstream but not yet published downstream, which bounds the memory
+ * of the stage and passes the backpressure of a slow subscriber on to the publisher.
+ * <p>
+ * i.e.
+ * <pre>
+ * CloningProcessor&lt;Message&gt; cloning = new CloningProcessor&lt;&gt;(cloner, executor, 4, 256);
+ * publisher.subscribe(cloning);
+ * cloning.subscribe(consumer);
+ * </pre>
+ * Like any Flow.Processor it can be subscribed to one publisher and by one subscriber. If cloning an item fails the
+ * subscriber receives the exception via onError and the upstream subscription is cancelled.
+ * <p>
+ * {@link #iterator} and {@link #stream} do the same for pull based sources.
+ *
+ * @param <T> the type of the items
+ * @author kostas.kougios
+ */
+public class CloningProcessor<T> implements Flow.Processor<T, T> {
+	private final int window;
+	private final Workers workers;
+	// the items in the order received, they are published when cloned
+	private final ConcurrentLinkedQueue<Slot<T>> slots = new ConcurrentLinkedQueue<>();
+	private final AtomicReference<Flow.Subscriber<? super T>> downstream = new AtomicReference<>();
+	private final AtomicLong demand = new AtomicLong();
+	// serializes the signals to the downstream subscriber
+	private final AtomicInteger wip = new AtomicInteger();
+	private volatile Flow.Subscription upstream;
+	private volatile boolean done;
+	private volatile Throwable error;
+	private volatile boolean cancelled;
+	// a non-positive request of the subscriber, which terminates the stage (Reactive Streams rule 3.9)
+	private volatile Throwable invalidRequest;
+	// only accessed by drain()
+	private boolean terminated;
+
+	/**
+	 * @param cloner      the cloner which clones the items
+	 * @param executor    runs the cloning tasks
+	 * @param parallelism the max number of items cloned at the same time
+	 * @param window      the max number of items received but not yet published
+	 */
+	public CloningProcessor(final Cloner cloner, final Executor executor, final int parallelism, final int window) {
+		if (window <= 0) throw new IllegalArgumentException("window must be positive: " + window);
+		this.window = window;
+		this.workers = new Workers(cloner, executor, parallelism, this::drain);
+	}
+
+	@Override
+	public void subscribe(final Flow.Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber);
+		if (!downstream.compareAndSet(null, subscriber)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("CloningProcessor supports only one subscriber"));
+			return;
+		}
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+				if (n <= 0) {
+					invalidRequest = new IllegalArgumentException("non-positive request: " + n);
+					drain();
+					return;
+				}
+				demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+				drain();
+			}
+
+			@Override
+			public void cancel() {
+				cancelled = true;
+				workers.stop();
+				Flow.Subscription s = upstream;
+				if (s != null) s.cancel();
+				drain();
+			}
+		});
+		drain();
+	}
+
+	@Override
+	public void onSubscribe(final Flow.Subscription subscription) {
+		if (upstream != null) {
+			subscription.cancel();
+			return;
+		}
+		upstream = subscription;
+		if (cancelled || invalidRequest != null) {
+			subscription.cancel();
+		} else {
+			subscription.request(window);
+		}
+	}
+
+	@Override
+	public void onNext(final T item) {
+		Objects.requireNonNull(item);
+		if (workers.isStopped()) return;
+		final Slot<T> slot = new Slot<>(item);
+		slots.add(slot);
+		workers.submit(slot);
+	}
+
+	@Override
+	public void onError(final Throwable throwable) {
+		error = Objects.requireNonNull(throwable);
+		done = true;
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		done = true;
+		drain();
+	}
+
+	/**
+	 * publishes the items cloned so far, in order and as far as the subscriber requested them
+	 */
+	private void drain() {
+		if (wip.getAndIncrement() != 0) return;
+		int missed = 1;
+		do {
+			final Flow.Subscriber<? super T> subscriber = downstream.get();
+			if (cancelled || terminated) {
+				slots.clear();
+			} else if (subscriber != null && invalidRequest != null) {
+				terminated = true;
+				workers.stop();
+				slots.clear();
+				final Flow.Subscription s = upstream;
+				if (s != null) s.cancel();
+				subscriber.onError(invalidRequest);
+			} else if (subscriber != null) {
+				final long requested = demand.get();
+				long emitted = 0;
+				Slot<T> slot;
+				while (emitted != requested && (slot = slots.peek()) != null && slot.isDone()) {
+					slots.poll();
+					final T clone;
+					try {
+						clone = slot.join();
+					} catch (CompletionException e) {
+						terminated = true;
+						workers.stop();
+						slots.clear();
+						upstream.cancel();
+						subscriber.onError(e.getCause());
+						break;
+					}
+					subscriber.onNext(clone);
+					emitted++;
+				}
+				if (emitted > 0) {
+					if (requested != Long.MAX_VALUE) demand.addAndGet(-emitted);
+					if (!terminated && !done) upstream.request(emitted);
+				}
+				if (!terminated && done && slots.isEmpty()) {
+					terminated = true;
+					final Throwable e = error;
+					if (e != null) {
+						subscriber.onError(e);
+					} else {
+						subscriber.onComplete();
+					}
+				}
+			}
+			missed = wip.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
+	/**
+	 * clones the items of source while they are iterated. Up to window items are read ahead from source and cloned by up
+	 * to parallelism tasks of the executor, the returned iterator returns their clones in order. An exception thrown
+	 * while cloning an item is rethrown by the next() call which would return its clone.
+	 *
+	 * @param <T>         the type of the items
+	 * @param source      the items to be cloned
+	 * @param cloner      the cloner which clones the items
+	 * @param executor    runs the cloning tasks
+	 * @param parallelism the max number of items cloned at the same time
+	 * @param window      the max number of items read ahead from source
+	 * @return an iterator over the clones of the items of source
+	 */
+	public static <T> Iterator<T> iterator(final Iterator<? extends T> source, final Cloner cloner, final Executor executor, final int parallelism, final int window) {
+		if (window <= 0) throw new IllegalArgumentException("window must be positive: " + window);
+		return new ClonedIterator<>(source, new Workers(cloner, executor, parallelism, () -> {
+		}), window);
+	}
+
+	/**
+	 * clones the items of source while the returned stream is consumed, see {@link #iterator}. Closing the returned stream
+	 * closes source.
+	 *
+	 * @param <T>         the type of the items
+	 * @param source      the items to be cloned
+	 * @param cloner      the cloner which clones the items
+	 * @param executor    runs the cloning tasks
+	 * @param parallelism the max number of items cloned at the same time
+	 * @param window      the max number of items read ahead from source
+	 * @return a sequential, ordered stream of the clones of the items of source
+	 */
+	public static <T> Stream<T> stream(final Stream<? extends T> source, final Cloner cloner, final Executor executor, final int parallelism, final int window) {
+		final Iterator<T> clones = iterator(source.iterator(), cloner, executor, parallelism, window);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(clones, Spliterator.ORDERED), false).onClose(source::close);
+	}
+
+	private static class ClonedIterator<T> implements Iterator<T> {
+		private final Iterator<? extends T> source;
+		private final Workers workers;
+		private final int window;
+		private final ArrayDeque<Slot<T>> slots = new ArrayDeque<>();
+
+		ClonedIterator(Iterator<? extends T> source, Workers workers, int window) {
+			this.source = source;
+			this.workers = workers;
+			this.window = window;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !slots.isEmpty() || source.hasNext();
+		}
+
+		@Override
+		public T next() {
+			while (slots.size() < window && source.hasNext()) {
+				final Slot<T> slot = new Slot<>(source.next());
+				slots.add(slot);
+				workers.submit(slot);
+			}
+			final Slot<T> slot = slots.poll();
+			if (slot == null) throw new NoSuchElementException();
+			try {
+				return slot.join();
+			} catch (CompletionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+				if (cause instanceof Error) throw (Error) cause;
+				throw new CloningException("cloning failed", cause);
+			}
+		}
+	}
+
+	/**
+	 * an item and, once cloned, its clone
+	 */
+	private static class Slot<T> extends CompletableFuture<T> {
+		private final T item;
+
+		Slot(T item) {
+			this.item = item;
+		}
+
+		void cloneWith(Cloner cloner) {
+			try {
+				complete(item == null ? null : cloner.deepClone(item));
+			} catch (Throwable e) {
+				completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * clones the submitted items with at most parallelism tasks of the executor, each task clones items until none is
+	 * left
+	 */
+	private static class Workers {
+		private final Cloner cloner;
+		private final Executor executor;
+		private final int parallelism;
+		// called after each item is cloned
+		private final Runnable onCloned;
+		private final ConcurrentLinkedQueue<Slot<?>> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger active = new AtomicInteger();
+		// set once the stage is cancelled or failed, the items not being cloned yet are dropped
+		private volatile boolean stopped;
+
+		Workers(Cloner cloner, Executor executor, int parallelism, Runnable onCloned) {
+			if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+			this.cloner = Objects.requireNonNull(cloner);
+			this.executor = Objects.requireNonNull(executor);
+			this.parallelism = parallelism;
+			this.onCloned = onCloned;
+		}
+
+		void submit(Slot<?> slot) {
+			queue.add(slot);
+			// stop() may have cleared the queue before the add
+			if (stopped) {
+				queue.clear();
+				return;
+			}
+			startWorkers();
+		}
+
+		/**
+		 * drops the submitted items which aren't being cloned yet, and the ones submitted later
+		 */
+		void stop() {
+			stopped = true;
+			queue.clear();
+		}
+
+		boolean isStopped() {
+			return stopped;
+		}
+
+		private void startWorkers() {
+			int a;
+			while ((a = active.get()) < parallelism && !queue.isEmpty()) {
+				if (active.compareAndSet(a, a + 1)) {
+					try {
+						executor.execute(this::work);
+					} catch (RejectedExecutionException e) {
+						active.decrementAndGet();
+						// fail the items nobody will clone, they are reported like cloning errors
+						Slot<?> slot;
+						while ((slot = queue.poll()) != null) {
+							slot.completeExceptionally(e);
+							onCloned.run();
+						}
+					}
+				}
+			}
+		}
+
+		private void work() {
+			try {
+				Slot<?> slot;
+				while (!stopped && (slot = queue.poll()) != null) {
+					slot.cloneWith(cloner);
+					onCloned.run();
+				}
+			} finally {
+				active.decrementAndGet();
+			}
+			// an item submitted after the last poll but before the decrement didn't start a worker
+			if (!queue.isEmpty()) startWorkers();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.rits.cloning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * the fast cloners of {@link Cloner#setCompactImmutableCollections compact immutable collection cloning}. They clone
+ * to the immutable collections of List.of, Set.of and Map.ofEntries, which keep their elements in a single array
+ * without per entry nodes. Those collections can't hold nulls, so collections with null elements are cloned like the
+ * default fast cloners do. Empty collections are cloned like that too, as an empty ArrayList, HashSet or HashMap
+ * allocates no backing array either. Unlike the originals, the clones throw a NullPointerException when asked whether
+ * they contain null, i.e. by contains(null), indexOf(null), get(null) or containsKey(null).
+ *
+ * @author kostas.kougios
+ */
+final class CompactCollections {
+	private CompactCollections() {
+	}
+
+	/**
+	 * clones ArrayLists to List.of lists
+	 */
+	static final class ListCloner implements IElementAgnosticFastCloner {
+		@Override
+		public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
+			final Object[] elements = ((List<?>) t).toArray();
+			boolean nulls = elements.length == 0;
+			for (int i = 0; i < elements.length; i++) {
+				final Object c = cloner.deepClone(elements[i], clones);
+				elements[i] = c;
+				nulls |= c == null;
+			}
+			return nulls ? new ArrayList<>(Arrays.asList(elements)) : List.of(elements);
+		}
+	}
+
+	/**
+	 * clones HashSets to Set.of sets
+	 */
+	static final class SetCloner implements IFastCloner {
+		@Override
+		public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
+			final Object[] elements = ((Set<?>) t).toArray();
+			boolean nulls = elements.length == 0;
+			for (int i = 0; i < elements.length; i++) {
+				final Object c = cloner.deepClone(elements[i], clones);
+				elements[i] = c;
+				nulls |= c == null;
+			}
+			if (!nulls) {
+				try {
+					return Set.of(elements);
+				} catch (IllegalArgumentException e) {
+					// clones which are equal while their originals aren't
+				}
+			}
+			final HashSet<Object> s = new HashSet<>(FastClonerHashMap.capacityFor(elements.length));
+			for (Object e : elements) {
+				s.add(e);
+			}
+			return s;
+		}
+	}
+
+	/**
+	 * clones HashMaps to Map.ofEntries maps
+	 */
+	static final class MapCloner implements IFastCloner {
+		@Override
+		public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
+			final Map<?, ?> m = (Map<?, ?>) t;
+			final Object[] keys = new Object[m.size()];
+			final Object[] values = new Object[keys.length];
+			boolean nulls = keys.length == 0;
+			int n = 0;
+			for (Map.Entry<?, ?> e : m.entrySet()) {
+				final Object k = cloner.deepClone(e.getKey(), clones);
+				final Object v = cloner.deepClone(e.getValue(), clones);
+				keys[n] = k;
+				values[n++] = v;
+				nulls |= k == null || v == null;
+			}
+			if (!nulls) {
+				@SuppressWarnings({"unchecked", "rawtypes"}) final Map.Entry<Object, Object>[] entries = new Map.Entry[n];
+				for (int i = 0; i < n; i++) {
+					entries[i] = Map.entry(keys[i], values[i]);
+				}
+				try {
+					return Map.ofEntries(entries);
+				} catch (IllegalArgumentException e) {
+					// clones which are equal while their originals aren't
+				}
+			}
+			final HashMap<Object, Object> result = new HashMap<>(FastClonerHashMap.capacityFor(n));
+			for (int i = 0; i < n; i++) {
+				result.put(keys[i], values[i]);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.rits.cloning;
+
+/**
+ * identity map shared by the threads of a parallel clone. It is split into stripes by
+ * {@link System#identityHashCode}, each one an {@link IdentityMap} guarded by its own lock, so that threads registering
+ * different objects rarely contend.
+ * <p>
+ * Null keys are not supported.
+ *
+ * @author kostas.kougios
+ */
+class ConcurrentIdentityMap {
+	private final IdentityMap[] stripes;
+	private final int shift;
+
+	/**
+	 * @param concurrency the expected number of threads using the map
+	 */
+	ConcurrentIdentityMap(int concurrency) {
+		int n = Integer.highestOneBit(Math.min(Math.max(concurrency * 8, 16), 1 << 12) - 1) << 1;
+		stripes = new IdentityMap[n];
+		for (int i = 0; i < n; i++) {
+			stripes[i] = new IdentityMap();
+		}
+		shift = 32 - Integer.numberOfTrailingZeros(n);
+	}
+
+	private IdentityMap stripe(Object key) {
+		// the stripe uses the high bits, the IdentityMap of the stripe the low ones
+		return stripes[System.identityHashCode(key) * 0x9E3779B9 >>> shift];
+	}
+
+	Object get(Object key) {
+		final IdentityMap stripe = stripe(key);
+		synchronized (stripe) {
+			return stripe.get(key);
+		}
+	}
+
+	/**
+	 * @return the value already mapped to key, in which case the map is not modified, or null if value was added
+	 */
+	Object putIfAbsent(Object key, Object value) {
+		final IdentityMap stripe = stripe(key);
+		synchronized (stripe) {
+			final Object existing = stripe.get(key);
+			if (existing == null) {
+				stripe.put(key, value);
+			}
+			return existing;
+		}
+	}
+
+	void put(Object key, Object value) {
+		final IdentityMap stripe = stripe(key);
+		synchronized (stripe) {
+			stripe.put(key, value);
+		}
+	}
+
+	int size() {
+		int size = 0;
+		for (IdentityMap stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+}
@@ -8,11 +8,13 @@ import java.util.Map;
  *
  * 21 May 2009
  */
-public class FastClonerArrayList implements IFastCloner
+public class FastClonerArrayList implements IElementAgnosticFastCloner
 {
 	@SuppressWarnings({ "unchecked", "rawtypes" })
     public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
 		ArrayList al = (ArrayList) t;
+		// copies the backing array at once
+		if (ISharingDeepCloner.allShared(cloner, al)) return new ArrayList(al);
 		int size = al.size();
 		ArrayList l = new ArrayList(size);
 		for (int i = 0; i < size; i++) {
@@ -9,12 +9,16 @@ import java.util.Map;
  *
  * 21 May 2009
  */
-public class FastClonerArrayListSubList implements IFastCloner {
+public class FastClonerArrayListSubList implements IElementAgnosticFastCloner {
 	@SuppressWarnings({"unchecked", "rawtypes"})
 	public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
 		List al = (List) t;
 		int size = al.size();
 		ArrayList l = new ArrayList(size);
+		if (ISharingDeepCloner.allShared(cloner, al)) {
+			l.addAll(al);
+			return l;
+		}
 		for (int i = 0; i < size; i++) {
 			l.add(cloner.deepClone(al.get(i), clones));
 		}
@@ -13,7 +13,8 @@ public class FastClonerConcurrentHashMap implements IFastCloner
 	@SuppressWarnings({ "unchecked", "rawtypes" })
     public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
 		final ConcurrentHashMap<Object, Object> m = (ConcurrentHashMap) t;
-		final ConcurrentHashMap result = new ConcurrentHashMap();
+		// sized like the map would grow to, unlike the capacity of the single argument constructor
+		final ConcurrentHashMap result = new ConcurrentHashMap(m.size(), 0.75f);
 		for (final Map.Entry e : m.entrySet()) {
 			result.put(cloner.deepClone(e.getKey(), clones), cloner.deepClone(e.getValue(), clones));
 		}
@@ -7,7 +7,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  * @author kostas.kougios
  * 07/01/19 - 20:08
  */
-public class FastClonerConcurrentLinkedQueue implements IFastCloner {
+public class FastClonerConcurrentLinkedQueue implements IElementAgnosticFastCloner {
 	@SuppressWarnings({"unchecked", "rawtypes"})
 	public Object clone(Object t, IDeepCloner cloner, Map<Object, Object> clones) {
 		ConcurrentLinkedQueue q = (ConcurrentLinkedQueue) t;
@@ -10,10 +10,18 @@ import java.util.Map;
  */
 public class FastClonerHashMap implements IFastCloner
 {
+	/**
+	 * @return the initial capacity of a HashMap, HashSet or their linked versions which holds size entries without
+	 * rehashing, the smallest one the map would grow to anyway
+	 */
+	static int capacityFor(int size) {
+		return (int) Math.ceil(size / 0.75d);
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
     public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
 		final HashMap<Object, Object> m = (HashMap) t;
-		final HashMap result = new HashMap();
+		final HashMap result = new HashMap(capacityFor(m.size()));
 		for (final Map.Entry e : m.entrySet()) {
 			result.put(cloner.deepClone(e.getKey(), clones), cloner.deepClone(e.getValue(), clones));
 		}
@@ -13,7 +13,11 @@ public class FastClonerHashSet implements IFastCloner
 	@SuppressWarnings({ "unchecked", "rawtypes" })
     public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
 		final HashSet al = (HashSet) t;
-		final HashSet l = new HashSet();
+		final HashSet l = new HashSet(FastClonerHashMap.capacityFor(al.size()));
+		if (ISharingDeepCloner.allShared(cloner, al)) {
+			l.addAll(al);
+			return l;
+		}
 		for (final Object o : al)
 		{
 			l.add(cloner.deepClone(o, clones));
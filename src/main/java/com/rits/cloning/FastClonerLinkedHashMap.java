@@ -12,7 +12,7 @@ public class FastClonerLinkedHashMap implements IFastCloner {
 	@SuppressWarnings({"unchecked", "rawtypes"})
 	public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
 		final LinkedHashMap<?, ?> al = (LinkedHashMap) t;
-		final LinkedHashMap result = new LinkedHashMap();
+		final LinkedHashMap result = new LinkedHashMap(FastClonerHashMap.capacityFor(al.size()));
 		for (final Map.Entry e : al.entrySet()) {
 			result.put(cloner.deepClone(e.getKey(), clones), cloner.deepClone(e.getValue(), clones));
 		}
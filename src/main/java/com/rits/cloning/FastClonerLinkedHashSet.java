@@ -14,7 +14,7 @@ public class FastClonerLinkedHashSet implements IFastCloner
 	@SuppressWarnings({ "unchecked", "rawtypes" })
     public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
 		final LinkedHashSet<?> al = (LinkedHashSet) t;
-		final LinkedHashSet l = new LinkedHashSet();
+		final LinkedHashSet l = new LinkedHashSet(FastClonerHashMap.capacityFor(al.size()));
 		for (final Object o : al)
 		{
 			l.add(cloner.deepClone(o, clones));
@@ -8,12 +8,16 @@ import java.util.Map;
  *
  * 21 May 2009
  */
-public class FastClonerLinkedList implements IFastCloner
+public class FastClonerLinkedList implements IElementAgnosticFastCloner
 {
 	@SuppressWarnings({ "unchecked", "rawtypes" })
     public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
 		final LinkedList al = (LinkedList) t;
 		final LinkedList l = new LinkedList();
+		if (ISharingDeepCloner.allShared(cloner, al)) {
+			l.addAll(al);
+			return l;
+		}
 		for (final Object o : al)
 		{
 			l.add(cloner.deepClone(o, clones));
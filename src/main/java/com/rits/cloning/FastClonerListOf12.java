@@ -4,7 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-public class FastClonerListOf12 implements IFastCloner {
+public class FastClonerListOf12 implements IElementAgnosticFastCloner {
     @SuppressWarnings({"unchecked", "rawtypes"})
     public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
         List al = (List) t;
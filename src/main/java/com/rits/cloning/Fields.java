@@ -1,12 +1,18 @@
 package com.rits.cloning;
 
 
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * {@link Accessor Functions} for {@link #ACCESSOR accessing} {@link Field}s.
@@ -61,6 +67,67 @@ class Fields {
      */
     private Fields() {}
 
+    /**
+     * Return a {@link MethodHandle} reading the specified instance field, derived from the {@link VarHandleAccessor}.
+     *
+     * <p>Volatile fields are read with volatile semantics.
+     *
+     * @param field the field to read
+     * @return a handle of type {@code (DeclaringClass)FieldType}, or null if the field isn't accessible
+     */
+    static MethodHandle getter(Field field) {
+        try {
+            VarHandle h = VarHandleAccessor.INSTANCE.getCookie(field);
+            return h.toMethodHandle(Modifier.isVolatile(field.getModifiers())
+                    ? VarHandle.AccessMode.GET_VOLATILE
+                    : VarHandle.AccessMode.GET);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Return a {@link MethodHandle} writing the specified instance field, derived from the {@link VarHandleAccessor}.
+     *
+     * <p>{@code final} fields can't be written via {@link VarHandle}s; for those an accessible reflective setter is used
+     * instead.
+     *
+     * @param field the field to write
+     * @return a handle of type {@code (DeclaringClass, FieldType)void}, or null if the field isn't accessible
+     */
+    static MethodHandle setter(Field field) {
+        try {
+            if (Modifier.isFinal(field.getModifiers())) {
+                return field.trySetAccessible() ? MethodHandles.lookup().unreflectSetter(field) : null;
+            }
+            // note: we don't need volatile writes during cloning as dst is not yet visible to other threads
+            return VarHandleAccessor.INSTANCE.getCookie(field).toMethodHandle(VarHandle.AccessMode.SET);
+        } catch (RuntimeException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Return a {@link BulkCopier} for the specified primitive, non-volatile instance fields. Fields which are adjacent in
+     * memory are copied together, word by word where their layout allows it, instead of field by field.
+     *
+     * <p>Reference fields are never copied in bulk, their writes have to go through the garbage collector's barriers.
+     *
+     * @param fields the fields to copy, all of the same class hierarchy
+     * @return the copier, or null if the configured {@link #ACCESSOR} can't copy the fields in bulk
+     */
+    static BulkCopier bulkCopier(List<Field> fields) {
+        Accessor<?> accessor = ACCESSOR;
+        return accessor instanceof UnsafeAccessor ? ((UnsafeAccessor) accessor).bulkCopier(fields) : null;
+    }
+
+    /**
+     * Copies a fixed set of fields from one object to another, see {@link #bulkCopier}.
+     */
+    interface BulkCopier {
+        void copy(Object src, Object dst);
+    }
+
     /**
      * Interface for accessing fields of objects.
      *
@@ -104,6 +171,18 @@ class Fields {
          * @param dst the destination object
          */
         void copy(Field field, C cookie, Object src, Object dst) throws IllegalAccessException;
+
+        /**
+         * Compare the specified primitive field of two objects without boxing the values. Floating point values are
+         * compared by their bits, like {@link Double#equals} does.
+         *
+         * @param field the primitive field to compare
+         * @param cookie the field {@link #getCookie cookie}
+         * @param a an object declaring the field
+         * @param b another object declaring the field
+         * @return true if the field has the same value in both objects
+         */
+        boolean primitiveEquals(Field field, C cookie, Object a, Object b) throws IllegalAccessException;
     }
 
     /**
@@ -142,6 +221,20 @@ class Fields {
             else if (t == short.class  ) cookie.setShort  (dst, cookie.getShort  (src));
             else                         cookie.set       (dst, cookie.get       (src));
         }
+
+        @Override
+        public boolean primitiveEquals(Field field, Field cookie, Object a, Object b) throws IllegalAccessException {
+            Class<?> t = field.getType();
+            if      (t == int.class    ) return cookie.getInt    (a) == cookie.getInt    (b);
+            else if (t == long.class   ) return cookie.getLong   (a) == cookie.getLong   (b);
+            else if (t == boolean.class) return cookie.getBoolean(a) == cookie.getBoolean(b);
+            else if (t == double.class ) return Double.doubleToLongBits(cookie.getDouble(a)) == Double.doubleToLongBits(cookie.getDouble(b));
+            else if (t == float.class  ) return Float.floatToIntBits(cookie.getFloat(a)) == Float.floatToIntBits(cookie.getFloat(b));
+            else if (t == char.class   ) return cookie.getChar   (a) == cookie.getChar   (b);
+            else if (t == byte.class   ) return cookie.getByte   (a) == cookie.getByte   (b);
+            else if (t == short.class  ) return cookie.getShort  (a) == cookie.getShort  (b);
+            else                         return Objects.equals(cookie.get(a), cookie.get(b));
+        }
     }
 
     /**
@@ -226,6 +319,31 @@ class Fields {
             else if (t == short.class  ) hand.set(dst, v ?   (short) hand.getVolatile(src) :   (short) hand.get(src));
             else                         hand.set(dst, v ?           hand.getVolatile(src) :           hand.get(src));
         }
+
+        @Override
+        public boolean primitiveEquals(Field field, VarHandle hand, Object a, Object b) {
+            Class<?> t = field.getType();
+            if (Modifier.isVolatile(field.getModifiers())) {
+                if      (t == int.class    ) return     (int) hand.getVolatile(a) ==     (int) hand.getVolatile(b);
+                else if (t == long.class   ) return    (long) hand.getVolatile(a) ==    (long) hand.getVolatile(b);
+                else if (t == boolean.class) return (boolean) hand.getVolatile(a) == (boolean) hand.getVolatile(b);
+                else if (t == double.class ) return Double.doubleToLongBits((double) hand.getVolatile(a)) == Double.doubleToLongBits((double) hand.getVolatile(b));
+                else if (t == float.class  ) return Float.floatToIntBits((float) hand.getVolatile(a)) == Float.floatToIntBits((float) hand.getVolatile(b));
+                else if (t == char.class   ) return    (char) hand.getVolatile(a) ==    (char) hand.getVolatile(b);
+                else if (t == byte.class   ) return    (byte) hand.getVolatile(a) ==    (byte) hand.getVolatile(b);
+                else if (t == short.class  ) return   (short) hand.getVolatile(a) ==   (short) hand.getVolatile(b);
+                else                         return Objects.equals(hand.getVolatile(a), hand.getVolatile(b));
+            }
+            if      (t == int.class    ) return     (int) hand.get(a) ==     (int) hand.get(b);
+            else if (t == long.class   ) return    (long) hand.get(a) ==    (long) hand.get(b);
+            else if (t == boolean.class) return (boolean) hand.get(a) == (boolean) hand.get(b);
+            else if (t == double.class ) return Double.doubleToLongBits((double) hand.get(a)) == Double.doubleToLongBits((double) hand.get(b));
+            else if (t == float.class  ) return Float.floatToIntBits((float) hand.get(a)) == Float.floatToIntBits((float) hand.get(b));
+            else if (t == char.class   ) return    (char) hand.get(a) ==    (char) hand.get(b);
+            else if (t == byte.class   ) return    (byte) hand.get(a) ==    (byte) hand.get(b);
+            else if (t == short.class  ) return   (short) hand.get(a) ==   (short) hand.get(b);
+            else                         return Objects.equals(hand.get(a), hand.get(b));
+        }
     }
 
     /**
@@ -307,6 +425,69 @@ class Fields {
             return offsetByField.get(field.getDeclaringClass()).get(field);
         }
 
+        private static int sizeOf(Class<?> t) {
+            return t == long.class || t == double.class ? 8
+                    : t == int.class || t == float.class ? 4
+                    : t == char.class || t == short.class ? 2
+                    : 1;
+        }
+
+        BulkCopier bulkCopier(List<Field> fields) {
+            List<long[]> ranges = new ArrayList<>(); // {offset, size}
+            for (Field f : fields) {
+                int mods = f.getModifiers();
+                Long of = getCookie(f);
+                if (of == null || Modifier.isStatic(mods) || Modifier.isVolatile(mods) || !f.getType().isPrimitive()) return null;
+                ranges.add(new long[]{of, sizeOf(f.getType())});
+            }
+            ranges.sort(Comparator.comparingLong(r -> r[0]));
+
+            // merge adjacent fields into ranges and split the ranges into naturally aligned chunks of up to 8 bytes
+            long[] offsets = new long[fields.size()];
+            byte[] sizes = new byte[fields.size()];
+            int chunks = 0;
+            for (int i = 0; i < ranges.size(); ) {
+                long start = ranges.get(i)[0];
+                long end = start + ranges.get(i)[1];
+                for (i++; i < ranges.size() && ranges.get(i)[0] == end; i++) {
+                    end += ranges.get(i)[1];
+                }
+                for (long p = start; p < end; ) {
+                    int w = 8;
+                    while (w > end - p || p % w != 0) w >>= 1;
+                    offsets[chunks] = p;
+                    sizes[chunks++] = (byte) w;
+                    p += w;
+                }
+            }
+            return new UnsafeBulkCopier(Arrays.copyOf(offsets, chunks), Arrays.copyOf(sizes, chunks));
+        }
+
+        private class UnsafeBulkCopier implements BulkCopier {
+            private final long[] offsets;
+            private final byte[] sizes;
+
+            UnsafeBulkCopier(long[] offsets, byte[] sizes) {
+                this.offsets = offsets;
+                this.sizes = sizes;
+            }
+
+            @Override
+            public void copy(Object src, Object dst) {
+                final long[] offsets = this.offsets;
+                final byte[] sizes = this.sizes;
+                for (int i = 0; i < offsets.length; i++) {
+                    final long of = offsets[i];
+                    switch (sizes[i]) {
+                        case 8:  u.putLong (dst, of, u.getLong (src, of)); break;
+                        case 4:  u.putInt  (dst, of, u.getInt  (src, of)); break;
+                        case 2:  u.putShort(dst, of, u.getShort(src, of)); break;
+                        default: u.putByte (dst, of, u.getByte (src, of)); break;
+                    }
+                }
+            }
+        }
+
         @Override
         public Object get(Field field, Long of, Object src) {
             if (of == null && (of = getCookie(field)) == null) { // fall back on safe mechanisms
@@ -374,5 +555,24 @@ class Fields {
             else if (t == short.class  ) u.putShort  (dst, of, v ? u.getShortVolatile  (src, of) : u.getShort  (src, of));
             else VarHandleAccessor.INSTANCE.copy(field, VarHandleAccessor.INSTANCE.getCookie(field), src, dst);
         }
+
+        @Override
+        public boolean primitiveEquals(Field field, Long of, Object a, Object b) {
+            int mods = field.getModifiers();
+            if (Modifier.isStatic(mods) || (of == null && (of = getCookie(field)) == null)) { // fall back on safe mechanisms
+                return VarHandleAccessor.INSTANCE.primitiveEquals(field, VarHandleAccessor.INSTANCE.getCookie(field), a, b);
+            }
+
+            // floating point values are compared by their raw bits, which only tells apart NaNs Double.equals doesn't
+            Class<?> t = field.getType();
+            boolean v = Modifier.isVolatile(mods);
+            if      (t == int.class || t == float.class ) return v ? u.getIntVolatile    (a, of) == u.getIntVolatile    (b, of) : u.getInt    (a, of) == u.getInt    (b, of);
+            else if (t == long.class || t == double.class) return v ? u.getLongVolatile   (a, of) == u.getLongVolatile   (b, of) : u.getLong   (a, of) == u.getLong   (b, of);
+            else if (t == boolean.class) return v ? u.getBooleanVolatile(a, of) == u.getBooleanVolatile(b, of) : u.getBoolean(a, of) == u.getBoolean(b, of);
+            else if (t == char.class   ) return v ? u.getCharVolatile   (a, of) == u.getCharVolatile   (b, of) : u.getChar   (a, of) == u.getChar   (b, of);
+            else if (t == byte.class   ) return v ? u.getByteVolatile   (a, of) == u.getByteVolatile   (b, of) : u.getByte   (a, of) == u.getByte   (b, of);
+            else if (t == short.class  ) return v ? u.getShortVolatile  (a, of) == u.getShortVolatile  (b, of) : u.getShort  (a, of) == u.getShort  (b, of);
+            else return VarHandleAccessor.INSTANCE.primitiveEquals(field, VarHandleAccessor.INSTANCE.getCookie(field), a, b);
+        }
     }
 }
\ No newline at end of file
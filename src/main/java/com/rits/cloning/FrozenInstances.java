@@ -0,0 +1,79 @@
+package com.rits.cloning;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+/**
+ * the instances registered by {@link Cloner#registerFrozenGraph(Object)}, which are never cloned. The instances are weakly
+ * referenced and compared by identity. The table is never modified, freezing more instances creates a new one (and
+ * drops the instances collected meanwhile), so that lookups need no locking and don't allocate.
+ *
+ * @author kostas.kougios
+ */
+final class FrozenInstances {
+	private final WeakReference<?>[] table;
+	private final int size;
+
+	private FrozenInstances(WeakReference<?>[] table, int size) {
+		this.table = table;
+		this.size = size;
+	}
+
+	/**
+	 * @return the power of two capacity keeping n entries at most half full
+	 */
+	private static int capacityFor(int n) {
+		return Integer.highestOneBit(Math.max(n * 2, 16) - 1) << 1;
+	}
+
+	private static int slot(Object o, int length) {
+		int h = System.identityHashCode(o);
+		return (h ^ h >>> 16) * 0x9E3779B9 & (length - 1);
+	}
+
+	boolean contains(Object o) {
+		final WeakReference<?>[] tab = table;
+		for (int i = slot(o, tab.length); ; i = (i + 1) & (tab.length - 1)) {
+			final WeakReference<?> r = tab[i];
+			if (r == null) return false;
+			if (r.get() == o) return true;
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param frozen the registry so far, null if empty
+	 * @param added  instances to add, none of them already frozen
+	 * @return a registry with the live instances of frozen plus added
+	 */
+	static FrozenInstances plus(FrozenInstances frozen, List<Object> added) {
+		final int n = (frozen == null ? 0 : frozen.size) + added.size();
+		final WeakReference<?>[] tab = new WeakReference<?>[capacityFor(n)];
+		int size = 0;
+		if (frozen != null) {
+			for (WeakReference<?> r : frozen.table) {
+				final Object o = r == null ? null : r.get();
+				if (o != null) {
+					insert(tab, o, r);
+					size++;
+				}
+			}
+		}
+		for (Object o : added) {
+			insert(tab, o, new WeakReference<>(o));
+			size++;
+		}
+		return size == 0 ? null : new FrozenInstances(tab, size);
+	}
+
+	private static void insert(WeakReference<?>[] tab, Object o, WeakReference<?> r) {
+		int i = slot(o, tab.length);
+		while (tab[i] != null) {
+			i = (i + 1) & (tab.length - 1);
+		}
+		tab[i] = r;
+	}
+}
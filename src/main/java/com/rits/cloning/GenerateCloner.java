@@ -0,0 +1,26 @@
+package com.rits.cloning;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * marks a class for compile time cloner generation. With the {@code cloning-processor} on the annotation processor
+ * path, a reflection-free {@link IGeneratedCloner} is generated next to the annotated class and registered
+ * automatically by every {@link Cloner}.
+ * <p>
+ * The class needs an accessible no-arg constructor, which the generated cloner calls for every clone, and its
+ * fields must be accessible from its package and non-final. With the {@code -Acloning.accessors=true} processor
+ * option, other fields are copied via their accessible getters and setters instead. Fields hiding a superclass field
+ * aren't supported. Classes can also be listed with the {@code -Acloning.generate=a.B,c.D} processor option instead
+ * of being annotated.
+ *
+ * @author kostas.kougios
+ */
+@Target(TYPE)
+@Retention(CLASS)
+public @interface GenerateCloner
+{
+}
@@ -0,0 +1,106 @@
+package com.rits.cloning;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * copies fields via {@link HiddenClassCopiers generated copiers}, one per class in the hierarchy. Fields that
+ * can't be generated, cloning strategies and dumping of cloned classes fall back on the reflective implementation.
+ *
+ * @author kostas.kougios
+ */
+class GeneratedObjectCloner extends Cloner.CloneObjectCloner {
+	private final MethodHandle[] deepCopiers;
+	private final Object[][] cloneFunctions;
+	private final MethodHandle[] shallowCopiers;
+	private final int[] reflectiveFields;
+
+	GeneratedObjectCloner(Cloner cloner, Class<?> clz) {
+		super(cloner, clz);
+		List<MethodHandle> deep = new ArrayList<>();
+		List<Object[]> fns = new ArrayList<>();
+		List<MethodHandle> shallow = new ArrayList<>();
+		List<Integer> reflective = new ArrayList<>();
+		int i = 0;
+		while (i < numFields) {
+			// fields are grouped by declaring class, generate one copier per group
+			Class<?> declaringClass = fields[i].getDeclaringClass();
+			int end = i;
+			while (end < numFields && fields[end].getDeclaringClass() == declaringClass) end++;
+			MethodHandles.Lookup lookup = HiddenClassCopiers.lookupFor(declaringClass);
+			List<Integer> generated = new ArrayList<>();
+			for (int j = i; j < end; j++) {
+				if (lookup != null && HiddenClassCopiers.canGenerate(lookup, fields[j])) generated.add(j);
+				else reflective.add(j);
+			}
+			if (!generated.isEmpty()) {
+				Field[] fs = new Field[generated.size()];
+				boolean[] clone = new boolean[fs.length];
+				List<Object> f = new ArrayList<>();
+				for (int j = 0; j < fs.length; j++) {
+					int field = generated.get(j);
+					fs[j] = fields[field];
+					clone[j] = shouldClone[field];
+					if (clone[j]) f.add(fieldCloners[field] != null ? fieldCloners[field] : cloner.cloneFunction);
+				}
+				MethodHandle d = HiddenClassCopiers.copier(lookup, fs, clone);
+				MethodHandle s = HiddenClassCopiers.copier(lookup, fs, new boolean[fs.length]);
+				if (d != null && s != null) {
+					deep.add(d);
+					shallow.add(s);
+					fns.add(f.toArray());
+				} else {
+					reflective.addAll(generated);
+				}
+			}
+			i = end;
+		}
+		deepCopiers = deep.toArray(new MethodHandle[0]);
+		cloneFunctions = fns.toArray(new Object[0][]);
+		shallowCopiers = shallow.toArray(new MethodHandle[0]);
+		reflectiveFields = new int[reflective.size()];
+		for (int j = 0; j < reflectiveFields.length; j++) {
+			reflectiveFields[j] = reflective.get(j);
+		}
+	}
+
+	@Override
+	public void fill(Object o, Object newInstance, Map<Object, Object> clones) throws IllegalAccessException {
+		if (!plain) {
+			super.fill(o, newInstance, clones);
+			return;
+		}
+		try {
+			for (int i = 0; i < deepCopiers.length; i++) {
+				deepCopiers[i].invokeExact(o, newInstance, cloneFunctions[i], clones);
+			}
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new CloningException(e.getMessage(), e);
+		}
+		for (int i : reflectiveFields) {
+			copyField(i, o, newInstance, clones);
+		}
+	}
+
+	@Override
+	void fillShallow(Object o, Object newInstance) throws IllegalAccessException {
+		try {
+			for (MethodHandle copier : shallowCopiers) {
+				copier.invokeExact(o, newInstance, (Object[]) null, (Map<Object, Object>) null);
+			}
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new CloningException(e.getMessage(), e);
+		}
+		for (int i : reflectiveFields) {
+			Fields.ACCESSOR.copy(fields[i], cookies[i], o, newInstance);
+		}
+	}
+}
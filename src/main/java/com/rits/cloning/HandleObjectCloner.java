@@ -0,0 +1,152 @@
+package com.rits.cloning;
+
+import org.objenesis.instantiator.ObjectInstantiator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Map;
+
+/**
+ * composes a single method handle per class out of the field getters and setters, the instantiator and the per
+ * field clone calls. Fields that can't be accessed via handles, cloning strategies and dumping of cloned classes
+ * fall back on the reflective implementation.
+ *
+ * @author kostas.kougios
+ */
+class HandleObjectCloner extends Cloner.CloneObjectCloner {
+	/**
+	 * (Object o, Map clones)Object
+	 */
+	private final MethodHandle deep;
+	/**
+	 * (Object o)Object
+	 */
+	private final MethodHandle shallow;
+	/**
+	 * (Object o, Object clone, Map clones)void, fills an already registered clone
+	 */
+	private final MethodHandle fill;
+
+	HandleObjectCloner(Cloner cloner, Class<?> clz) {
+		super(cloner, clz);
+		MethodHandle[] deepCopiers = new MethodHandle[numFields];
+		MethodHandle[] shallowCopiers = new MethodHandle[numFields];
+		MethodHandle cloneInternal = Handles.CLONE_INTERNAL.bindTo(cloner.cloneFunction);
+		for (int i = 0; i < numFields; i++) {
+			Field f = fields[i];
+			MethodHandle getter = Fields.getter(f);
+			MethodHandle setter = Fields.setter(f);
+			if (getter == null || setter == null) {
+				deepCopiers[i] = MethodHandles.insertArguments(Handles.COPY_FIELD.bindTo(this), 0, i);
+				shallowCopiers[i] = MethodHandles.dropArguments(MethodHandles.insertArguments(Handles.COPY_FIELD_SHALLOW.bindTo(this), 0, i), 2, Map.class);
+				continue;
+			}
+			Class<?> t = f.getType();
+			getter = getter.asType(MethodType.methodType(t, Object.class));
+			setter = setter.asType(MethodType.methodType(void.class, Object.class, t));
+			// (clone, src) -> clone.f = src.f
+			MethodHandle copy = MethodHandles.filterArguments(setter, 1, getter);
+			shallowCopiers[i] = MethodHandles.permuteArguments(copy, Handles.FIELD_COPIER, 1, 0);
+			if (shouldClone[i]) {
+				// (src, clones) -> cloneInternal(src.f, clones)
+				MethodHandle cloneValue = fieldCloners[i] != null ? Handles.CLONE_VALUE.bindTo(fieldCloners[i]) : cloneInternal;
+				MethodHandle cloneField = MethodHandles.filterArguments(cloneValue, 0, getter.asType(MethodType.methodType(Object.class, Object.class)))
+						.asType(MethodType.methodType(t, Object.class, Map.class));
+				// (clone, src, clones) -> clone.f = cloneInternal(src.f, clones)
+				deepCopiers[i] = MethodHandles.permuteArguments(MethodHandles.collectArguments(setter, 1, cloneField), Handles.FIELD_COPIER, 1, 0, 2);
+			} else {
+				deepCopiers[i] = shallowCopiers[i];
+			}
+		}
+		fill = sequence(deepCopiers);
+		deep = cloneHandle(MethodHandles.foldArguments(fill, Handles.REGISTER));
+		shallow = MethodHandles.insertArguments(cloneHandle(sequence(shallowCopiers)), 1, (Object) null)
+				.asType(MethodType.methodType(Object.class, Object.class));
+	}
+
+	/**
+	 * @param copiers (src, clone, clones)void handles
+	 * @return a (src, clone, clones)void handle invoking all copiers in order
+	 */
+	private MethodHandle sequence(MethodHandle[] copiers) {
+		MethodHandle h = MethodHandles.empty(Handles.FIELD_COPIER);
+		for (int i = copiers.length - 1; i >= 0; i--) {
+			h = MethodHandles.foldArguments(h, copiers[i]);
+		}
+		return h;
+	}
+
+	/**
+	 * @param body (src, clone, clones)void
+	 * @return (src, clones)Object which instantiates the clone, applies the body and returns the clone
+	 */
+	private MethodHandle cloneHandle(MethodHandle body) {
+		MethodHandle returnClone = MethodHandles.dropArguments(
+				MethodHandles.dropArguments(MethodHandles.identity(Object.class), 0, Object.class), 2, Map.class);
+		MethodHandle h = MethodHandles.foldArguments(returnClone, body);
+		return MethodHandles.foldArguments(h, 1, Handles.NEW_INSTANCE.bindTo(instantiator));
+	}
+
+	@Override
+	public <T> T deepClone(T o, Map<Object, Object> clones) {
+		if (!plain || pool != null) return super.deepClone(o, clones);
+		try {
+			@SuppressWarnings("unchecked") T clone = clones != null
+					? (T) (Object) deep.invokeExact((Object) o, clones)
+					: (T) (Object) shallow.invokeExact((Object) o);
+			return clone;
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new CloningException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void fill(Object o, Object newInstance, Map<Object, Object> clones) throws IllegalAccessException {
+		if (!plain) {
+			super.fill(o, newInstance, clones);
+			return;
+		}
+		try {
+			fill.invokeExact(o, newInstance, clones);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new CloningException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * method handles used to compose {@link HandleObjectCloner}s, in a holder so they are only looked up when used
+	 */
+	private static class Handles {
+		private static final MethodType FIELD_COPIER = MethodType.methodType(void.class, Object.class, Object.class, Map.class);
+		private static final MethodHandle CLONE_INTERNAL;
+		private static final MethodHandle CLONE_VALUE;
+		private static final MethodHandle COPY_FIELD;
+		private static final MethodHandle COPY_FIELD_SHALLOW;
+		private static final MethodHandle NEW_INSTANCE;
+		private static final MethodHandle REGISTER;
+
+		static {
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				CLONE_INTERNAL = lookup.findVirtual(Cloner.CloneFunction.class, "cloneInternal", MethodType.methodType(Object.class, Object.class, Map.class));
+				CLONE_VALUE = lookup.findVirtual(Cloner.FieldCloner.class, "cloneValue", MethodType.methodType(Object.class, Object.class, Map.class));
+				COPY_FIELD = lookup.findVirtual(Cloner.CloneObjectCloner.class, "copyField", MethodType.methodType(void.class, int.class, Object.class, Object.class, Map.class));
+				COPY_FIELD_SHALLOW = lookup.findVirtual(Cloner.CloneObjectCloner.class, "copyFieldShallow", MethodType.methodType(void.class, int.class, Object.class, Object.class));
+				NEW_INSTANCE = lookup.findVirtual(ObjectInstantiator.class, "newInstance", MethodType.methodType(Object.class));
+				// (src, clone, clones) -> clones.put(src, clone)
+				REGISTER = MethodHandles.permuteArguments(
+						lookup.findVirtual(Map.class, "put", MethodType.methodType(Object.class, Object.class, Object.class))
+								.asType(MethodType.methodType(void.class, Map.class, Object.class, Object.class)),
+						FIELD_COPIER, 2, 0, 1);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+	}
+}
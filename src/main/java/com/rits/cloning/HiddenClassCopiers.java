@@ -0,0 +1,387 @@
+package com.rits.cloning;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Generates straight-line field copiers as hidden classes ({@code MethodHandles.Lookup.defineHiddenClass}).
+ *
+ * <p>A copier is generated per declaring class and is a nestmate of it, so it can read and write the private fields of
+ * that class with plain {@code getfield}/{@code putfield} instructions. Each generated copier has the signature
+ * {@code static void copy(Object src, Object dst, Object[] fns, Map clones)}; fields marked for cloning are passed
+ * through the {@link BiFunction} found at their position in {@code fns} as {@code fn.apply(value, clones)}, all other
+ * fields are copied as they are.
+ *
+ * <p>Final fields can't be written outside of a constructor and are never included, neither are fields whose type
+ * isn't accessible from the declaring class. Callers must copy those through {@link Fields#ACCESSOR}.
+ *
+ * <p>Hidden classes require Java 15. On older JVMs, or whenever the declaring class can't be privately looked up
+ * (i.e. JDK internals without {@code --add-opens}, or classes in another class loader's unnamed module),
+ * {@link #generate} returns null.
+ *
+ * @author kostas.kougios
+ */
+final class HiddenClassCopiers {
+	/**
+	 * The type of all generated copiers.
+	 */
+	static final MethodType COPIER_TYPE = MethodType.methodType(void.class, Object.class, Object.class, Object[].class, Map.class);
+
+	/**
+	 * {@code Lookup.defineHiddenClass(byte[], boolean, ClassOption[])}, or null if unavailable.
+	 */
+	private static final MethodHandle DEFINE_HIDDEN_CLASS = findDefineHiddenClass();
+
+	/**
+	 * {@code new ClassOption[]{NESTMATE}}
+	 */
+	private static final Object NESTMATE_OPTIONS = findNestmateOptions();
+
+	/**
+	 * {@code Class.isHidden()}, or null if unavailable.
+	 */
+	private static final MethodHandle IS_HIDDEN = findVirtual(Class.class, "isHidden");
+
+	/**
+	 * {@code Lookup.hasFullPrivilegeAccess()}, or null if unavailable.
+	 */
+	private static final MethodHandle HAS_FULL_PRIVILEGE_ACCESS = findVirtual(MethodHandles.Lookup.class, "hasFullPrivilegeAccess");
+
+	/**
+	 * Blocked constructor.
+	 */
+	private HiddenClassCopiers() {}
+
+	private static MethodHandle findDefineHiddenClass() {
+		try {
+			Class<?> options = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+			return MethodHandles.publicLookup().findVirtual(MethodHandles.Lookup.class, "defineHiddenClass",
+					MethodType.methodType(MethodHandles.Lookup.class, byte[].class, boolean.class, Array.newInstance(options, 0).getClass())).asFixedArity();
+		} catch (ReflectiveOperationException e) {
+			return null; // pre Java 15
+		}
+	}
+
+	private static Object findNestmateOptions() {
+		try {
+			Class<?> options = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+			Object a = Array.newInstance(options, 1);
+			for (Object o : options.getEnumConstants()) {
+				if ("NESTMATE".equals(o.toString())) Array.set(a, 0, o);
+			}
+			return a;
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static MethodHandle findVirtual(Class<?> c, String booleanMethod) {
+		try {
+			return MethodHandles.publicLookup().findVirtual(c, booleanMethod, MethodType.methodType(boolean.class));
+		} catch (ReflectiveOperationException e) {
+			return null; // pre Java 15 (isHidden) or 14 (hasFullPrivilegeAccess)
+		}
+	}
+
+	private static boolean isHidden(Class<?> c) throws Throwable {
+		return IS_HIDDEN != null && (boolean) IS_HIDDEN.invokeExact(c);
+	}
+
+	private static boolean hasFullPrivilegeAccess(MethodHandles.Lookup lookup) throws Throwable {
+		if (HAS_FULL_PRIVILEGE_ACCESS != null) return (boolean) HAS_FULL_PRIVILEGE_ACCESS.invokeExact(lookup);
+		final int full = MethodHandles.Lookup.PRIVATE | MethodHandles.Lookup.MODULE;
+		return (lookup.lookupModes() & full) == full;
+	}
+
+	/**
+	 * @return true if hidden classes are supported by the running JVM
+	 */
+	static boolean isAvailable() {
+		return DEFINE_HIDDEN_CLASS != null && NESTMATE_OPTIONS != null;
+	}
+
+	/**
+	 * Checks if a field can be handled by a generated copier of its declaring class.
+	 *
+	 * @param lookup a private lookup of the declaring class
+	 * @param f      the field
+	 * @return true if the field can be generated
+	 */
+	static boolean canGenerate(MethodHandles.Lookup lookup, Field f) {
+		int mods = f.getModifiers();
+		if (Modifier.isStatic(mods) || Modifier.isFinal(mods)) return false;
+		Class<?> t = f.getType();
+		while (t.isArray()) t = t.getComponentType();
+		if (t.isPrimitive()) return true;
+		try {
+			lookup.accessClass(t);
+			return true;
+		} catch (IllegalAccessException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param declaringClass the class declaring all the fields
+	 * @return a private lookup of the declaring class with full privileges, or null if none can be obtained
+	 */
+	static MethodHandles.Lookup lookupFor(Class<?> declaringClass) {
+		if (!isAvailable() || declaringClass.isArray() || declaringClass.isPrimitive()) return null;
+		try {
+			if (isHidden(declaringClass)) return null;
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup());
+			return hasFullPrivilegeAccess(lookup) ? lookup : null;
+		} catch (Throwable e) {
+			if (e instanceof VirtualMachineError) throw (VirtualMachineError) e;
+			return null;
+		}
+	}
+
+	/**
+	 * The copiers generated so far per declaring class, by {@link #key fields and clone flags}. Shared by all cloners,
+	 * so that the plans of every cloner, and plans recomputed after configuration changes, reuse the hidden classes.
+	 */
+	private static final ClassValue<Map<String, MethodHandle>> COPIERS = new ClassValue<Map<String, MethodHandle>>() {
+		@Override
+		protected Map<String, MethodHandle> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	/**
+	 * Returns the copier for the given fields, generating it unless one was generated before.
+	 *
+	 * @see #generate
+	 */
+	static MethodHandle copier(MethodHandles.Lookup lookup, Field[] fields, boolean[] clone) {
+		final Map<String, MethodHandle> copiers = COPIERS.get(lookup.lookupClass());
+		final String key = key(fields, clone);
+		final MethodHandle copier = copiers.get(key);
+		if (copier != null) return copier;
+		// not cached if it can't be defined, which is retried then
+		return copiers.computeIfAbsent(key, k -> generate(lookup, fields, clone));
+	}
+
+	/**
+	 * @return the names of the fields, in order, each one followed by * if it is cloned
+	 */
+	private static String key(Field[] fields, boolean[] clone) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < fields.length; i++) {
+			sb.append(fields[i].getName()).append(clone[i] ? "*," : ",");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Generates a copier for the given fields.
+	 *
+	 * @param lookup the {@link #lookupFor lookup} of the class declaring all the fields
+	 * @param fields the fields to copy, all must be {@link #canGenerate generatable}
+	 * @param clone  per field, true if the value must be passed through the next function of {@code fns}
+	 * @return a handle of {@link #COPIER_TYPE}, or null if the copier couldn't be defined
+	 */
+	static MethodHandle generate(MethodHandles.Lookup lookup, Field[] fields, boolean[] clone) {
+		try {
+			byte[] bytes = classBytes(lookup.lookupClass(), fields, clone);
+			MethodHandles.Lookup hidden = (MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(lookup, bytes, true, NESTMATE_OPTIONS);
+			return hidden.findStatic(hidden.lookupClass(), "copy", COPIER_TYPE);
+		} catch (Throwable e) {
+			if (e instanceof VirtualMachineError) throw (VirtualMachineError) e;
+			return null;
+		}
+	}
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_STATIC = 0x0008;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+	private static final int ACC_SYNTHETIC = 0x1000;
+
+	private static final int ALOAD = 0x19;
+	private static final int ASTORE = 0x3a;
+	private static final int ALOAD_1 = 0x2b;
+	private static final int ALOAD_2 = 0x2c;
+	private static final int ALOAD_3 = 0x2d;
+	private static final int ALOAD_0 = 0x2a;
+	private static final int SIPUSH = 0x11;
+	private static final int AALOAD = 0x32;
+	private static final int CHECKCAST = 0xc0;
+	private static final int GETFIELD = 0xb4;
+	private static final int PUTFIELD = 0xb5;
+	private static final int INVOKEINTERFACE = 0xb9;
+	private static final int RETURN = 0xb1;
+
+	private static byte[] classBytes(Class<?> declaringClass, Field[] fields, boolean[] clone) throws IOException {
+		ConstantPool cp = new ConstantPool();
+		String owner = internalName(declaringClass);
+		int thisClass = cp.classRef(owner + "$$Copier");
+		int superClass = cp.classRef("java/lang/Object");
+		int ownerClass = cp.classRef(owner);
+		int fnClass = cp.classRef("java/util/function/BiFunction");
+		int apply = cp.memberRef(11, "java/util/function/BiFunction", "apply", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+		int name = cp.utf8("copy");
+		int descriptor = cp.utf8("(Ljava/lang/Object;Ljava/lang/Object;[Ljava/lang/Object;Ljava/util/Map;)V");
+		int codeName = cp.utf8("Code");
+
+		ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+		DataOutputStream code = new DataOutputStream(codeBytes);
+		code.writeByte(ALOAD_0);
+		code.writeByte(CHECKCAST);
+		code.writeShort(ownerClass);
+		code.writeByte(ASTORE);
+		code.writeByte(4);
+		code.writeByte(ALOAD_1);
+		code.writeByte(CHECKCAST);
+		code.writeShort(ownerClass);
+		code.writeByte(ASTORE);
+		code.writeByte(5);
+		int fn = 0;
+		for (int i = 0; i < fields.length; i++) {
+			Field f = fields[i];
+			Class<?> t = f.getType();
+			int field = cp.memberRef(9, owner, f.getName(), descriptor(t));
+			code.writeByte(ALOAD);
+			code.writeByte(5);
+			if (clone[i]) {
+				code.writeByte(ALOAD_2);
+				code.writeByte(SIPUSH);
+				code.writeShort(fn++);
+				code.writeByte(AALOAD);
+				code.writeByte(CHECKCAST);
+				code.writeShort(fnClass);
+			}
+			code.writeByte(ALOAD);
+			code.writeByte(4);
+			code.writeByte(GETFIELD);
+			code.writeShort(field);
+			if (clone[i]) {
+				code.writeByte(ALOAD_3);
+				code.writeByte(INVOKEINTERFACE);
+				code.writeShort(apply);
+				code.writeByte(3);
+				code.writeByte(0);
+				if (t != Object.class && !t.isInterface()) {
+					code.writeByte(CHECKCAST);
+					code.writeShort(cp.classRef(t.isArray() ? descriptor(t) : internalName(t)));
+				}
+			}
+			code.writeByte(PUTFIELD);
+			code.writeShort(field);
+		}
+		code.writeByte(RETURN);
+		code.flush();
+
+		ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(classBytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(55); // Java 11, straight-line code doesn't need a StackMapTable
+		cp.writeTo(out);
+		out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC);
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(0); // interfaces
+		out.writeShort(0); // fields
+		out.writeShort(1); // methods
+		out.writeShort(ACC_PUBLIC | ACC_STATIC);
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1); // attributes
+		out.writeShort(codeName);
+		out.writeInt(12 + codeBytes.size());
+		out.writeShort(4); // max stack: dst, fn, value, clones
+		out.writeShort(6); // max locals: 4 arguments plus the 2 casted ones
+		out.writeInt(codeBytes.size());
+		codeBytes.writeTo(out);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // code attributes
+		out.writeShort(0); // class attributes
+		out.flush();
+		return classBytes.toByteArray();
+	}
+
+	private static String internalName(Class<?> c) {
+		return c.getName().replace('.', '/');
+	}
+
+	private static String descriptor(Class<?> t) {
+		if (t == int.class) return "I";
+		if (t == long.class) return "J";
+		if (t == boolean.class) return "Z";
+		if (t == double.class) return "D";
+		if (t == float.class) return "F";
+		if (t == char.class) return "C";
+		if (t == byte.class) return "B";
+		if (t == short.class) return "S";
+		if (t.isArray()) return internalName(t);
+		return "L" + internalName(t) + ";";
+	}
+
+	/**
+	 * Minimal class file constant pool, only supporting the entries used by the copiers.
+	 */
+	private static class ConstantPool {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<String, Integer> indexes = new HashMap<>();
+		private int count = 1;
+
+		int utf8(String s) throws IOException {
+			Integer i = indexes.get("U" + s);
+			if (i != null) return i;
+			out.writeByte(1);
+			out.writeUTF(s);
+			return add("U" + s);
+		}
+
+		int classRef(String internalName) throws IOException {
+			Integer i = indexes.get("C" + internalName);
+			if (i != null) return i;
+			int n = utf8(internalName);
+			out.writeByte(7);
+			out.writeShort(n);
+			return add("C" + internalName);
+		}
+
+		int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+			String key = tag + owner + "." + name + ":" + descriptor;
+			Integer i = indexes.get(key);
+			if (i != null) return i;
+			int c = classRef(owner);
+			int n = utf8(name);
+			int d = utf8(descriptor);
+			out.writeByte(12);
+			out.writeShort(n);
+			out.writeShort(d);
+			int nameAndType = count++;
+			out.writeByte(tag);
+			out.writeShort(c);
+			out.writeShort(nameAndType);
+			return add(key);
+		}
+
+		private int add(String key) {
+			int i = count++;
+			indexes.put(key, i);
+			return i;
+		}
+
+		void writeTo(DataOutputStream o) throws IOException {
+			out.flush();
+			o.writeShort(count);
+			bytes.writeTo(o);
+		}
+	}
+}
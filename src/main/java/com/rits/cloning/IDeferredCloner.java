@@ -0,0 +1,14 @@
+package com.rits.cloning;
+
+import java.util.Map;
+
+/**
+ * a cloner which can allocate and register a clone first and fill it later, see {@link CloneContext#defer}
+ *
+ * @author kostas.kougios
+ */
+interface IDeferredCloner extends IDeepCloner {
+	Object allocate(Object o, Map<Object, Object> clones);
+
+	void fill(Object o, Object clone, Map<Object, Object> clones) throws IllegalAccessException;
+}
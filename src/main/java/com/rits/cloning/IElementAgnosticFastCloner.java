@@ -0,0 +1,11 @@
+package com.rits.cloning;
+
+/**
+ * marks fast cloners which only store the clones of the elements and never hash, compare or otherwise read them.
+ * When {@link Cloner#setIterative cloning iteratively}, the elements of such collections can be filled after the
+ * collection is cloned, which keeps the stack depth constant for i.e. deep trees of lists.
+ *
+ * @author kostas.kougios
+ */
+interface IElementAgnosticFastCloner extends IFastCloner {
+}
@@ -5,6 +5,8 @@ import java.util.Map;
 /**
  * allows a custom cloner to be created for a specific class.
  * (it has to be registered with Cloner)
+ * <p>
+ * The clones map is reused by later clones, so it must not be kept after clone() returns.
  *
  * @author kostantinos.kougios
  * 21 May 2009
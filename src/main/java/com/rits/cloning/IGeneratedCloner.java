@@ -0,0 +1,14 @@
+package com.rits.cloning;
+
+/**
+ * a fast cloner generated at compile time for classes marked with {@link GenerateCloner}. Generated cloners are
+ * discovered via {@link java.util.ServiceLoader} and registered as {@link IFastCloner}s of their cloned class.
+ *
+ * @author kostas.kougios
+ */
+public interface IGeneratedCloner extends IFastCloner {
+	/**
+	 * @return the class this cloner clones
+	 */
+	Class<?> getClonedClass();
+}
@@ -0,0 +1,24 @@
+package com.rits.cloning;
+
+import java.util.Collection;
+
+/**
+ * a deep cloner which can tell whether it returns elements as they are, i.e. nulls, strings, numbers and other
+ * immutables. Fast cloners copy such collections in bulk instead of deep cloning them element by element.
+ *
+ * @author kostas.kougios
+ */
+interface ISharingDeepCloner extends IDeepCloner {
+	/**
+	 * @return true if deepClone returns every element of c as it is. The check stops at the first element which is
+	 * cloned, so it is cheap for collections of mutable elements.
+	 */
+	boolean allShared(Collection<?> c);
+
+	/**
+	 * @return true if cloner is a sharing cloner and returns every element of c as it is
+	 */
+	static boolean allShared(IDeepCloner cloner, Collection<?> c) {
+		return cloner instanceof ISharingDeepCloner && ((ISharingDeepCloner) cloner).allShared(c);
+	}
+}
@@ -0,0 +1,258 @@
+package com.rits.cloning;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * identity map keeping track of the clones. Keys and values are stored next to each other in a single array, small
+ * maps are scanned linearly and bigger ones use open addressing with linear probing on
+ * {@link System#identityHashCode}.
+ * <p>
+ * Null keys are not supported.
+ *
+ * @author kostas.kougios
+ */
+class IdentityMap extends AbstractMap<Object, Object> {
+	// maps with up to SMALL entries are not hashed
+	static final int SMALL = 16;
+	private static final Object[] EMPTY = {};
+
+	// key at i, value at i + 1
+	private Object[] table = EMPTY;
+	private int size;
+	private boolean hashed;
+	private int threshold;
+
+	IdentityMap() {
+	}
+
+	/**
+	 * @param expectedSize the expected number of entries, so that big maps don't have to resize repeatedly
+	 */
+	IdentityMap(int expectedSize) {
+		ensureCapacity(expectedSize);
+	}
+
+	/**
+	 * grows the map so that it can hold expectedSize entries without resizing
+	 */
+	void ensureCapacity(int expectedSize) {
+		if (expectedSize > SMALL && (!hashed || expectedSize > threshold)) {
+			resize(capacityFor(expectedSize));
+		}
+	}
+
+	/**
+	 * @return the number of entries the map can hold without growing its table
+	 */
+	int capacity() {
+		return table.length >> 1;
+	}
+
+	/**
+	 * @return the power of two capacity keeping n entries at most 2/3 full
+	 */
+	private static int capacityFor(int n) {
+		int capacity = Integer.highestOneBit(Math.max(n + (n >> 1), SMALL * 2) - 1) << 1;
+		return capacity > 0 && capacity <= 1 << 29 ? capacity : 1 << 29;
+	}
+
+	private static int slot(Object key, int length) {
+		int h = System.identityHashCode(key);
+		// like IdentityHashMap, multiply by -127 and shift left to use the least bit as part of the hash
+		return ((h << 1) - (h << 8)) & (length - 1);
+	}
+
+	/**
+	 * @return the index of key in the table or -1
+	 */
+	private int indexOf(Object key) {
+		final Object[] tab = table;
+		if (!hashed) {
+			for (int i = 0, n = size << 1; i < n; i += 2) {
+				if (tab[i] == key) return i;
+			}
+			return -1;
+		}
+		final int length = tab.length;
+		int i = slot(key, length);
+		while (true) {
+			final Object k = tab[i];
+			if (k == key) return i;
+			if (k == null) return -1;
+			i = (i + 2) & (length - 1);
+		}
+	}
+
+	@Override
+	public Object get(Object key) {
+		final int i = indexOf(key);
+		return i < 0 ? null : table[i + 1];
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key != null && indexOf(key) >= 0;
+	}
+
+	@Override
+	public Object put(Object key, Object value) {
+		if (key == null) throw new NullPointerException("null keys are not supported");
+		Object[] tab = table;
+		if (!hashed) {
+			final int n = size << 1;
+			for (int i = 0; i < n; i += 2) {
+				if (tab[i] == key) {
+					final Object old = tab[i + 1];
+					tab[i + 1] = value;
+					return old;
+				}
+			}
+			if (size < SMALL) {
+				if (n == tab.length) {
+					table = tab = Arrays.copyOf(tab, n == 0 ? 8 : n * 2);
+				}
+				tab[n] = key;
+				tab[n + 1] = value;
+				size++;
+				return null;
+			}
+			resize(capacityFor(size + 1));
+			tab = table;
+		}
+		final int length = tab.length;
+		int i = slot(key, length);
+		Object k;
+		while ((k = tab[i]) != null) {
+			if (k == key) {
+				final Object old = tab[i + 1];
+				tab[i + 1] = value;
+				return old;
+			}
+			i = (i + 2) & (length - 1);
+		}
+		tab[i] = key;
+		tab[i + 1] = value;
+		if (++size > threshold) {
+			resize(length);
+		}
+		return null;
+	}
+
+	private void resize(int capacity) {
+		final Object[] old = table;
+		final boolean wasHashed = hashed;
+		final Object[] tab = new Object[capacity * 2];
+		final int length = tab.length;
+		for (int j = 0, n = wasHashed ? old.length : size << 1; j < n; j += 2) {
+			final Object key = old[j];
+			if (key != null) {
+				int i = slot(key, length);
+				while (tab[i] != null) {
+					i = (i + 2) & (length - 1);
+				}
+				tab[i] = key;
+				tab[i + 1] = old[j + 1];
+			}
+		}
+		table = tab;
+		hashed = true;
+		threshold = capacity / 3 * 2;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		final int index = key == null ? -1 : indexOf(key);
+		if (index < 0) return null;
+		final Object[] tab = table;
+		final Object old = tab[index + 1];
+		size--;
+		if (!hashed) {
+			System.arraycopy(tab, index + 2, tab, index, (size << 1) - index);
+			tab[size << 1] = tab[(size << 1) + 1] = null;
+			return old;
+		}
+		// shift back the following entries of the probe sequence which can't be found anymore otherwise
+		final int length = tab.length;
+		int hole = index;
+		int i = (index + 2) & (length - 1);
+		Object k;
+		while ((k = tab[i]) != null) {
+			final int s = slot(k, length);
+			final boolean reachable = hole < i ? hole < s && s <= i : hole < s || s <= i;
+			if (!reachable) {
+				tab[hole] = k;
+				tab[hole + 1] = tab[i + 1];
+				hole = i;
+			}
+			i = (i + 2) & (length - 1);
+		}
+		tab[hole] = tab[hole + 1] = null;
+		return old;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * removes all entries but keeps the capacity, so that the map can be reused
+	 */
+	@Override
+	public void clear() {
+		Arrays.fill(table, null);
+		size = 0;
+	}
+
+	@Override
+	public Set<Entry<Object, Object>> entrySet() {
+		return new AbstractSet<Entry<Object, Object>>() {
+			@Override
+			public Iterator<Entry<Object, Object>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private class EntryIterator implements Iterator<Entry<Object, Object>> {
+		private int next = advance(0);
+
+		private int advance(int i) {
+			final Object[] tab = table;
+			while (i < tab.length && tab[i] == null) {
+				i += 2;
+			}
+			return i;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < table.length;
+		}
+
+		@Override
+		public Entry<Object, Object> next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			final int index = next;
+			next = advance(next + 2);
+			final Object key = table[index];
+			return new SimpleEntry<Object, Object>(key, table[index + 1]) {
+				@Override
+				public Object setValue(Object value) {
+					table[index + 1] = value;
+					return super.setValue(value);
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package com.rits.cloning;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * the copy-on-write views returned by {@link Cloner#lazyClone}. Until the first mutation a view reads the original
+ * collection and clones only the elements handed out. The first mutation deep clones the whole collection, from then on
+ * the view delegates to that clone. Both use the same clones map, so an element handed out before the mutation is the
+ * one found in the collection afterwards.
+ *
+ * @author kostas.kougios
+ */
+final class LazyClones {
+	private LazyClones() {
+	}
+
+	/**
+	 * the original, or its deep clone once materialized, plus the clones handed out so far
+	 */
+	private static class Lazy<C> {
+		private C original;
+		private C clone;
+		private final UnaryOperator<Object> cloner;
+		// clone of an element -> the element, so that lookups with handed out clones find the original elements
+		private IdentityMap originals = new IdentityMap();
+
+		Lazy(C original, UnaryOperator<Object> cloner) {
+			this.original = original;
+			this.cloner = cloner;
+		}
+
+		/**
+		 * @return the original before the first mutation, null afterwards
+		 */
+		C original() {
+			return original;
+		}
+
+		C current() {
+			return clone != null ? clone : original;
+		}
+
+		/**
+		 * also called by iterators of the original after a mutation through them materialized it. The materialized
+		 * collection was cloned with the same clones map, so the clone is the element found in it
+		 */
+		Object cloneOf(Object e) {
+			final Object c = cloner.apply(e);
+			if (c != null && c != e && originals != null) originals.put(c, e);
+			return c;
+		}
+
+		Object originalOf(Object c) {
+			if (c == null) return null;
+			final Object o = originals.get(c);
+			return o != null ? o : c;
+		}
+
+		@SuppressWarnings("unchecked")
+		C materialize() {
+			if (clone == null) {
+				clone = (C) cloner.apply(original);
+				original = null;
+				originals = null;
+			}
+			return clone;
+		}
+	}
+
+	static class LazyList<E> extends AbstractList<E> {
+		private final Lazy<List<E>> lazy;
+
+		LazyList(List<E> original, UnaryOperator<Object> cloner) {
+			lazy = new Lazy<>(original, cloner);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E get(int index) {
+			final List<E> original = lazy.original();
+			return original != null ? (E) lazy.cloneOf(original.get(index)) : lazy.materialize().get(index);
+		}
+
+		@Override
+		public int size() {
+			return lazy.current().size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			final List<E> original = lazy.original();
+			return original != null ? original.indexOf(lazy.originalOf(o)) : lazy.materialize().indexOf(o);
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			final List<E> original = lazy.original();
+			return original != null ? original.lastIndexOf(lazy.originalOf(o)) : lazy.materialize().lastIndexOf(o);
+		}
+
+		@Override
+		public E set(int index, E element) {
+			return lazy.materialize().set(index, element);
+		}
+
+		@Override
+		public void add(int index, E element) {
+			lazy.materialize().add(index, element);
+		}
+
+		@Override
+		public E remove(int index) {
+			return lazy.materialize().remove(index);
+		}
+
+		@Override
+		public void clear() {
+			lazy.materialize().clear();
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			final List<E> original = lazy.original();
+			if (original == null) return lazy.materialize().iterator();
+			final Iterator<E> it = original.iterator();
+			return new Iterator<E>() {
+				private int next;
+
+				@Override
+				public boolean hasNext() {
+					return next < size();
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public E next() {
+					// after a removal the original is materialized and the original iterator is stale
+					final E e = lazy.original() != null ? (E) lazy.cloneOf(it.next()) : lazy.materialize().get(next);
+					next++;
+					return e;
+				}
+
+				@Override
+				public void remove() {
+					if (next == 0) throw new IllegalStateException();
+					lazy.materialize().remove(--next);
+				}
+			};
+		}
+	}
+
+	static class LazySet<E> extends AbstractSet<E> {
+		private final Lazy<Set<E>> lazy;
+
+		LazySet(Set<E> original, UnaryOperator<Object> cloner) {
+			lazy = new Lazy<>(original, cloner);
+		}
+
+		@Override
+		public int size() {
+			return lazy.current().size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			final Set<E> original = lazy.original();
+			return original != null ? original.contains(lazy.originalOf(o)) : lazy.materialize().contains(o);
+		}
+
+		@Override
+		public boolean add(E e) {
+			return lazy.materialize().add(e);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return lazy.materialize().remove(o);
+		}
+
+		@Override
+		public void clear() {
+			lazy.materialize().clear();
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			final Set<E> original = lazy.original();
+			if (original == null) return lazy.materialize().iterator();
+			final Iterator<E> it = original.iterator();
+			return new Iterator<E>() {
+				private E last;
+				private boolean removable;
+
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public E next() {
+					last = (E) lazy.cloneOf(it.next());
+					removable = true;
+					return last;
+				}
+
+				@Override
+				public void remove() {
+					if (!removable) throw new IllegalStateException();
+					removable = false;
+					// the materialized set contains the clone handed out, the original keeps being iterated
+					lazy.materialize().remove(last);
+				}
+			};
+		}
+	}
+
+	static class LazyMap<K, V> extends AbstractMap<K, V> {
+		private final Lazy<Map<K, V>> lazy;
+
+		LazyMap(Map<K, V> original, UnaryOperator<Object> cloner) {
+			lazy = new Lazy<>(original, cloner);
+		}
+
+		@Override
+		public int size() {
+			return lazy.current().size();
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			final Map<K, V> original = lazy.original();
+			return original != null ? original.containsKey(lazy.originalOf(key)) : lazy.materialize().containsKey(key);
+		}
+
+		@Override
+		public boolean containsValue(Object value) {
+			final Map<K, V> original = lazy.original();
+			return original != null ? original.containsValue(lazy.originalOf(value)) : lazy.materialize().containsValue(value);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V get(Object key) {
+			final Map<K, V> original = lazy.original();
+			return original != null ? (V) lazy.cloneOf(original.get(lazy.originalOf(key))) : lazy.materialize().get(key);
+		}
+
+		@Override
+		public V put(K key, V value) {
+			return lazy.materialize().put(key, value);
+		}
+
+		@Override
+		public V remove(Object key) {
+			return lazy.materialize().remove(key);
+		}
+
+		@Override
+		public void putAll(Map<? extends K, ? extends V> m) {
+			lazy.materialize().putAll(m);
+		}
+
+		@Override
+		public void clear() {
+			lazy.materialize().clear();
+		}
+
+		@Override
+		public Set<Entry<K, V>> entrySet() {
+			return new AbstractSet<Entry<K, V>>() {
+				@Override
+				public int size() {
+					return LazyMap.this.size();
+				}
+
+				@Override
+				public Iterator<Entry<K, V>> iterator() {
+					final Map<K, V> original = lazy.original();
+					if (original == null) return lazy.materialize().entrySet().iterator();
+					final Iterator<Entry<K, V>> it = original.entrySet().iterator();
+					return new Iterator<Entry<K, V>>() {
+						private K last;
+						private boolean removable;
+
+						@Override
+						public boolean hasNext() {
+							return it.hasNext();
+						}
+
+						@Override
+						@SuppressWarnings("unchecked")
+						public Entry<K, V> next() {
+							final Entry<K, V> e = it.next();
+							final K key = (K) lazy.cloneOf(e.getKey());
+							last = key;
+							removable = true;
+							return new SimpleEntry<K, V>(key, (V) lazy.cloneOf(e.getValue())) {
+								@Override
+								public V setValue(V value) {
+									lazy.materialize().put(key, value);
+									return super.setValue(value);
+								}
+							};
+						}
+
+						@Override
+						public void remove() {
+							if (!removable) throw new IllegalStateException();
+							removable = false;
+							lazy.materialize().remove(last);
+						}
+					};
+				}
+			};
+		}
+	}
+}
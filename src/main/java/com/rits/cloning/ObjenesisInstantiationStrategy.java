@@ -11,15 +11,24 @@ import org.objenesis.instantiator.ObjectInstantiator;
  */
 public class ObjenesisInstantiationStrategy implements IInstantiationStrategy
 {
-	private final Objenesis	objenesis	= new ObjenesisStd();
+	private final Objenesis	objenesis	= new ObjenesisStd(false);
+	// objenesis' own cache is keyed by class name, which mixes up same named classes of different classloaders
+	// and keeps them alive
+	private final ClassValue<ObjectInstantiator<?>> instantiators = new ClassValue<ObjectInstantiator<?>>() {
+		@Override
+		protected ObjectInstantiator<?> computeValue(Class<?> type) {
+			return objenesis.getInstantiatorOf(type);
+		}
+	};
 
 	public <T> T newInstance(Class<T> c)
 	{
-		return objenesis.newInstance(c);
+		return getInstantiatorOf(c).newInstance();
 	}
 
+	@SuppressWarnings("unchecked")
 	public <T>ObjectInstantiator<T> getInstantiatorOf(Class<T> c) {
-		return objenesis.getInstantiatorOf(c);
+		return (ObjectInstantiator<T>) instantiators.get(c);
 	}
 
 	private static ObjenesisInstantiationStrategy	instance	= new ObjenesisInstantiationStrategy();
@@ -0,0 +1,208 @@
+package com.rits.cloning;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * the state shared by the fork/join tasks of one {@link Cloner#deepCloneParallel}. Besides the registry of the clones it
+ * records which task fills which clone, so that every clone is filled by exactly one task and a task which needs a
+ * clone complete, i.e. to hash it, waits for the task filling it.
+ * <p>
+ * A wait must not close a cycle, i.e. two tasks each filling a clone which references the clone the other one is
+ * filling. So the tasks keep a graph of what they wait for, guarded by {@link #graph}: the task filling a claimed
+ * clone, a forked task being joined or a task running on top of them on the same thread. A wait which would close
+ * a cycle aborts the parallel clone instead, as one of the tasks would have to use a half-filled clone which
+ * another thread keeps filling, and the graph is cloned on one thread.
+ *
+ * @author kostas.kougios
+ */
+final class ParallelClone {
+	final Cloner cloner;
+	final ConcurrentIdentityMap registry;
+	// the persistent or compact clones, null if there are none
+	final ConcurrentIdentityMap substitutes;
+	// clone -> the context which claimed it. Unused for trees, whose clones only the allocating task sees
+	final ConcurrentIdentityMap claims;
+	final boolean tree;
+	private final Object graph = new Object();
+	// the innermost context running on the current thread, the ones below it can't continue until it's done
+	private final ThreadLocal<ParallelContext> running = new ThreadLocal<>();
+	// the number of tasks waiting for a claim
+	private final AtomicInteger waiters = new AtomicInteger();
+	// set once a wait would close a cycle, the tasks stop and the graph is cloned on one thread
+	volatile boolean aborted;
+
+	ParallelClone(Cloner cloner, int parallelism, boolean tree, boolean substitutes) {
+		this.cloner = cloner;
+		this.registry = new ConcurrentIdentityMap(parallelism);
+		this.substitutes = substitutes ? new ConcurrentIdentityMap(parallelism) : null;
+		this.claims = tree ? null : new ConcurrentIdentityMap(parallelism);
+		this.tree = tree;
+	}
+
+	/**
+	 * runs task as the task of context on the current thread
+	 */
+	<T> T run(ParallelContext context, Supplier<T> task) {
+		synchronized (graph) {
+			final ParallelContext below = running.get();
+			context.below = below;
+			if (below != null) below.above = context;
+			running.set(context);
+		}
+		try {
+			return task.get();
+		} finally {
+			synchronized (graph) {
+				final ParallelContext below = context.below;
+				context.below = null;
+				context.done = true;
+				graph.notifyAll();
+				if (below != null) {
+					below.above = null;
+					running.set(below);
+				} else {
+					running.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return what x waits for, null if it is running
+	 */
+	private static ParallelContext next(ParallelContext x) {
+		if (x.above != null) return x.above;
+		// the clone got filled, x just didn't wake up yet
+		if (x.awaited != null && !x.waitingFor.isFilling(x.awaited)) return null;
+		return x.waitingFor;
+	}
+
+	/**
+	 * @return true if "from" waiting for "to" would close a cycle
+	 */
+	private static boolean closesCycle(ParallelContext from, ParallelContext to) {
+		for (ParallelContext x = to; x != null; x = next(x)) {
+			if (x == from) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * stops all tasks, called with the graph locked
+	 */
+	private Aborted abort() {
+		aborted = true;
+		graph.notifyAll();
+		return new Aborted();
+	}
+
+	void checkAborted() {
+		if (aborted) throw new Aborted();
+	}
+
+	/**
+	 * wakes the tasks waiting for a clone the caller stopped filling
+	 */
+	void filled() {
+		if (waiters.get() > 0) {
+			synchronized (graph) {
+				graph.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * waits until owner filled clone
+	 */
+	void await(final ParallelContext waiter, final Object clone, final ParallelContext owner) {
+		synchronized (graph) {
+			if (!owner.isFilling(clone)) return;
+			if (closesCycle(waiter, owner)) throw abort();
+			waiter.waitingFor = owner;
+			waiter.awaited = clone;
+		}
+		waiters.incrementAndGet();
+		try {
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+				@Override
+				public boolean block() throws InterruptedException {
+					synchronized (graph) {
+						while (!isReleasable()) graph.wait();
+					}
+					return true;
+				}
+
+				@Override
+				public boolean isReleasable() {
+					return aborted || !owner.isFilling(clone);
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CloningException(e);
+		} finally {
+			waiters.decrementAndGet();
+			synchronized (graph) {
+				waiter.waitingFor = null;
+				waiter.awaited = null;
+			}
+		}
+		checkAborted();
+	}
+
+	/**
+	 * waits until the forked task of child is done, running it on this thread if no other thread took it yet. Unlike
+	 * ForkJoinTask.join this never runs other tasks meanwhile, as they could wait for clones this task is filling.
+	 */
+	void join(ParallelContext parent, final ParallelContext child) {
+		final ForkJoinTask<?> task = child.task;
+		if (task.tryUnfork()) {
+			task.invoke();
+			return;
+		}
+		synchronized (graph) {
+			if (closesCycle(parent, child)) throw abort();
+			parent.waitingFor = child;
+		}
+		try {
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+				@Override
+				public boolean block() throws InterruptedException {
+					synchronized (graph) {
+						while (!isReleasable()) graph.wait();
+					}
+					return true;
+				}
+
+				@Override
+				public boolean isReleasable() {
+					return aborted || child.done;
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CloningException(e);
+		} finally {
+			synchronized (graph) {
+				parent.waitingFor = null;
+			}
+		}
+		checkAborted();
+		// rethrows the exception of the task, if any
+		task.join();
+	}
+
+	/**
+	 * thrown by the tasks of an aborted ParallelClone
+	 */
+	static final class Aborted extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Aborted() {
+			super(null, null, false, false);
+		}
+	}
+}
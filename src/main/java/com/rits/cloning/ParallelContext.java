@@ -0,0 +1,233 @@
+package com.rits.cloning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * the context of one fork/join task of {@link Cloner#deepCloneParallel}. Clones are registered in a registry shared by all
+ * tasks, the pending ones are filled by this task unless they are split off to a new task while other workers are
+ * idle, or another task claims them first to complete them.
+ *
+ * @author kostas.kougios
+ */
+class ParallelContext extends CloneContext {
+	// arrays are cloned in parallel in chunks of this many elements
+	static final int PARALLEL_ARRAY_CHUNK = 1024;
+	// the minimum number of pending clones worth splitting off to another thread
+	private static final int PARALLEL_SPLIT = 256;
+
+	private final ParallelClone shared;
+	// the last key whose registration lost against another task, and the clone that task registered
+	private Object lostKey;
+	private Object winner;
+	// the task running this context when it was forked
+	ForkJoinTask<?> task;
+	// the graph of what the tasks wait for, guarded by ParallelClone.graph
+	ParallelContext above;
+	ParallelContext below;
+	ParallelContext waitingFor;
+	// the clone this waits for, null if this doesn't wait for a claim
+	Object awaited;
+	// true once the task of this context finished
+	volatile boolean done;
+	// the claimed clones this task is filling, innermost last. Other tasks read them to know when a claim is filled,
+	// so that a filled claim needs no further write to the claims
+	private Object[] filling = new Object[8];
+	private volatile int fillingSize;
+
+	ParallelContext(ParallelClone shared) {
+		super(shared.cloner);
+		this.shared = shared;
+		reset(shared.tree, true, 0);
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (!tree) {
+			Object o = shared.registry.get(key);
+			if (o != null) return o;
+		}
+		return cloner.constantOrFrozen(key);
+	}
+
+	@Override
+	public Object put(Object key, Object value) {
+		if (tree) {
+			if (verify && shared.registry.putIfAbsent(key, key) != null) {
+				throw new CloningException("Not a tree, " + key.getClass().getName() + " instance is referenced more than once");
+			}
+			return null;
+		}
+		Object existing = shared.registry.putIfAbsent(key, value);
+		if (existing != null) {
+			lostKey = key;
+			winner = existing;
+		}
+		return existing;
+	}
+
+	@Override
+	Object registered(Object o, Object clone) {
+		if (lostKey != o) return clone;
+		Object w = winner;
+		lostKey = winner = null;
+		return w;
+	}
+
+	@Override
+	Object substituteOf(Object o) {
+		return tree || shared.substitutes == null ? null : shared.substitutes.get(o);
+	}
+
+	@Override
+	Object substituted(Object o, Object clone) {
+		if (tree || shared.substitutes == null) return clone;
+		final Object existing = shared.substitutes.putIfAbsent(o, clone);
+		return existing != null ? existing : clone;
+	}
+
+	@Override
+	void drain(int mark) {
+		List<ParallelContext> forked = null;
+		try {
+			int filled = 0;
+			while (pendingSize > mark) {
+				if ((++filled & 63) == 0) {
+					shared.checkAborted();
+					if (pendingSize - mark >= PARALLEL_SPLIT * 3 && ForkJoinTask.getSurplusQueuedTaskCount() <= 2) {
+						if (forked == null) forked = new ArrayList<>();
+						forked.add(split(mark));
+					}
+				}
+				Object clone = pending[--pendingSize];
+				Object o = pending[--pendingSize];
+				IDeferredCloner deferred = (IDeferredCloner) pending[--pendingSize];
+				pending[pendingSize] = pending[pendingSize + 1] = pending[pendingSize + 2] = null;
+				if (pendingSize < indexed) indexed = pendingSize;
+				if (deferred != null) fillOnce(deferred, o, clone);
+			}
+		} catch (IllegalAccessException e) {
+			throw new CloningException(e);
+		}
+		if (pendingSize == 0) pendingIndex = null;
+		// the caller expects everything above mark to be complete
+		if (forked != null) {
+			// the newest first, so that the ones no other thread took can be unforked
+			for (int i = forked.size() - 1; i >= 0; i--) {
+				shared.join(this, forked.get(i));
+			}
+		}
+	}
+
+	/**
+	 * moves the oldest half of the clones pending above mark, which are the closest to the root and likely the
+	 * biggest subgraphs, to a new task
+	 *
+	 * @return the context of the forked task
+	 */
+	private ParallelContext split(int mark) {
+		final int n = (pendingSize - mark) / 6 * 3;
+		final ParallelContext context = new ParallelContext(shared);
+		context.pending = Arrays.copyOfRange(pending, mark, mark + n);
+		context.pendingSize = n;
+		System.arraycopy(pending, mark + n, pending, mark, pendingSize - mark - n);
+		Arrays.fill(pending, pendingSize - n, pendingSize, null);
+		pendingSize -= n;
+		pendingIndex = null;
+		context.task = ForkJoinTask.adapt(() -> shared.run(context, () -> {
+			context.drain(0);
+			return null;
+		})).fork();
+		return context;
+	}
+
+	@Override
+	void fill(IDeferredCloner deferred, Object o, Object clone) {
+		final int mark = pendingSize;
+		try {
+			fillOnce(deferred, o, clone);
+		} catch (IllegalAccessException e) {
+			throw new CloningException(e);
+		}
+		drain(mark);
+	}
+
+	/**
+	 * fills clone unless another task claimed it first, in which case this waits until that task filled it
+	 */
+	private void fillOnce(IDeferredCloner deferred, Object o, Object clone) throws IllegalAccessException {
+		if (tree) {
+			deferred.fill(o, clone, this);
+			return;
+		}
+		// pushed before claiming, so that a task seeing the claim sees this filling it
+		final int depth = fillingSize;
+		if (depth == filling.length) filling = Arrays.copyOf(filling, depth * 2);
+		filling[depth] = clone;
+		fillingSize = depth + 1;
+		final Object owner = shared.claims.putIfAbsent(clone, this);
+		if (owner == null) {
+			try {
+				deferred.fill(o, clone, this);
+			} finally {
+				fillingSize = depth;
+				filling[depth] = null;
+				shared.filled();
+			}
+		} else {
+			fillingSize = depth;
+			filling[depth] = null;
+			// claimed by this task further down the stack, it's used as is like a clone filled by a caller
+			if (owner != this) shared.await(this, clone, (ParallelContext) owner);
+		}
+	}
+
+	/**
+	 * @return true if this task is filling clone, may be called by any task
+	 */
+	boolean isFilling(Object clone) {
+		final int n = fillingSize;
+		final Object[] f = filling;
+		for (int i = n - 1; i >= 0; i--) {
+			if (f[i] == clone) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * the clone may be pending in another task, then this task claims and fills it, or being filled by another task,
+	 * then this task waits for it
+	 */
+	@Override
+	void completeFilled(IDeferredCloner deferred, Object o, Object clone) {
+		fill(deferred, o, clone);
+	}
+
+	/**
+	 * fills the elements of a big array in chunks, each one by its own task
+	 */
+	void fillInChunks(Cloner.CloneArrayCloner cloner, Object[] src, Object[] dst) {
+		final List<ParallelContext> chunks = new ArrayList<>();
+		for (int from = 0; from < src.length; from += PARALLEL_ARRAY_CHUNK) {
+			final int start = from;
+			final int end = Math.min(src.length, from + PARALLEL_ARRAY_CHUNK);
+			final ParallelContext context = new ParallelContext(shared);
+			context.task = ForkJoinTask.adapt(() -> shared.run(context, () -> {
+				cloner.fillRange(src, dst, start, end, context);
+				context.drain(0);
+				return null;
+			}));
+			chunks.add(context);
+		}
+		// like ForkJoinTask.invokeAll, the first chunk is filled by this thread
+		for (int i = 1; i < chunks.size(); i++) {
+			chunks.get(i).task.fork();
+		}
+		chunks.get(0).task.invoke();
+		for (int i = chunks.size() - 1; i > 0; i--) {
+			shared.join(this, chunks.get(i));
+		}
+	}
+}
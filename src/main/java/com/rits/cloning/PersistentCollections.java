@@ -0,0 +1,784 @@
+package com.rits.cloning;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * the persistent collections produced by {@link Cloner#setPersistentCollections persistent collection cloning} and
+ * their fast cloners. The collections are immutable and implement the JDK interfaces. A modified version of a persistent
+ * collection shares all unmodified nodes with it, so cloning a big collection again after a few changes only allocates
+ * the changed paths.
+ * <p>
+ * The fast cloners remember the last clone of every big collection, the next clone of the same collection is derived
+ * from it. Elements which are not cloned (i.e. strings, numbers and other immutables) are shared, mutable elements are
+ * cloned again and so they are new in every clone. When too many elements changed since the last clone, the clone is
+ * built from scratch instead.
+ *
+ * @author kostas.kougios
+ */
+final class PersistentCollections {
+	// smaller collections are not remembered, they are cheap to build from scratch
+	static final int MIN_REMEMBERED_SIZE = 64;
+
+	private PersistentCollections() {
+	}
+
+	/**
+	 * @return the max number of changed elements for which a clone is derived from the previous one
+	 */
+	private static int maxChanges(int size) {
+		return Math.max(32, size >> 2);
+	}
+
+	/**
+	 * hash array mapped trie. Each node holds key/value pairs in one array, in the order of the bits of its bitmap. A
+	 * {@link Node} in a key slot is a sub-node for the next 5 bits of the hash. Keys with equal hashes end up in a
+	 * collision node.
+	 */
+	static final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+		private static final Object NOT_FOUND = new Object();
+		private static final PersistentHashMap<Object, Object> EMPTY = new PersistentHashMap<>(null, 0);
+
+		private final Node root;
+		private final int size;
+
+		private PersistentHashMap(Node root, int size) {
+			this.root = root;
+			this.size = size;
+		}
+
+		@SuppressWarnings("unchecked")
+		static <K, V> PersistentHashMap<K, V> empty() {
+			return (PersistentHashMap<K, V>) EMPTY;
+		}
+
+		/**
+		 * builds a map from distinct keys and their values without intermediate versions
+		 */
+		static <K, V> PersistentHashMap<K, V> of(Object[] keys, Object[] values, int n) {
+			if (n == 0) return empty();
+			if (n > INDEX_MASK) throw new IllegalArgumentException("too many entries: " + n);
+			final int[] hashes = new int[n];
+			final long[] order = new long[n];
+			for (int i = 0; i < n; i++) {
+				hashes[i] = hash(keys[i]);
+				order[i] = trieOrder(hashes[i]) << 28 | i;
+			}
+			// sorted in trie order, the entries of every node are consecutive
+			Arrays.sort(order);
+			return new PersistentHashMap<>(build(order, keys, values, hashes, 0, n, 0), n);
+		}
+
+		/**
+		 * @return the hash with its 5 bit chunks reversed, so that entries sort like the trie orders them
+		 */
+		private static long trieOrder(int hash) {
+			long o = 0;
+			for (int shift = 0; shift <= 30; shift += 5) {
+				o = o << 5 | (hash >>> shift) & 31;
+			}
+			return o;
+		}
+
+		private static final int INDEX_MASK = (1 << 28) - 1;
+
+		private static int index(long order) {
+			return (int) (order & INDEX_MASK);
+		}
+
+		private static Node build(long[] order, Object[] keys, Object[] values, int[] hashes, int from, int to, int shift) {
+			if (shift > 30) {
+				// the whole hash is equal
+				final Object[] array = new Object[(to - from) * 2];
+				for (int i = from; i < to; i++) {
+					array[(i - from) * 2] = keys[index(order[i])];
+					array[(i - from) * 2 + 1] = values[index(order[i])];
+				}
+				return new CollisionNode(hashes[index(order[from])], array);
+			}
+			int bitmap = 0;
+			for (int i = from; i < to; i++) {
+				bitmap |= 1 << (hashes[index(order[i])] >>> shift & 31);
+			}
+			final Object[] array = new Object[Integer.bitCount(bitmap) * 2];
+			int slot = 0;
+			for (int i = from; i < to; ) {
+				final int chunk = hashes[index(order[i])] >>> shift & 31;
+				int j = i + 1;
+				while (j < to && (hashes[index(order[j])] >>> shift & 31) == chunk) j++;
+				if (j - i == 1) {
+					array[slot] = keys[index(order[i])];
+					array[slot + 1] = values[index(order[i])];
+				} else {
+					array[slot] = build(order, keys, values, hashes, i, j, shift + 5);
+				}
+				slot += 2;
+				i = j;
+			}
+			return new BitmapNode(bitmap, array);
+		}
+
+		private static int hash(Object key) {
+			final int h = key == null ? 0 : key.hashCode();
+			return h ^ h >>> 16;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V get(Object key) {
+			if (root == null) return null;
+			final Object v = root.find(0, hash(key), key);
+			return v == NOT_FOUND ? null : (V) v;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return root != null && root.find(0, hash(key), key) != NOT_FOUND;
+		}
+
+		/**
+		 * @return a map with key mapped to value, this if the same key instance already was
+		 */
+		PersistentHashMap<K, V> plus(K key, V value) {
+			final boolean[] added = new boolean[1];
+			final Node r = (root == null ? BitmapNode.EMPTY : root).assoc(0, hash(key), key, value, added);
+			return r == root ? this : new PersistentHashMap<>(r, added[0] ? size + 1 : size);
+		}
+
+		/**
+		 * @return a map without key, this if it didn't contain it
+		 */
+		PersistentHashMap<K, V> minus(Object key) {
+			if (root == null) return this;
+			final Node r = root.without(0, hash(key), key);
+			return r == root ? this : new PersistentHashMap<>(r, size - 1);
+		}
+
+		@Override
+		public Set<Entry<K, V>> entrySet() {
+			return new AbstractSet<Entry<K, V>>() {
+				@Override
+				public int size() {
+					return size;
+				}
+
+				@Override
+				public Iterator<Entry<K, V>> iterator() {
+					return new NodeIterator<Entry<K, V>>(root) {
+						@Override
+						@SuppressWarnings("unchecked")
+						Entry<K, V> entry(Object key, Object value) {
+							return new SimpleImmutableEntry<>((K) key, (V) value);
+						}
+					};
+				}
+			};
+		}
+
+		@Override
+		public Set<K> keySet() {
+			return new AbstractSet<K>() {
+				@Override
+				public int size() {
+					return size;
+				}
+
+				@Override
+				public boolean contains(Object o) {
+					return containsKey(o);
+				}
+
+				@Override
+				public Iterator<K> iterator() {
+					return keys();
+				}
+			};
+		}
+
+		Iterator<K> keys() {
+			return new NodeIterator<K>(root) {
+				@Override
+				@SuppressWarnings("unchecked")
+				K entry(Object key, Object value) {
+					return (K) key;
+				}
+			};
+		}
+
+		private abstract static class Node {
+			// key/value pairs
+			final Object[] array;
+
+			Node(Object[] array) {
+				this.array = array;
+			}
+
+			abstract Object find(int shift, int hash, Object key);
+
+			abstract Node assoc(int shift, int hash, Object key, Object value, boolean[] added);
+
+			/**
+			 * @return the node without key, null if it became empty
+			 */
+			abstract Node without(int shift, int hash, Object key);
+		}
+
+		private static final class BitmapNode extends Node {
+			static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+			final int bitmap;
+
+			BitmapNode(int bitmap, Object[] array) {
+				super(array);
+				this.bitmap = bitmap;
+			}
+
+			@Override
+			Object find(int shift, int hash, Object key) {
+				final int bit = 1 << (hash >>> shift & 31);
+				if ((bitmap & bit) == 0) return NOT_FOUND;
+				final int i = Integer.bitCount(bitmap & bit - 1) * 2;
+				final Object k = array[i];
+				if (k instanceof Node) return ((Node) k).find(shift + 5, hash, key);
+				return Objects.equals(key, k) ? array[i + 1] : NOT_FOUND;
+			}
+
+			@Override
+			Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+				final int bit = 1 << (hash >>> shift & 31);
+				final int i = Integer.bitCount(bitmap & bit - 1) * 2;
+				if ((bitmap & bit) == 0) {
+					added[0] = true;
+					final Object[] a = new Object[array.length + 2];
+					System.arraycopy(array, 0, a, 0, i);
+					a[i] = key;
+					a[i + 1] = value;
+					System.arraycopy(array, i, a, i + 2, array.length - i);
+					return new BitmapNode(bitmap | bit, a);
+				}
+				final Object k = array[i];
+				final Object v = array[i + 1];
+				if (k instanceof Node) {
+					final Node n = ((Node) k).assoc(shift + 5, hash, key, value, added);
+					return n == k ? this : new BitmapNode(bitmap, set(array, i, n, null));
+				}
+				if (Objects.equals(key, k)) {
+					// an equal key replaces the old one, which may be the mutable key of an older clone
+					return k == key && v == value ? this : new BitmapNode(bitmap, set(array, i, key, value));
+				}
+				added[0] = true;
+				return new BitmapNode(bitmap, set(array, i, pair(shift + 5, k, v, hash, key, value), null));
+			}
+
+			@Override
+			Node without(int shift, int hash, Object key) {
+				final int bit = 1 << (hash >>> shift & 31);
+				if ((bitmap & bit) == 0) return this;
+				final int i = Integer.bitCount(bitmap & bit - 1) * 2;
+				final Object k = array[i];
+				if (k instanceof Node) {
+					final Node n = ((Node) k).without(shift + 5, hash, key);
+					if (n == k) return this;
+					if (n != null) return new BitmapNode(bitmap, set(array, i, n, null));
+				} else if (!Objects.equals(key, k)) {
+					return this;
+				}
+				if (bitmap == bit) return null;
+				final Object[] a = new Object[array.length - 2];
+				System.arraycopy(array, 0, a, 0, i);
+				System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+				return new BitmapNode(bitmap ^ bit, a);
+			}
+
+			private static Node pair(int shift, Object k1, Object v1, int h2, Object k2, Object v2) {
+				final int h1 = hash(k1);
+				if (h1 == h2) return new CollisionNode(h1, new Object[]{k1, v1, k2, v2});
+				final boolean[] added = new boolean[1];
+				return EMPTY.assoc(shift, h1, k1, v1, added).assoc(shift, h2, k2, v2, added);
+			}
+		}
+
+		private static final class CollisionNode extends Node {
+			final int hash;
+
+			CollisionNode(int hash, Object[] array) {
+				super(array);
+				this.hash = hash;
+			}
+
+			private int indexOf(Object key) {
+				for (int i = 0; i < array.length; i += 2) {
+					if (Objects.equals(key, array[i])) return i;
+				}
+				return -1;
+			}
+
+			@Override
+			Object find(int shift, int hash, Object key) {
+				if (hash != this.hash) return NOT_FOUND;
+				final int i = indexOf(key);
+				return i < 0 ? NOT_FOUND : array[i + 1];
+			}
+
+			@Override
+			Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+				if (hash != this.hash) {
+					return new BitmapNode(1 << (this.hash >>> shift & 31), new Object[]{this, null}).assoc(shift, hash, key, value, added);
+				}
+				final int i = indexOf(key);
+				if (i >= 0) return array[i] == key && array[i + 1] == value ? this : new CollisionNode(hash, set(array, i, key, value));
+				added[0] = true;
+				final Object[] a = Arrays.copyOf(array, array.length + 2);
+				a[array.length] = key;
+				a[array.length + 1] = value;
+				return new CollisionNode(hash, a);
+			}
+
+			@Override
+			Node without(int shift, int hash, Object key) {
+				final int i = hash == this.hash ? indexOf(key) : -1;
+				if (i < 0) return this;
+				if (array.length == 2) return null;
+				final Object[] a = new Object[array.length - 2];
+				System.arraycopy(array, 0, a, 0, i);
+				System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+				return new CollisionNode(hash, a);
+			}
+		}
+
+		private static Object[] set(Object[] array, int i, Object key, Object value) {
+			final Object[] a = array.clone();
+			a[i] = key;
+			a[i + 1] = value;
+			return a;
+		}
+
+		/**
+		 * iterates depth first over the key/value pairs of the nodes
+		 */
+		private abstract static class NodeIterator<T> implements Iterator<T> {
+			// 7 bitmap levels and a collision node
+			private final Object[][] arrays = new Object[8][];
+			private final int[] positions = new int[8];
+			private int depth;
+			private Object nextKey;
+			private Object nextValue;
+			private boolean hasNext;
+
+			NodeIterator(Node root) {
+				if (root == null) {
+					depth = -1;
+				} else {
+					arrays[0] = root.array;
+				}
+				advance();
+			}
+
+			abstract T entry(Object key, Object value);
+
+			private void advance() {
+				while (depth >= 0) {
+					final Object[] a = arrays[depth];
+					final int p = positions[depth];
+					if (p == a.length) {
+						depth--;
+						continue;
+					}
+					positions[depth] = p + 2;
+					final Object k = a[p];
+					if (k instanceof Node) {
+						depth++;
+						arrays[depth] = ((Node) k).array;
+						positions[depth] = 0;
+					} else {
+						nextKey = k;
+						nextValue = a[p + 1];
+						hasNext = true;
+						return;
+					}
+				}
+				hasNext = false;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return hasNext;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext) throw new NoSuchElementException();
+				final T e = entry(nextKey, nextValue);
+				advance();
+				return e;
+			}
+		}
+	}
+
+	static final class PersistentHashSet<E> extends AbstractSet<E> {
+		private final PersistentHashMap<E, Boolean> map;
+
+		PersistentHashSet(PersistentHashMap<E, Boolean> map) {
+			this.map = map;
+		}
+
+		PersistentHashSet<E> plus(E e) {
+			final PersistentHashMap<E, Boolean> m = map.plus(e, Boolean.TRUE);
+			return m == map ? this : new PersistentHashSet<>(m);
+		}
+
+		PersistentHashSet<E> minus(Object e) {
+			final PersistentHashMap<E, Boolean> m = map.minus(e);
+			return m == map ? this : new PersistentHashSet<>(m);
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return map.containsKey(o);
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return map.keys();
+		}
+	}
+
+	/**
+	 * 32-way trie of the elements, the leaves are arrays of up to 32 elements
+	 */
+	static final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+		private static final PersistentVector<Object> EMPTY = new PersistentVector<>(new Object[0], 0, 0);
+
+		private final Object[] root;
+		// the level of the root, 0 if it is a leaf
+		private final int shift;
+		private final int size;
+
+		private PersistentVector(Object[] root, int shift, int size) {
+			this.root = root;
+			this.shift = shift;
+			this.size = size;
+		}
+
+		@SuppressWarnings("unchecked")
+		static <E> PersistentVector<E> of(Object[] elements, int n) {
+			if (n == 0) return (PersistentVector<E>) EMPTY;
+			Object[] level = new Object[(n + 31) >>> 5];
+			for (int i = 0; i < level.length; i++) {
+				level[i] = Arrays.copyOfRange(elements, i << 5, Math.min(n, (i + 1) << 5));
+			}
+			int shift = 0;
+			while (level.length > 1) {
+				final Object[] parents = new Object[(level.length + 31) >>> 5];
+				for (int i = 0; i < parents.length; i++) {
+					parents[i] = Arrays.copyOfRange(level, i << 5, Math.min(level.length, (i + 1) << 5));
+				}
+				level = parents;
+				shift += 5;
+			}
+			return new PersistentVector<>((Object[]) level[0], shift, n);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		private Object[] leafOf(int index) {
+			Object[] node = root;
+			for (int level = shift; level > 0; level -= 5) {
+				node = (Object[]) node[index >>> level & 31];
+			}
+			return node;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E get(int index) {
+			Objects.checkIndex(index, size);
+			return (E) leafOf(index)[index & 31];
+		}
+
+		/**
+		 * @return a vector with e at index, this if it already was there
+		 */
+		PersistentVector<E> with(int index, E e) {
+			Objects.checkIndex(index, size);
+			if (leafOf(index)[index & 31] == e) return this;
+			return new PersistentVector<>(with(root, shift, index, e), shift, size);
+		}
+
+		private static Object[] with(Object[] node, int level, int index, Object e) {
+			final Object[] copy = node.clone();
+			if (level == 0) {
+				copy[index & 31] = e;
+			} else {
+				final int sub = index >>> level & 31;
+				copy[sub] = with((Object[]) node[sub], level - 5, index, e);
+			}
+			return copy;
+		}
+
+		/**
+		 * @return a vector with e appended
+		 */
+		PersistentVector<E> plus(E e) {
+			if (size == 1 << shift + 5) {
+				return new PersistentVector<>(new Object[]{root, path(shift, e)}, shift + 5, size + 1);
+			}
+			return new PersistentVector<>(push(root, shift, size, e), shift, size + 1);
+		}
+
+		private static Object[] push(Object[] node, int level, int index, Object e) {
+			final int sub = index >>> level & 31;
+			final Object[] copy = Arrays.copyOf(node, Math.max(node.length, sub + 1));
+			if (level == 0) {
+				copy[sub] = e;
+			} else {
+				copy[sub] = sub < node.length ? push((Object[]) node[sub], level - 5, index, e) : path(level - 5, e);
+			}
+			return copy;
+		}
+
+		private static Object[] path(int level, Object e) {
+			return level == 0 ? new Object[]{e} : new Object[]{path(level - 5, e)};
+		}
+	}
+
+	/**
+	 * the last clone of each remembered collection. The collections are weakly referenced and compared by identity.
+	 */
+	private static final class Snapshots {
+		private final ConcurrentHashMap<WeakKey, Object> snapshots = new ConcurrentHashMap<>();
+		private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+		Object get(Object original) {
+			expunge();
+			return snapshots.get(new WeakKey(original, null));
+		}
+
+		void put(Object original, Object snapshot) {
+			expunge();
+			snapshots.put(new WeakKey(original, queue), snapshot);
+		}
+
+		private void expunge() {
+			Reference<?> r;
+			while ((r = queue.poll()) != null) {
+				snapshots.remove(r);
+			}
+		}
+
+		private static final class WeakKey extends WeakReference<Object> {
+			private final int hash;
+
+			WeakKey(Object referent, ReferenceQueue<Object> queue) {
+				super(referent, queue);
+				hash = System.identityHashCode(referent);
+			}
+
+			@Override
+			public int hashCode() {
+				return hash;
+			}
+
+			@Override
+			public boolean equals(Object o) {
+				if (o == this) return true;
+				if (!(o instanceof WeakKey)) return false;
+				final Object referent = get();
+				return referent != null && referent == ((WeakKey) o).get();
+			}
+		}
+	}
+
+	/**
+	 * clones lists to {@link PersistentVector}s
+	 */
+	static final class ListCloner implements IElementAgnosticFastCloner {
+		private final Snapshots snapshots = new Snapshots();
+
+		@Override
+		public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
+			final List<?> list = (List<?>) t;
+			final int n = list.size();
+			if (n < MIN_REMEMBERED_SIZE) return build(list, cloner, clones);
+			final Object previous = snapshots.get(list);
+			PersistentVector<Object> clone = previous == null ? null : update(castVector(previous), list, cloner, clones);
+			if (clone == null) clone = build(list, cloner, clones);
+			snapshots.put(list, clone);
+			return clone;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static PersistentVector<Object> castVector(Object o) {
+			return (PersistentVector<Object>) o;
+		}
+
+		private static PersistentVector<Object> build(List<?> list, IDeepCloner cloner, Map<Object, Object> clones) {
+			final Object[] elements = list.toArray();
+			for (int i = 0; i < elements.length; i++) {
+				elements[i] = cloner.deepClone(elements[i], clones);
+			}
+			return PersistentVector.of(elements, elements.length);
+		}
+
+		/**
+		 * @return previous with the changed elements, or null if too many changed
+		 */
+		private static PersistentVector<Object> update(PersistentVector<Object> previous, List<?> list, IDeepCloner cloner, Map<Object, Object> clones) {
+			final int n = list.size();
+			if (n < previous.size()) return null;
+			final int maxChanges = maxChanges(n);
+			int changes = n - previous.size();
+			if (changes > maxChanges) return null;
+			PersistentVector<Object> v = previous;
+			int i = 0;
+			for (Object e : list) {
+				final Object c = cloner.deepClone(e, clones);
+				if (i < previous.size()) {
+					final PersistentVector<Object> u = v.with(i, c);
+					if (u != v && ++changes > maxChanges) return null;
+					v = u;
+				} else {
+					v = v.plus(c);
+				}
+				i++;
+			}
+			return v;
+		}
+	}
+
+	/**
+	 * clones maps to {@link PersistentHashMap}s
+	 */
+	static final class MapCloner implements IFastCloner {
+		private final Snapshots snapshots = new Snapshots();
+
+		@Override
+		public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
+			final Map<?, ?> map = (Map<?, ?>) t;
+			if (map.size() < MIN_REMEMBERED_SIZE) return build(map, cloner, clones);
+			final Object previous = snapshots.get(map);
+			PersistentHashMap<Object, Object> clone = previous == null ? null : update(castMap(previous), map, cloner, clones);
+			if (clone == null) clone = build(map, cloner, clones);
+			snapshots.put(map, clone);
+			return clone;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static PersistentHashMap<Object, Object> castMap(Object o) {
+			return (PersistentHashMap<Object, Object>) o;
+		}
+
+		private static PersistentHashMap<Object, Object> build(Map<?, ?> map, IDeepCloner cloner, Map<Object, Object> clones) {
+			final int n = map.size();
+			final Object[] keys = new Object[n];
+			final Object[] values = new Object[n];
+			int i = 0;
+			for (Map.Entry<?, ?> e : map.entrySet()) {
+				keys[i] = cloner.deepClone(e.getKey(), clones);
+				values[i] = cloner.deepClone(e.getValue(), clones);
+				i++;
+			}
+			return PersistentHashMap.of(keys, values, i);
+		}
+
+		private static PersistentHashMap<Object, Object> update(PersistentHashMap<Object, Object> previous, Map<?, ?> map, IDeepCloner cloner, Map<Object, Object> clones) {
+			final int maxChanges = maxChanges(map.size());
+			int changes = 0;
+			PersistentHashMap<Object, Object> m = previous;
+			for (Map.Entry<?, ?> e : map.entrySet()) {
+				final PersistentHashMap<Object, Object> u = m.plus(cloner.deepClone(e.getKey(), clones), cloner.deepClone(e.getValue(), clones));
+				if (u != m && ++changes > maxChanges) return null;
+				m = u;
+			}
+			// previous keys which were removed since
+			if (m.size() != map.size()) {
+				for (Iterator<Object> it = previous.keys(); it.hasNext() && m.size() != map.size(); ) {
+					final Object k = it.next();
+					if (!map.containsKey(k)) m = m.minus(k);
+				}
+			}
+			return m;
+		}
+	}
+
+	/**
+	 * clones sets to {@link PersistentHashSet}s
+	 */
+	static final class SetCloner implements IFastCloner {
+		private final Snapshots snapshots = new Snapshots();
+
+		@Override
+		public Object clone(final Object t, final IDeepCloner cloner, final Map<Object, Object> clones) {
+			final Set<?> set = (Set<?>) t;
+			if (set.size() < MIN_REMEMBERED_SIZE) return build(set, cloner, clones);
+			final Object previous = snapshots.get(set);
+			PersistentHashSet<Object> clone = previous == null ? null : update(castSet(previous), set, cloner, clones);
+			if (clone == null) clone = build(set, cloner, clones);
+			snapshots.put(set, clone);
+			return clone;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static PersistentHashSet<Object> castSet(Object o) {
+			return (PersistentHashSet<Object>) o;
+		}
+
+		private static PersistentHashSet<Object> build(Collection<?> set, IDeepCloner cloner, Map<Object, Object> clones) {
+			final Object[] elements = set.toArray();
+			final Object[] present = new Object[elements.length];
+			for (int i = 0; i < elements.length; i++) {
+				elements[i] = cloner.deepClone(elements[i], clones);
+				present[i] = Boolean.TRUE;
+			}
+			return new PersistentHashSet<>(PersistentHashMap.of(elements, present, elements.length));
+		}
+
+		private static PersistentHashSet<Object> update(PersistentHashSet<Object> previous, Set<?> set, IDeepCloner cloner, Map<Object, Object> clones) {
+			final int maxChanges = maxChanges(set.size());
+			int changes = 0;
+			PersistentHashSet<Object> s = previous;
+			for (Object e : set) {
+				final PersistentHashSet<Object> u = s.plus(cloner.deepClone(e, clones));
+				if (u != s && ++changes > maxChanges) return null;
+				s = u;
+			}
+			if (s.size() != set.size()) {
+				final List<Object> removed = new ArrayList<>();
+				for (Object e : previous) {
+					if (!set.contains(e)) removed.add(e);
+				}
+				for (Object e : removed) {
+					s = s.minus(e);
+				}
+			}
+			return s;
+		}
+	}
+}
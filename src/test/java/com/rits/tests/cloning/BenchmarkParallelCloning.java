@@ -0,0 +1,81 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * compares deepClone with deepCloneParallel on 1 up to all cores, for a big graph with shared references and cycles.
+ * Run with the number of items as the argument, 1.000.000 by default.
+ */
+public class BenchmarkParallelCloning
+{
+	static class Item {
+		int id;
+		Item next;
+		Item peer;
+		List<Item> children = new ArrayList<>();
+		int[] values;
+		Map<String, Integer> attributes = new HashMap<>();
+	}
+
+	private static Item[] graph(int n) {
+		final Item[] items = new Item[n];
+		for (int i = 0; i < n; i++) {
+			items[i] = new Item();
+			items[i].id = i;
+			items[i].values = new int[]{i, -i, i * 2};
+			items[i].attributes.put("id", i);
+		}
+		for (int i = 0; i < n; i++) {
+			items[i].next = items[(i + 1) % n];
+			items[i].peer = items[(int) (i * 7919L % n)];
+			if (i % 10 == 0) {
+				for (int j = 1; j < 4; j++) items[i].children.add(items[(i + j * 31) % n]);
+			}
+		}
+		return items;
+	}
+
+	public static void main(final String[] args) {
+		final int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		final Item[] items = graph(n);
+		final Cloner cloner = new Cloner();
+		// the chain of items is too deep to clone recursively
+		cloner.setIterative(true);
+		final int cores = Runtime.getRuntime().availableProcessors();
+
+		System.out.println("deepClone: " + time(() -> cloner.deepClone(items)) + "ms");
+		for (int parallelism = 1; parallelism <= cores; parallelism *= 2) {
+			report(cloner, items, parallelism);
+			if (parallelism < cores && parallelism * 2 > cores) report(cloner, items, cores);
+		}
+	}
+
+	private static void report(final Cloner cloner, final Item[] items, final int parallelism) {
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			System.out.println("deepCloneParallel on " + parallelism + " threads: " + time(() -> cloner.deepCloneParallel(items, pool)) + "ms");
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return the best time of 10 runs after 5 warm up runs
+	 */
+	private static long time(final Runnable clone) {
+		for (int i = 0; i < 5; i++) clone.run();
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			final long start = System.nanoTime();
+			clone.run();
+			best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+		}
+		return best;
+	}
+}
@@ -0,0 +1,128 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.ClonerBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class TestBulkCopy {
+	private final Cloner cloner = new Cloner();
+
+	static class Mutable {
+		int x;
+
+		Mutable(int x) {
+			this.x = x;
+		}
+	}
+
+	static final class Money {
+		final long cents;
+
+		Money(long cents) {
+			this.cents = cents;
+		}
+	}
+
+	@Test
+	public void immutableElementsAreCopied() {
+		List<Object> list = new ArrayList<>(Arrays.asList("a", 1L, null, UUID.randomUUID(), "b"));
+		List<Object> clone = cloner.deepClone(list);
+		assertNotSame(list, clone);
+		assertEquals(list, clone);
+		for (int i = 0; i < list.size(); i++) {
+			assertSame(list.get(i), clone.get(i));
+		}
+		clone.add("c");
+		assertEquals(5, list.size());
+
+		LinkedList<String> linked = new LinkedList<>(Arrays.asList("a", "b"));
+		LinkedList<String> linkedClone = cloner.deepClone(linked);
+		assertNotSame(linked, linkedClone);
+		assertEquals(linked, linkedClone);
+
+		Set<Long> set = new HashSet<>(Arrays.asList(1L, 2L, 3L));
+		Set<Long> setClone = cloner.deepClone(set);
+		assertNotSame(set, setClone);
+		assertEquals(set, setClone);
+
+		List<String> subList = new ArrayList<>(Arrays.asList("a", "b", "c")).subList(1, 3);
+		List<String> subListClone = cloner.deepClone(subList);
+		assertEquals(Arrays.asList("b", "c"), subListClone);
+		assertEquals(ArrayList.class, subListClone.getClass());
+	}
+
+	@Test
+	public void mutableElementsAreStillCloned() {
+		Mutable m = new Mutable(1);
+		List<Object> list = new ArrayList<>(Arrays.asList("a", "b", m, "c", m));
+		List<Object> clone = cloner.deepClone(list);
+		assertSame("a", clone.get(0));
+		assertNotSame(m, clone.get(2));
+		assertSame(clone.get(2), clone.get(4));
+
+		LinkedList<Object> linked = new LinkedList<>(list);
+		assertNotSame(m, cloner.deepClone(linked).get(2));
+
+		Set<Object> set = new HashSet<>(Arrays.asList("a", m));
+		for (Object o : cloner.deepClone(set)) {
+			assertNotSame(m, o);
+		}
+	}
+
+	@Test
+	public void arrays() {
+		Mutable m = new Mutable(1);
+		Object[] strings = {"a", null, "b"};
+		Object[] clone = cloner.deepClone(strings);
+		assertNotSame(strings, clone);
+		assertArrayEquals(strings, clone);
+		Object[] mixed = {"a", 1, m, "b"};
+		Object[] mixedClone = cloner.deepClone(mixed);
+		assertSame("a", mixedClone[0]);
+		assertNotSame(m, mixedClone[2]);
+		assertSame("b", mixedClone[3]);
+	}
+
+	@Test
+	public void registeredImmutablesAreCopied() {
+		cloner.registerImmutable(Money.class);
+		Money money = new Money(5);
+		List<Money> clone = cloner.deepClone(new ArrayList<>(Arrays.asList(money, money)));
+		assertSame(money, clone.get(0));
+	}
+
+	@Test
+	public void canonicalizingStillInterns() {
+		Cloner canonical = new ClonerBuilder().canonicalizing(1024).build();
+		List<String> list = new ArrayList<>(Arrays.asList(new String("a"), new String("a")));
+		List<String> clone = canonical.deepClone(list);
+		assertEquals(list, clone);
+		assertSame(clone.get(0), clone.get(1));
+	}
+
+	@Test
+	public void overriddenCloneInternalSeesEveryElement() {
+		final List<Object> seen = new ArrayList<>();
+		Cloner counting = new Cloner() {
+			@Override
+			protected <T> T cloneInternal(T o, Map<Object, Object> clones) {
+				seen.add(o);
+				return super.cloneInternal(o, clones);
+			}
+		};
+		counting.deepClone(new ArrayList<>(Arrays.asList("a", "b")));
+		assertTrue(seen.contains("a"));
+		assertTrue(seen.contains("b"));
+	}
+}
@@ -0,0 +1,163 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.ClonerBuilder;
+import com.rits.cloning.Immutable;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class TestCanonicalizing {
+	@Immutable
+	static final class Currency {
+		final String code;
+
+		Currency(String code) {
+			this.code = code;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Currency && ((Currency) o).code.equals(code);
+		}
+
+		@Override
+		public int hashCode() {
+			return code.hashCode();
+		}
+	}
+
+	@Immutable
+	static final class Token {
+		final int id;
+
+		Token(int id) {
+			this.id = id;
+		}
+	}
+
+	static class Trade {
+		String symbol;
+		BigDecimal price;
+		UUID id;
+		Currency currency;
+		Token token;
+		Object any;
+		String[] tags;
+		URL url;
+	}
+
+	private static Trade trade(int i) {
+		Trade t = new Trade();
+		t.symbol = new String("ACME");
+		t.price = new BigDecimal("12.50");
+		t.id = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+		t.currency = new Currency(new String("EUR"));
+		t.token = new Token(i);
+		t.any = new String("any");
+		t.tags = new String[]{new String("a"), new String("b" + i)};
+		return t;
+	}
+
+	@Test
+	public void equalValuesCollapse() {
+		Cloner cloner = new Cloner();
+		cloner.setCanonicalizing(1024);
+		List<Trade> trades = new ArrayList<>();
+		for (int i = 0; i < 100; i++) trades.add(trade(i));
+		List<Trade> clones = cloner.deepClone(trades);
+		Trade first = clones.get(0);
+		assertEquals("ACME", first.symbol);
+		for (int i = 0; i < clones.size(); i++) {
+			Trade t = clones.get(i);
+			assertSame(first.symbol, t.symbol);
+			assertSame(first.price, t.price);
+			assertSame(first.id, t.id);
+			assertSame(first.currency, t.currency);
+			assertSame(first.any, t.any);
+			assertSame(first.tags[0], t.tags[0]);
+			// identity equality, nothing to canonicalize
+			assertSame(trades.get(i).token, t.token);
+		}
+		assertEquals("b7", clones.get(7).tags[1]);
+		// canonical instances are shared across clones
+		assertSame(first.symbol, cloner.deepClone(trade(0)).symbol);
+	}
+
+	@Test
+	public void collectionsAndScale() {
+		Cloner cloner = new ClonerBuilder().canonicalizing(64).build();
+		Map<String, BigDecimal> m = new HashMap<>();
+		m.put(new String("x"), new BigDecimal("1.0"));
+		m.put(new String("y"), new BigDecimal("1.0"));
+		m.put(new String("z"), new BigDecimal("1.00"));
+		Map<String, BigDecimal> clone = cloner.deepClone(m);
+		assertEquals(m, clone);
+		assertSame(clone.get("x"), clone.get("y"));
+		assertNotSame(clone.get("x"), clone.get("z"));
+		assertEquals(new BigDecimal("1.00"), clone.get("z"));
+		List<String> l = new ArrayList<>(List.of(new String("s"), new String("s")));
+		List<String> cl = cloner.deepClone(l);
+		assertSame(cl.get(0), cl.get(1));
+	}
+
+	@Test
+	public void disabledByDefault() {
+		Cloner cloner = new Cloner();
+		Trade a = trade(0);
+		Trade b = trade(0);
+		List<Trade> clones = cloner.deepClone(List.of(a, b));
+		assertSame(a.symbol, clones.get(0).symbol);
+		assertNotSame(clones.get(0).symbol, clones.get(1).symbol);
+		cloner.setCanonicalizing(16);
+		assertTrue(cloner.isCanonicalizing());
+		cloner.setCanonicalizing(0);
+		assertFalse(cloner.isCanonicalizing());
+		assertTrue(Objects.equals(a.symbol, cloner.deepClone(a).symbol));
+	}
+
+	static final class Session {
+		final String id;
+
+		Session(String id) {
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Session && ((Session) o).id.equals(id);
+		}
+
+		@Override
+		public int hashCode() {
+			return id.hashCode();
+		}
+	}
+
+	@Test
+	public void dontCloneIsNotCanonicalized() {
+		Cloner cloner = new ClonerBuilder().canonicalizing(64).dontClone(Session.class).build();
+		Session a = new Session("s");
+		Session b = new Session("s");
+		List<Session> clone = cloner.deepClone(new ArrayList<>(List.of(a, b)));
+		assertSame(a, clone.get(0));
+		assertSame(b, clone.get(1));
+	}
+
+	@Test
+	public void deepCloneAllCanonicalizes() {
+		Cloner cloner = new ClonerBuilder().canonicalizing(64).build();
+		List<Object> clones = cloner.deepCloneAll(List.of(new String("r"), new String("r"), new BigDecimal("2.0"), new BigDecimal("2.0")));
+		assertSame(clones.get(0), clones.get(1));
+		assertSame(clones.get(2), clones.get(3));
+	}
+}
@@ -0,0 +1,174 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestCloneInto {
+	private final Cloner cloner = new Cloner();
+
+	static class Order {
+		long id;
+		double price;
+		transient Object cache;
+		Order next;
+
+		Order(long id, double price) {
+			this.id = id;
+			this.price = price;
+		}
+	}
+
+	static class Key {
+		final String name;
+
+		Key(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && ((Key) o).name.equals(name);
+		}
+	}
+
+	static class Book {
+		String symbol;
+		final List<Order> bids = new ArrayList<>();
+		final Map<Long, Order> byId = new HashMap<>();
+		final Map<String, Order> byName = new LinkedHashMap<>();
+		final Set<Key> keys = new HashSet<>();
+		Order[] top = new Order[2];
+		int[] levels = {1, 2, 3};
+		Book self;
+	}
+
+	private static Book book(int n, double shift) {
+		Book b = new Book();
+		b.symbol = "S" + n;
+		b.self = b;
+		for (int i = 0; i < n; i++) {
+			Order o = new Order(i, i + shift);
+			b.bids.add(o);
+			b.byId.put((long) i, o);
+			b.byName.put("o" + i, o);
+			b.keys.add(new Key("k" + i));
+		}
+		for (int i = 1; i < n; i++) b.bids.get(i - 1).next = b.bids.get(i);
+		b.top[0] = n > 0 ? b.bids.get(0) : null;
+		return b;
+	}
+
+	private static void assertClone(Book src, Book clone) {
+		assertNotSame(src, clone);
+		assertSame(clone, clone.self);
+		assertEquals(src.symbol, clone.symbol);
+		assertEquals(src.bids.size(), clone.bids.size());
+		for (int i = 0; i < src.bids.size(); i++) {
+			Order o = clone.bids.get(i);
+			assertNotSame(src.bids.get(i), o);
+			assertEquals(src.bids.get(i).id, o.id);
+			assertEquals(src.bids.get(i).price, o.price, 0);
+			assertSame(o, clone.byId.get(o.id));
+			assertSame(o, clone.byName.get("o" + o.id));
+			if (i > 0) assertSame(o, clone.bids.get(i - 1).next);
+		}
+		assertEquals(src.byId.keySet(), clone.byId.keySet());
+		assertEquals(List.copyOf(src.byName.keySet()), List.copyOf(clone.byName.keySet()));
+		assertEquals(src.keys, clone.keys);
+		assertSame(clone.top[0], src.top[0] == null ? null : clone.bids.get(0));
+		assertArrayEquals(src.levels, clone.levels);
+		assertNotSame(src.levels, clone.levels);
+	}
+
+	@Test
+	public void reusesTheDestination() {
+		Book src = book(10, 0.5);
+		Book dest = book(10, 0);
+		List<Order> destBids = dest.bids;
+		Order destOrder = dest.bids.get(3);
+		Order[] destTop = dest.top;
+		int[] destLevels = dest.levels;
+		src.levels[0] = 9;
+
+		Book clone = cloner.deepCloneInto(src, dest);
+		assertSame(dest, clone);
+		assertClone(src, clone);
+		assertSame(destBids, clone.bids);
+		assertSame(destOrder, clone.bids.get(3));
+		assertEquals(3.5, destOrder.price, 0);
+		assertSame(destTop, clone.top);
+		assertSame(destLevels, clone.levels);
+	}
+
+	@Test
+	public void differentShapes() {
+		Book src = book(12, 1);
+		Book bigger = book(20, 0);
+		bigger.levels = new int[7];
+		bigger.bids.get(0).cache = "cached";
+		Book clone = cloner.deepCloneInto(src, bigger);
+		assertSame(bigger, clone);
+		assertClone(src, clone);
+		assertEquals(3, clone.levels.length);
+
+		Book empty = new Book();
+		clone = cloner.deepCloneInto(src, empty);
+		assertSame(empty, clone);
+		assertClone(src, clone);
+
+		clone = cloner.deepCloneInto(book(0, 0), clone);
+		assertClone(book(0, 0), clone);
+	}
+
+	@Test
+	public void nullTransientAndSharedDestinationObjects() {
+		cloner.setNullTransient(true);
+		Book src = book(3, 0);
+		src.bids.get(1).cache = "x";
+		Book dest = book(3, 0);
+		dest.bids.get(0).cache = "old";
+		// the destination shares an order where the source doesn't
+		dest.bids.set(2, dest.bids.get(1));
+		Book clone = cloner.deepCloneInto(src, dest);
+		assertClone(src, clone);
+		assertNull(clone.bids.get(0).cache);
+		assertNull(clone.bids.get(1).cache);
+		assertNotSame(clone.bids.get(1), clone.bids.get(2));
+	}
+
+	@Test
+	public void iterative() {
+		cloner.setIterative(true);
+		Book src = book(5000, 2);
+		Book dest = book(4000, 0);
+		Order destOrder = dest.bids.get(3999);
+		Book clone = cloner.deepCloneInto(src, dest);
+		assertClone(src, clone);
+		assertSame(destOrder, clone.bids.get(3999));
+	}
+
+	@Test
+	public void nullsAndOtherClasses() {
+		assertNull(cloner.deepCloneInto(null, new Book()));
+		Book src = book(2, 0);
+		assertClone(src, cloner.deepCloneInto(src, null));
+		Object o = cloner.deepCloneInto((Object) new ArrayList<>(List.of(1, 2)), (Object) new HashMap<>());
+		assertEquals(List.of(1, 2), o);
+		assertSame("s", cloner.deepCloneInto("s", "t"));
+	}
+}
@@ -955,5 +955,36 @@ public class TestCloner extends TestCase {
         ClassWithEnum b = cloner.deepClone(a);
         assertSame(TimeUnit.SECONDS, b.timeUnit);
     }
+
+    public void testDeepCloneAllSharesReferencesBetweenRoots() {
+        List<Object> shared = new ArrayList<>(List.of("x"));
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(new Object[]{i, shared});
+        }
+        rows.add(null);
+        List<Object[]> clones = cloner.deepCloneAll(rows);
+        assertEquals(rows.size(), clones.size());
+        assertNull(clones.get(100));
+        Object clonedShared = clones.get(0)[1];
+        assertNotSame(shared, clonedShared);
+        assertEquals(shared, clonedShared);
+        for (int i = 0; i < 100; i++) {
+            assertNotSame(rows.get(i), clones.get(i));
+            assertEquals(i, clones.get(i)[0]);
+            assertSame(clonedShared, clones.get(i)[1]);
+        }
+
+        ClassWithEnum a = new ClassWithEnum();
+        ArrayList<Object> list = new ArrayList<>();
+        Object[] roots = {a, list, a, "s", List.of(list)};
+        Object[] arrayClones = cloner.deepCloneAll(roots);
+        assertEquals(Object[].class, arrayClones.getClass());
+        assertNotSame(a, arrayClones[0]);
+        assertSame(arrayClones[0], arrayClones[2]);
+        assertSame("s", arrayClones[3]);
+        assertSame(arrayClones[1], ((List<?>) arrayClones[4]).get(0));
+        assertSame(a, roots[0]);
+    }
 }
 
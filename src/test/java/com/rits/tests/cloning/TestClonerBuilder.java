@@ -0,0 +1,86 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.ClonerBuilder;
+import com.rits.cloning.CloningEngine;
+import com.rits.cloning.IDumpCloned;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestClonerBuilder {
+
+	static class Session {
+	}
+
+	static class Entity {
+		Session session = new Session();
+		transient List<String> cache = new ArrayList<>(List.of("c"));
+		List<String> names = new ArrayList<>(List.of("a"));
+	}
+
+	@Test
+	public void buildsConfiguredCloner() {
+		List<Class<?>> dumped = new ArrayList<>();
+		ClonerBuilder builder = new ClonerBuilder()
+				.dontClone(Session.class)
+				.nullTransient(true)
+				.engine(CloningEngine.HANDLES)
+				.dumpCloned(new IDumpCloned() {
+					public void startCloning(Class<?> clz) {
+						dumped.add(clz);
+					}
+
+					public void cloning(Field field, Class<?> clz) {
+					}
+				});
+		Cloner cloner = builder.build();
+		assertTrue(cloner.isFrozen());
+		assertTrue(cloner.isNullTransient());
+		assertEquals(CloningEngine.HANDLES, cloner.getEngine());
+
+		Entity e = new Entity();
+		Entity c = cloner.deepClone(e);
+		assertSame(e.session, c.session);
+		assertNull(c.cache);
+		assertNotSame(e.names, c.names);
+		assertEquals(e.names, c.names);
+		assertTrue(dumped.contains(Entity.class));
+
+		// every build creates an independent cloner with the configuration of the builder at that point
+		Cloner second = builder.nullTransient(false).build();
+		assertNotSame(cloner, second);
+		assertEquals(List.of("c"), second.deepClone(e).cache);
+		assertTrue(cloner.isNullTransient());
+	}
+
+	@Test
+	public void configurationCantChange() {
+		Cloner cloner = new ClonerBuilder().build();
+		assertFalse(new Cloner().isFrozen());
+		Runnable[] changes = {
+				() -> cloner.dontClone(Session.class),
+				() -> cloner.registerImmutable(Session.class),
+				() -> cloner.nullInsteadOfClone(Session.class),
+				() -> cloner.registerFastCloner(Session.class, (t, d, clones) -> t),
+				() -> cloner.setNullTransient(true),
+				() -> cloner.setDumpClonedClasses(true),
+				() -> cloner.setCloningEnabled(false),
+				() -> cloner.registerConstant(new Object())
+		};
+		for (Runnable change : changes) {
+			try {
+				change.run();
+				fail();
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		}
+		Entity e = new Entity();
+		assertNotSame(e.session, cloner.deepClone(e).session);
+	}
+}
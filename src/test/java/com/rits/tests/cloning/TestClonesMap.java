@@ -0,0 +1,170 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.IFastCloner;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * checks the clones map handed to fast cloners against an IdentityHashMap
+ */
+public class TestClonesMap {
+
+	static class Holder {
+	}
+
+	static class Shared {
+		Object a;
+		Object b;
+	}
+
+	private static void check(Map<Object, Object> clones) {
+		Map<Object, Object> expected = new IdentityHashMap<>(clones);
+		List<Object> keys = new ArrayList<>();
+		Random r = new Random(1);
+		for (int i = 0; i < 20000; i++) {
+			int op = r.nextInt(10);
+			if (op < 5 || keys.isEmpty()) {
+				Object k = new Object();
+				keys.add(k);
+				assertEquals(expected.put(k, i), clones.put(k, i));
+			} else if (op < 7) {
+				Object k = keys.get(r.nextInt(keys.size()));
+				assertEquals(expected.put(k, -i), clones.put(k, -i));
+			} else if (op < 8) {
+				Object k = keys.remove(r.nextInt(keys.size()));
+				assertEquals(expected.remove(k), clones.remove(k));
+			}
+			Object k = keys.isEmpty() ? new Object() : keys.get(r.nextInt(keys.size()));
+			assertEquals(expected.get(k), clones.get(k));
+			assertEquals(expected.containsKey(k), clones.containsKey(k));
+			assertEquals(expected.size(), clones.size());
+		}
+		// the keys are plain objects so a HashMap compares them by identity but the values by equals
+		Map<Object, Object> entries = new HashMap<>();
+		for (Map.Entry<Object, Object> e : clones.entrySet()) {
+			assertNull(entries.put(e.getKey(), e.getValue()));
+		}
+		assertEquals(new HashMap<>(expected), entries);
+		for (Object k : keys) {
+			assertEquals(expected.remove(k), clones.remove(k));
+		}
+		assertEquals(expected.size(), clones.size());
+	}
+
+	@Test
+	public void mapOperations() {
+		Cloner cloner = new Cloner();
+		boolean[] checked = new boolean[1];
+		cloner.registerFastCloner(Holder.class, new IFastCloner() {
+			public Object clone(Object t, com.rits.cloning.IDeepCloner c, Map<Object, Object> clones) {
+				check(clones);
+				checked[0] = true;
+				return new Holder();
+			}
+		});
+		cloner.deepClone(new Holder());
+		assertTrue(checked[0]);
+	}
+
+	@Test
+	public void bigGraphs() {
+		Cloner cloner = new Cloner();
+		Shared[] graph = new Shared[100000];
+		for (int i = 0; i < graph.length; i++) {
+			graph[i] = new Shared();
+			graph[i].a = i > 0 ? graph[i - 1] : null;
+			graph[i].b = i > 0 ? graph[i / 2] : null;
+		}
+		// the second clone is presized from the first
+		for (int n = 0; n < 2; n++) {
+			Shared[] c = cloner.deepClone(graph);
+			for (int i = 1; i < c.length; i++) {
+				assertNotSame(graph[i], c[i]);
+				assertSame(c[i - 1], c[i].a);
+				assertSame(c[i / 2], c[i].b);
+			}
+		}
+	}
+
+	static class Failing {
+		Object o;
+	}
+
+	@Test
+	public void contextsAreReused() throws Exception {
+		Cloner cloner = new Cloner();
+		List<Map<Object, Object>> seen = new ArrayList<>();
+		cloner.registerFastCloner(Holder.class, (t, c, clones) -> {
+			// apart from the first, the holders are the roots so the reused contexts must be empty
+			assertTrue(seen.isEmpty() || clones.isEmpty());
+			seen.add(clones);
+			return new Holder();
+		});
+		cloner.registerFastCloner(Failing.class, (t, c, clones) -> {
+			clones.put(t, t);
+			throw new IllegalStateException();
+		});
+		Shared s = new Shared();
+		s.a = new Holder();
+		s.b = new Failing();
+		try {
+			cloner.deepClone(s);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected, the context must be clean for the next clone
+		}
+		for (int i = 0; i < 3; i++) {
+			cloner.deepClone(new Holder());
+		}
+		assertEquals(4, seen.size());
+		assertSame(seen.get(0), seen.get(3));
+
+		// nested clones get their own context
+		Cloner nested = new Cloner();
+		nested.registerFastCloner(Holder.class, (t, c, clones) -> {
+			Object[] inner = nested.deepClone(new Object[]{new Shared()});
+			assertNotNull(inner[0]);
+			assertFalse(clones.containsKey(t));
+			return new Holder();
+		});
+		Shared n = new Shared();
+		n.a = new Holder();
+		n.b = n.a;
+		Shared nc = nested.deepClone(n);
+		assertSame(nc.a, nc.b);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 1000; i++) {
+						Shared o = new Shared();
+						o.a = new int[]{i};
+						o.b = o.a;
+						Shared c = cloner.deepClone(o);
+						assertSame(c.a, c.b);
+						assertNotSame(o.a, c.a);
+					}
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
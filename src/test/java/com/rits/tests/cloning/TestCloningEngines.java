@@ -0,0 +1,399 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.CloningEngine;
+import com.rits.cloning.CloningStrategyFactory;
+import com.rits.cloning.ICloningStrategy;
+import com.rits.tests.cloning.domain.B;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * runs the same clones through every {@link CloningEngine}
+ */
+public class TestCloningEngines {
+
+	static class Base {
+		private int id;
+		private final String name;
+		protected volatile long version;
+
+		Base(int id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		int id() {
+			return id;
+		}
+
+		String name() {
+			return name;
+		}
+	}
+
+	static class Node extends Base {
+		private double weight;
+		private boolean flag;
+		private char c;
+		private byte b;
+		private short s;
+		private float f;
+		private Node parent;
+		private final List<Node> children = new ArrayList<>();
+		private int[] values;
+		private Object any;
+		private transient B b2 = new B();
+
+		Node(int id, String name) {
+			super(id, name);
+		}
+	}
+
+	private Node graph() {
+		Node root = new Node(1, "root");
+		root.weight = 1.5;
+		root.flag = true;
+		root.c = 'x';
+		root.b = 3;
+		root.s = 4;
+		root.f = 5.5f;
+		root.version = 42;
+		root.values = new int[]{1, 2, 3};
+		for (int i = 0; i < 3; i++) {
+			Node child = new Node(i + 2, "child" + i);
+			child.parent = root;
+			child.any = root.values;
+			root.children.add(child);
+		}
+		root.any = root.children.get(0);
+		return root;
+	}
+
+	private void assertClone(Node o, Node c) {
+		assertNotSame(o, c);
+		assertEquals(o.id(), c.id());
+		assertSame(o.name(), c.name());
+		assertEquals(o.version, c.version);
+		assertEquals(o.weight, c.weight, 0);
+		assertEquals(o.flag, c.flag);
+		assertEquals(o.c, c.c);
+		assertEquals(o.b, c.b);
+		assertEquals(o.s, c.s);
+		assertEquals(o.f, c.f, 0);
+		assertNotSame(o.values, c.values);
+		assertArrayEquals(o.values, c.values);
+		assertNotSame(o.children, c.children);
+		assertEquals(o.children.size(), c.children.size());
+		assertNotSame(o.b2, c.b2);
+		assertEquals(o.b2.getY(), c.b2.getY());
+		for (int i = 0; i < o.children.size(); i++) {
+			Node oc = o.children.get(i);
+			Node cc = c.children.get(i);
+			assertNotSame(oc, cc);
+			assertEquals(oc.id(), cc.id());
+			assertSame(c, cc.parent);
+			assertSame(c.values, cc.any);
+		}
+		assertSame(c.children.get(0), c.any);
+	}
+
+	@Test
+	public void deepClone() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner cloner = new Cloner();
+			cloner.setEngine(engine);
+			Node o = graph();
+			assertClone(o, cloner.deepClone(o));
+			// second clone goes through the cached cloners
+			assertClone(o, cloner.deepClone(o));
+		}
+	}
+
+	@Test
+	public void shallowClone() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner cloner = new Cloner();
+			cloner.setEngine(engine);
+			Node o = graph();
+			Node c = cloner.shallowClone(o);
+			assertNotSame(o, c);
+			assertEquals(o.id(), c.id());
+			assertEquals(o.version, c.version);
+			assertSame(o.children, c.children);
+			assertSame(o.values, c.values);
+			assertSame(o.any, c.any);
+		}
+	}
+
+	@Test
+	public void cloningStrategiesAndNullTransient() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner cloner = new Cloner();
+			cloner.setEngine(engine);
+			cloner.setNullTransient(true);
+			cloner.registerCloningStrategy(CloningStrategyFactory.annotatedField(Deprecated.class, ICloningStrategy.Strategy.SAME_INSTANCE_INSTEAD_OF_CLONE));
+			Node o = graph();
+			Node c = cloner.deepClone(o);
+			assertNull(c.b2);
+			assertNotSame(o.children, c.children);
+		}
+	}
+
+	@Test
+	public void jdkClasses() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner cloner = new Cloner();
+			cloner.setEngine(engine);
+			StringBuilder sb = new StringBuilder("abc");
+			StringBuilder c = cloner.deepClone(sb);
+			assertNotSame(sb, c);
+			assertEquals("abc", c.toString());
+		}
+	}
+
+	@Test
+	public void iterative() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner cloner = new Cloner();
+			cloner.setEngine(engine);
+			cloner.setIterative(true);
+			Node o = graph();
+			assertClone(o, cloner.deepClone(o));
+			Map<Node, Node> m = new HashMap<>();
+			m.put(o, o.children.get(0));
+			Map<Node, Node> c = cloner.deepClone(m);
+			Node key = c.keySet().iterator().next();
+			assertClone(o, key);
+			assertSame(key.children.get(0), c.get(key));
+		}
+	}
+
+	static class Key {
+		String name;
+
+		Key(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Objects.equals(name, ((Key) o).name);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(name);
+		}
+	}
+
+	static class Root {
+		Key k;
+		HashMap<Key, String> m = new HashMap<>();
+		Set<Key> s = new HashSet<>();
+	}
+
+	@Test
+	public void iterativeHashesCompleteKeys() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner cloner = new Cloner();
+			cloner.setEngine(engine);
+			cloner.setIterative(true);
+			Root r = new Root();
+			r.k = new Key("k");
+			r.m.put(r.k, "v");
+			r.m.put(new Key("other"), "w");
+			r.s.add(r.k);
+			r.s.add(new Key(null));
+			Root c = cloner.deepClone(r);
+			assertNotSame(r.k, c.k);
+			assertEquals("v", c.m.get(c.k));
+			assertEquals("w", c.m.get(new Key("other")));
+			assertTrue(c.s.contains(c.k));
+			assertEquals(2, c.s.size());
+		}
+	}
+
+	private static class Link {
+		Link next;
+		final List<Link> children = new ArrayList<>();
+		int value;
+	}
+
+	@Test
+	public void iterativeDeepGraphs() {
+		int depth = 200000;
+		Link chain = new Link();
+		Link tree = new Link();
+		Link l = chain;
+		Link t = tree;
+		for (int i = 1; i < depth; i++) {
+			l.next = new Link();
+			l = l.next;
+			l.value = i;
+			Link child = new Link();
+			t.children.add(child);
+			t = child;
+			t.value = i;
+		}
+		LinkedList<Integer> list = new LinkedList<>();
+		for (int i = 0; i < depth; i++) {
+			list.add(i);
+		}
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner cloner = new Cloner();
+			cloner.setEngine(engine);
+			cloner.setIterative(true);
+			cloner.unregisterFastCloner(LinkedList.class);
+
+			Link c = cloner.deepClone(chain);
+			for (int i = 0; i < depth; i++, c = c.next) {
+				assertEquals(i, c.value);
+			}
+			assertNull(c);
+
+			c = cloner.deepClone(tree);
+			for (int i = 0; i < depth - 1; i++) {
+				assertEquals(i, c.value);
+				assertEquals(1, c.children.size());
+				c = c.children.get(0);
+			}
+			assertTrue(c.children.isEmpty());
+
+			assertEquals(list, cloner.deepClone(list));
+		}
+	}
+
+	static class Quote {
+		byte b1 = 1;
+		long l1 = 2;
+		boolean z1 = true;
+		int i1 = 3;
+		char c1 = 'c';
+		double d1 = 4.5;
+		short s1 = 6;
+		float f1 = 7.5f;
+		String symbol = "ABC";
+		byte b2 = 8;
+		volatile long version = 9;
+		boolean z2 = true;
+		int[] levels = {1, 2};
+		short s2 = 10;
+		long l2 = Long.MIN_VALUE;
+		char c2 = Character.MAX_VALUE;
+		final double d2;
+		byte b3 = -1;
+
+		Quote(double d2) {
+			this.d2 = d2;
+		}
+	}
+
+	static class SubQuote extends Quote {
+		byte b4 = 11;
+		int i2 = 12;
+		long l3 = 13;
+
+		SubQuote() {
+			super(Double.NaN);
+		}
+	}
+
+	private static void assertQuote(SubQuote o, SubQuote c) {
+		assertEquals(o.b1, c.b1);
+		assertEquals(o.l1, c.l1);
+		assertEquals(o.z1, c.z1);
+		assertEquals(o.i1, c.i1);
+		assertEquals(o.c1, c.c1);
+		assertEquals(o.d1, c.d1, 0);
+		assertEquals(o.s1, c.s1);
+		assertEquals(o.f1, c.f1, 0);
+		assertSame(o.symbol, c.symbol);
+		assertEquals(o.b2, c.b2);
+		assertEquals(o.version, c.version);
+		assertEquals(o.z2, c.z2);
+		assertArrayEquals(o.levels, c.levels);
+		assertEquals(o.s2, c.s2);
+		assertEquals(o.l2, c.l2);
+		assertEquals(o.c2, c.c2);
+		assertEquals(o.d2, c.d2, 0);
+		assertEquals(o.b3, c.b3);
+		assertEquals(o.b4, c.b4);
+		assertEquals(o.i2, c.i2);
+		assertEquals(o.l3, c.l3);
+	}
+
+	@Test
+	public void primitiveFields() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner cloner = new Cloner();
+			cloner.setEngine(engine);
+			SubQuote o = new SubQuote();
+			o.i1 = -5;
+			o.z1 = false;
+			SubQuote c = cloner.deepClone(o);
+			assertQuote(o, c);
+			assertNotSame(o.levels, c.levels);
+			c = cloner.shallowClone(o);
+			assertQuote(o, c);
+			assertSame(o.levels, c.levels);
+		}
+	}
+
+	static final class Cell {
+		int value;
+		Object payload;
+
+		Cell(int value, Object payload) {
+			this.value = value;
+			this.payload = payload;
+		}
+	}
+
+	@Test
+	public void arrays() {
+		for (boolean iterative : new boolean[]{false, true}) {
+			Cloner cloner = new Cloner();
+			cloner.setIterative(iterative);
+			Cell shared = new Cell(1, new int[]{1, 2});
+			Cell[][] grid = {{shared, null, new Cell(2, "x")}, {shared}};
+			grid[1] = grid[0];
+			Object[] mixed = {shared, grid, "s", new ArrayList<>(List.of(3)), new long[][]{{4L}}, null};
+			Node[] nodes = {new Node(1, "n"), null};
+
+			Object[] c = cloner.deepClone(new Object[]{mixed, nodes});
+			Object[] cm = (Object[]) c[0];
+			Cell[][] cg = (Cell[][]) cm[1];
+			assertNotSame(mixed, cm);
+			assertNotSame(shared, cm[0]);
+			assertSame(cm[0], cg[0][0]);
+			assertSame(cg[0], cg[1]);
+			assertNull(cg[0][1]);
+			assertEquals(2, cg[0][2].value);
+			assertArrayEquals(new int[]{1, 2}, (int[]) cg[0][0].payload);
+			assertNotSame(shared.payload, cg[0][0].payload);
+			assertSame("s", cm[2]);
+			assertEquals(List.of(3), cm[3]);
+			assertNotSame(mixed[3], cm[3]);
+			assertEquals(4L, ((long[][]) cm[4])[0][0]);
+			assertNotSame(((long[][]) mixed[4])[0], ((long[][]) cm[4])[0]);
+			assertNull(cm[5]);
+			assertEquals(Node[].class, c[1].getClass());
+			assertNotSame(nodes[0], ((Node[]) c[1])[0]);
+
+			Object[] shallow = cloner.shallowClone(mixed);
+			assertNotSame(mixed, shallow);
+			assertSame(mixed[1], shallow[1]);
+		}
+	}
+}
@@ -0,0 +1,353 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.CloningException;
+import com.rits.cloning.CloningProcessor;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class TestCloningProcessor {
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+	private final Cloner cloner = new Cloner();
+
+	@After
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	static class Message {
+		final int id;
+		final List<Integer> payload;
+
+		Message(int id) {
+			this.id = id;
+			this.payload = new ArrayList<>(List.of(id, id + 1));
+		}
+	}
+
+	static class Failing {
+	}
+
+	private static class Collector implements Flow.Subscriber<Message> {
+		final List<Message> received = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch terminated = new CountDownLatch(1);
+		volatile Throwable error;
+		Flow.Subscription subscription;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(Message item) {
+			received.add(item);
+			subscription.request(1);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			terminated.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			terminated.countDown();
+		}
+	}
+
+	@Test
+	public void clonesInOrder() throws InterruptedException {
+		CloningProcessor<Message> processor = new CloningProcessor<>(cloner, executor, 3, 8);
+		Collector collector = new Collector();
+		processor.subscribe(collector);
+		List<Message> sent = new ArrayList<>();
+		try (SubmissionPublisher<Message> publisher = new SubmissionPublisher<>(executor, 16)) {
+			publisher.subscribe(processor);
+			for (int i = 0; i < 1000; i++) {
+				Message m = new Message(i);
+				sent.add(m);
+				publisher.submit(m);
+			}
+		}
+		assertTrue(collector.terminated.await(10, TimeUnit.SECONDS));
+		assertNull(collector.error);
+		assertEquals(sent.size(), collector.received.size());
+		for (int i = 0; i < sent.size(); i++) {
+			Message clone = collector.received.get(i);
+			assertEquals(i, clone.id);
+			assertNotSame(sent.get(i), clone);
+			assertNotSame(sent.get(i).payload, clone.payload);
+			assertEquals(sent.get(i).payload, clone.payload);
+		}
+	}
+
+	@Test
+	public void requestsAtMostTheWindow() throws InterruptedException {
+		CloningProcessor<Message> processor = new CloningProcessor<>(cloner, executor, 2, 5);
+		AtomicLong requested = new AtomicLong();
+		processor.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+				requested.addAndGet(n);
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+		assertEquals(5, requested.get());
+		for (int i = 0; i < 5; i++) processor.onNext(new Message(i));
+
+		Collector collector = new Collector();
+		processor.subscribe(collector);
+		// the subscriber requests one item at a time, each published item frees a slot of the window
+		for (int i = 0; i < 50 && collector.received.size() < 5; i++) Thread.sleep(20);
+		assertEquals(5, collector.received.size());
+		assertEquals(10, requested.get());
+		processor.onComplete();
+		assertTrue(collector.terminated.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void cloningErrorsCancelUpstream() throws InterruptedException {
+		cloner.registerFastCloner(Failing.class, (t, c, clones) -> {
+			throw new CloningException("failed");
+		});
+		CloningProcessor<Object> processor = new CloningProcessor<>(cloner, executor, 1, 4);
+		AtomicLong cancelled = new AtomicLong();
+		processor.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+				cancelled.incrementAndGet();
+			}
+		});
+		CountDownLatch failed = new CountDownLatch(1);
+		List<Object> received = Collections.synchronizedList(new ArrayList<>());
+		processor.subscribe(new Flow.Subscriber<Object>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(Object item) {
+				received.add(item);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				assertEquals("failed", throwable.getMessage());
+				failed.countDown();
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+		processor.onNext(new Message(1));
+		processor.onNext(new Failing());
+		processor.onNext(new Message(2));
+		assertTrue(failed.await(10, TimeUnit.SECONDS));
+		assertEquals(1, received.size());
+		assertEquals(1, cancelled.get());
+	}
+
+	static class Blocking {
+	}
+
+	private static class Unbounded implements Flow.Subscriber<Object> {
+		final CountDownLatch failed = new CountDownLatch(1);
+		Flow.Subscription subscription;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(Object item) {
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			failed.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+		}
+	}
+
+	/**
+	 * registers a fast cloner for Blocking which waits for release, the first clone fails if failFirst
+	 *
+	 * @return the number of Blocking instances cloned so far
+	 */
+	private AtomicLong blockingCloner(CountDownLatch started, CountDownLatch release, boolean failFirst) {
+		AtomicLong cloned = new AtomicLong();
+		cloner.registerFastCloner(Blocking.class, (t, c, clones) -> {
+			started.countDown();
+			try {
+				assertTrue(release.await(10, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				throw new CloningException("interrupted", e);
+			}
+			if (cloned.incrementAndGet() == 1 && failFirst) throw new CloningException("failed");
+			return new Blocking();
+		});
+		return cloned;
+	}
+
+	private CloningProcessor<Object> blockingProcessor() {
+		CloningProcessor<Object> processor = new CloningProcessor<>(cloner, executor, 1, 8);
+		processor.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+		return processor;
+	}
+
+	@Test
+	public void cancelDropsTheQueuedItems() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicLong cloned = blockingCloner(started, release, false);
+		CloningProcessor<Object> processor = blockingProcessor();
+		Unbounded subscriber = new Unbounded();
+		processor.subscribe(subscriber);
+		for (int i = 0; i < 5; i++) processor.onNext(new Blocking());
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		subscriber.subscription.cancel();
+		processor.onNext(new Blocking());
+		release.countDown();
+		Thread.sleep(100);
+		// only the item being cloned when cancelling
+		assertEquals(1, cloned.get());
+	}
+
+	@Test
+	public void cloningErrorsDropTheQueuedItems() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicLong cloned = blockingCloner(started, release, true);
+		CloningProcessor<Object> processor = blockingProcessor();
+		Unbounded subscriber = new Unbounded();
+		processor.subscribe(subscriber);
+		for (int i = 0; i < 5; i++) processor.onNext(new Blocking());
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		release.countDown();
+		assertTrue(subscriber.failed.await(10, TimeUnit.SECONDS));
+		processor.onNext(new Blocking());
+		Thread.sleep(100);
+		assertEquals(1, cloned.get());
+	}
+
+	@Test
+	public void nonPositiveRequestsFailImmediately() throws InterruptedException {
+		CloningProcessor<Object> processor = new CloningProcessor<>(cloner, executor, 1, 4);
+		AtomicLong cancelled = new AtomicLong();
+		processor.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+				cancelled.incrementAndGet();
+			}
+		});
+		processor.onNext(new Message(1));
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		List<Object> received = Collections.synchronizedList(new ArrayList<>());
+		processor.subscribe(new Flow.Subscriber<Object>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(0);
+				subscription.request(1);
+			}
+
+			@Override
+			public void onNext(Object item) {
+				received.add(item);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				errors.add(throwable);
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+		// signalled at once, without waiting for upstream to terminate
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0) instanceof IllegalArgumentException);
+		assertEquals(1, cancelled.get());
+		processor.onNext(new Message(2));
+		processor.onComplete();
+		Thread.sleep(100);
+		assertEquals(1, errors.size());
+		assertTrue(received.isEmpty());
+	}
+
+	@Test
+	public void iteratorAndStream() {
+		List<Message> sent = IntStream.range(0, 500).mapToObj(Message::new).collect(Collectors.toList());
+		Iterator<Message> it = CloningProcessor.iterator(sent.iterator(), cloner, executor, 4, 16);
+		for (Message m : sent) {
+			assertTrue(it.hasNext());
+			Message clone = it.next();
+			assertEquals(m.id, clone.id);
+			assertNotSame(m, clone);
+		}
+		assertFalse(it.hasNext());
+
+		boolean[] closed = {false};
+		try (Stream<Message> clones = CloningProcessor.stream(sent.stream().onClose(() -> closed[0] = true), cloner, executor, 2, 8)) {
+			assertEquals(sent.stream().map(m -> m.id).collect(Collectors.toList()), clones.map(m -> m.id).collect(Collectors.toList()));
+		}
+		assertTrue(closed[0]);
+
+		cloner.registerFastCloner(Failing.class, (t, c, clones) -> {
+			throw new CloningException("failed");
+		});
+		Iterator<Object> failing = CloningProcessor.iterator(List.<Object>of(new Failing()).iterator(), cloner, executor, 1, 1);
+		try {
+			failing.next();
+			fail();
+		} catch (CloningException e) {
+			assertEquals("failed", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.ClonerBuilder;
+import com.rits.cloning.CloningEngine;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class TestCompacting {
+	static class Entry {
+		final StringBuilder text = new StringBuilder(1000);
+		final Vector<Entry> children = new Vector<>(100);
+		final Names names = new Names();
+	}
+
+	static class Names extends ArrayList<String> {
+	}
+
+	private static Entry entry() {
+		Entry e = new Entry();
+		e.text.append("abc");
+		e.children.add(new Entry());
+		e.names.add("x");
+		e.names.add("y");
+		return e;
+	}
+
+	@Test
+	public void trims() {
+		Cloner cloner = new Cloner();
+		cloner.setCompacting(true);
+		Entry e = entry();
+		Entry clone = cloner.deepClone(e);
+		assertEquals("abc", clone.text.toString());
+		assertEquals(3, clone.text.capacity());
+		assertEquals(1, clone.children.capacity());
+		assertEquals(0, clone.children.get(0).children.capacity());
+		assertNotSame(e.children.get(0), clone.children.get(0));
+		assertEquals(Arrays.asList("x", "y"), clone.names);
+		assertEquals(1000, e.text.capacity());
+		clone.names.add("z");
+		clone.text.append("d");
+		assertEquals("abcd", clone.text.toString());
+	}
+
+	@Test
+	public void trimsIteratively() {
+		Cloner cloner = new ClonerBuilder().compacting(true).iterative(true).build();
+		Entry e = entry();
+		e.children.get(0).children.add(e);
+		Entry clone = cloner.deepClone(e);
+		assertEquals(1, clone.children.capacity());
+		Entry child = clone.children.get(0);
+		assertNotSame(e.children.get(0), child);
+		assertSame(clone, child.children.get(0));
+		assertEquals(Arrays.asList("x", "y"), clone.names);
+	}
+
+	@Test
+	public void doesntTrimByDefault() {
+		Entry clone = new Cloner().deepClone(entry());
+		assertEquals(1000, clone.text.capacity());
+		assertEquals(100, clone.children.capacity());
+	}
+
+	@Test
+	public void presizedMapsAndSets() {
+		Cloner cloner = new Cloner();
+		Map<Integer, String> map = new HashMap<>();
+		Set<Integer> set = new HashSet<>();
+		Map<Integer, String> linked = new LinkedHashMap<>();
+		Map<Integer, String> concurrent = new ConcurrentHashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			map.put(i, "v" + i);
+			set.add(i);
+			linked.put(999 - i, "v" + i);
+			concurrent.put(i, "v" + i);
+		}
+		assertEquals(map, cloner.deepClone(map));
+		assertEquals(set, cloner.deepClone(set));
+		assertEquals(new ArrayList<>(linked.keySet()), new ArrayList<>(cloner.deepClone(linked).keySet()));
+		assertEquals(concurrent, cloner.deepClone(concurrent));
+	}
+
+	static class Holder {
+		List<String> list = new ArrayList<>();
+		Set<Integer> set = new HashSet<>();
+		Map<String, Entry> map = new HashMap<>();
+	}
+
+	@Test
+	public void immutableCollections() {
+		Cloner cloner = new Cloner();
+		cloner.setCompactImmutableCollections(true);
+		assertTrue(cloner.isCompactImmutableCollections());
+		Holder h = new Holder();
+		h.list.addAll(Arrays.asList("a", "b", "c"));
+		h.set.addAll(Arrays.asList(1, 2, 3));
+		Entry e = entry();
+		h.map.put("e", e);
+		h.map.put("f", e);
+		Holder clone = cloner.deepClone(h);
+		assertEquals(h.list, clone.list);
+		assertEquals(h.set, clone.set);
+		assertEquals(h.map.keySet(), clone.map.keySet());
+		assertNotSame(e, clone.map.get("e"));
+		assertSame(clone.map.get("e"), clone.map.get("f"));
+		try {
+			clone.list.add("d");
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			clone.map.remove("e");
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+		// documented: unlike the originals, the immutable collections don't accept null queries
+		assertFalse(h.set.contains(null));
+		try {
+			clone.set.contains(null);
+			fail();
+		} catch (NullPointerException expected) {
+		}
+		try {
+			clone.map.get(null);
+			fail();
+		} catch (NullPointerException expected) {
+		}
+	}
+
+	@Test
+	public void nullsAndEmptiesStayMutable() {
+		Cloner cloner = new ClonerBuilder().compactImmutableCollections(true).build();
+		Holder h = new Holder();
+		h.list.add(null);
+		h.map.put("e", null);
+		Holder clone = cloner.deepClone(h);
+		assertEquals(h.list, clone.list);
+		assertEquals(h.map, clone.map);
+		clone.list.add("a");
+		clone.set.add(1);
+		clone.map.put("f", null);
+	}
+
+	static class Concrete {
+		ArrayList<String> arrayList = new ArrayList<>(Arrays.asList("a", "b"));
+		HashSet<Integer> hashSet = new HashSet<>(Arrays.asList(1, 2));
+		HashMap<String, String> hashMap = new HashMap<>();
+		// the same collection referenced by a field of an interface type
+		List<String> list = arrayList;
+		Object any = new HashMap<>(hashMap);
+	}
+
+	@Test
+	public void onlyFieldsOfInterfaceTypesReferenceImmutableCollections() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			for (boolean iterative : new boolean[]{false, true}) {
+				Cloner cloner = new ClonerBuilder().compactImmutableCollections(true).engine(engine).iterative(iterative).build();
+				Concrete c = new Concrete();
+				c.hashMap.put("k", "v");
+				for (Concrete clone : Arrays.asList(cloner.deepClone(c), cloner.deepCloneParallel(c, ForkJoinPool.commonPool()))) {
+					assertEquals(ArrayList.class, clone.arrayList.getClass());
+					assertEquals(HashSet.class, clone.hashSet.getClass());
+					assertEquals(HashMap.class, clone.hashMap.getClass());
+					assertEquals(c.arrayList, clone.list);
+					assertEquals(c.any, clone.any);
+					clone.arrayList.add("c");
+					clone.hashSet.add(3);
+					clone.hashMap.put("k2", "v2");
+				}
+			}
+		}
+		Holder h = new Holder();
+		h.list.add("a");
+		Map<String, Object> m = new HashMap<>();
+		m.put("l", new ArrayList<>(Arrays.asList("x")));
+		Cloner cloner = new ClonerBuilder().compactImmutableCollections(true).build();
+		Holder clone = cloner.deepClone(h);
+		assertEquals(List.of("a").getClass(), clone.list.getClass());
+		// values of a map are elements, they get ordinary clones
+		assertEquals(ArrayList.class, ((List<?>) cloner.deepClone(m).get("l")).getClass());
+	}
+
+	@Test
+	public void persistentTakesPrecedence() {
+		Cloner cloner = new Cloner();
+		cloner.setCompactImmutableCollections(true);
+		cloner.setPersistentCollections(true);
+		List<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+		List<String> clone = cloner.deepClone(list);
+		assertEquals(list, clone);
+		assertNotEquals(List.of("a").getClass(), clone.getClass());
+		cloner.setPersistentCollections(false);
+		assertEquals(List.of("a", "b").getClass(), cloner.deepClone(list).getClass());
+	}
+}
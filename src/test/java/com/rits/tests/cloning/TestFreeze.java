@@ -0,0 +1,112 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.ClonerBuilder;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class TestFreeze {
+	static class Price {
+		long amount;
+		final List<String> tags = new ArrayList<>();
+	}
+
+	static class PriceTable {
+		final Map<String, Price> prices = new HashMap<>();
+		final Price[] history = {new Price(), null};
+	}
+
+	static class Order {
+		PriceTable table;
+		Price price;
+		final List<Price> lines = new ArrayList<>();
+	}
+
+	private static PriceTable table() {
+		PriceTable table = new PriceTable();
+		for (int i = 0; i < 10; i++) table.prices.put("p" + i, new Price());
+		return table;
+	}
+
+	private static Order order(PriceTable table) {
+		Order order = new Order();
+		order.table = table;
+		order.price = table.prices.get("p1");
+		order.lines.add(table.history[0]);
+		order.lines.add(new Price());
+		return order;
+	}
+
+	@Test
+	public void frozenGraphsAreShared() {
+		Cloner cloner = new Cloner();
+		PriceTable table = table();
+		cloner.registerFrozenGraph(table);
+		Order order = order(table);
+		Order clone = cloner.deepClone(order);
+		assertNotSame(order, clone);
+		assertSame(table, clone.table);
+		assertSame(order.price, clone.price);
+		assertSame(order.price.tags, clone.price.tags);
+		assertNotSame(order.lines, clone.lines);
+		assertSame(order.lines.get(0), clone.lines.get(0));
+		assertNotSame(order.lines.get(1), clone.lines.get(1));
+		assertSame(table, cloner.deepClone(table));
+		assertSame(table.prices, cloner.deepClone(table.prices));
+	}
+
+	@Test
+	public void allCloningModes() {
+		PriceTable table = table();
+		Cloner iterative = new ClonerBuilder().iterative(true).build();
+		iterative.registerFrozenGraph(table);
+		Order order = order(table);
+		assertSame(table.history[0], iterative.deepClone(order).lines.get(0));
+		assertSame(table, iterative.deepCloneTree(order).table);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			assertSame(order.price, iterative.deepCloneParallel(order, pool).price);
+		} finally {
+			pool.shutdown();
+		}
+		assertSame(table, iterative.deepCloneAll(List.of(order, order)).get(1).table);
+	}
+
+	@Test
+	public void freezingIsIncremental() {
+		Cloner cloner = new Cloner();
+		PriceTable a = table();
+		PriceTable b = table();
+		cloner.registerFrozenGraph(a);
+		cloner.registerFrozenGraph(b);
+		cloner.registerFrozenGraph(a);
+		cloner.registerFrozenGraph(null);
+		assertSame(a, cloner.deepClone(a));
+		assertSame(b.prices.get("p3"), cloner.deepClone(b.prices.get("p3")));
+		assertNotSame(table(), cloner.deepClone(table()));
+	}
+
+	@Test
+	public void frozenObjectsAreWeaklyReferenced() throws InterruptedException {
+		Cloner cloner = new Cloner();
+		PriceTable table = table();
+		cloner.registerFrozenGraph(table);
+		WeakReference<PriceTable> ref = new WeakReference<>(table);
+		table = null;
+		for (int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(ref.get());
+		// rebuilding the registry drops the collected objects
+		cloner.registerFrozenGraph(new Price());
+	}
+}
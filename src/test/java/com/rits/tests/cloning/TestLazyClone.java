@@ -0,0 +1,144 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestLazyClone {
+	private final Cloner cloner = new Cloner();
+
+	static class Value {
+		int v;
+		Value other;
+
+		Value(int v) {
+			this.v = v;
+		}
+	}
+
+	@Test
+	public void listClonesElementsOnRead() {
+		Value a = new Value(1);
+		Value b = new Value(2);
+		b.other = a;
+		List<Value> original = new ArrayList<>(List.of(a, b));
+		List<Value> lazy = cloner.lazyClone(original);
+
+		assertEquals(2, lazy.size());
+		Value ca = lazy.get(0);
+		assertNotSame(a, ca);
+		assertSame(ca, lazy.get(0));
+		// references between elements are kept
+		assertSame(ca, lazy.get(1).other);
+		assertTrue(lazy.contains(ca));
+		assertEquals(1, lazy.indexOf(lazy.get(1)));
+		ca.v = 10;
+		assertEquals(1, a.v);
+
+		lazy.add(new Value(3));
+		assertEquals(2, original.size());
+		assertEquals(3, lazy.size());
+		// the elements handed out before the first modification are the ones of the clone
+		assertSame(ca, lazy.get(0));
+		assertEquals(10, lazy.get(0).v);
+		assertNotSame(b, lazy.get(1));
+
+		Iterator<Value> it = cloner.lazyClone(original).iterator();
+		assertNotSame(a, it.next());
+		it.remove();
+		assertEquals(2, original.size());
+		assertNotSame(b, it.next());
+		assertFalse(it.hasNext());
+	}
+
+	@Test
+	public void setAndMap() {
+		Value a = new Value(1);
+		Set<Value> set = new HashSet<>(List.of(a));
+		Set<Value> lazySet = cloner.lazyClone(set);
+		Value ca = lazySet.iterator().next();
+		assertNotSame(a, ca);
+		// identity based equals, the clone is found anyway
+		assertTrue(lazySet.contains(ca));
+		assertTrue(lazySet.remove(ca));
+		assertTrue(lazySet.isEmpty());
+		assertEquals(1, set.size());
+
+		Map<String, Value> map = new HashMap<>();
+		map.put("a", a);
+		map.put("b", new Value(2));
+		Map<String, Value> lazyMap = cloner.lazyClone(map);
+		Value clone = lazyMap.get("a");
+		assertNotSame(a, clone);
+		assertSame(clone, lazyMap.get("a"));
+		assertTrue(lazyMap.containsValue(clone));
+		assertNull(lazyMap.get("c"));
+		for (Map.Entry<String, Value> e : lazyMap.entrySet()) {
+			assertNotSame(map.get(e.getKey()), e.getValue());
+		}
+		lazyMap.put("c", new Value(3));
+		assertEquals(2, map.size());
+		assertEquals(3, lazyMap.size());
+		assertSame(clone, lazyMap.get("a"));
+		assertSame(a, map.get("a"));
+
+		assertNull(cloner.lazyClone((List<?>) null));
+	}
+
+	@Test
+	public void setIteratorKeepsIteratingAfterRemove() {
+		Set<Value> set = new HashSet<>(List.of(new Value(1), new Value(2), new Value(3)));
+		Set<Value> lazySet = cloner.lazyClone(set);
+		Iterator<Value> it = lazySet.iterator();
+		Value first = it.next();
+		it.remove();
+		Value second = it.next();
+		Value third = it.next();
+		assertFalse(it.hasNext());
+		assertEquals(2, lazySet.size());
+		assertFalse(lazySet.contains(first));
+		assertTrue(lazySet.contains(second));
+		assertTrue(lazySet.contains(third));
+		assertEquals(3, set.size());
+	}
+
+	private static Map<String, Value> values() {
+		Map<String, Value> map = new HashMap<>();
+		map.put("a", new Value(1));
+		map.put("b", new Value(2));
+		map.put("c", new Value(3));
+		return map;
+	}
+
+	@Test
+	public void mapEntriesSetValueWhileIterating() {
+		Map<String, Value> map = values();
+		Map<String, Value> lazyMap = cloner.lazyClone(map);
+		for (Map.Entry<String, Value> e : lazyMap.entrySet()) {
+			e.setValue(new Value(e.getValue().v * 10));
+		}
+		assertEquals(10, lazyMap.get("a").v);
+		assertEquals(20, lazyMap.get("b").v);
+		assertEquals(30, lazyMap.get("c").v);
+		assertEquals(1, map.get("a").v);
+	}
+
+	@Test
+	public void mapEntriesRemoveIf() {
+		Map<String, Value> map = values();
+		Map<String, Value> lazyMap = cloner.lazyClone(map);
+		assertTrue(lazyMap.entrySet().removeIf(e -> e.getValue().v != 2));
+		assertEquals(1, lazyMap.size());
+		assertEquals(2, lazyMap.get("b").v);
+		assertEquals(3, map.size());
+	}
+}
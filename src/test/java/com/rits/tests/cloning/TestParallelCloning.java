@@ -0,0 +1,263 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestParallelCloning {
+
+	static class Item {
+		int id;
+		Item next;
+		Item peer;
+		List<Item> children = new ArrayList<>();
+		int[] values;
+	}
+
+	static class Graph {
+		Item[] items;
+		List<Item> list;
+		Map<Integer, Item> map = new HashMap<>();
+		Object[] wide;
+	}
+
+	private static Graph graph(int n) {
+		Graph g = new Graph();
+		g.items = new Item[n];
+		for (int i = 0; i < n; i++) {
+			Item item = new Item();
+			item.id = i;
+			item.values = new int[]{i, -i};
+			g.items[i] = item;
+		}
+		for (int i = 0; i < n; i++) {
+			Item item = g.items[i];
+			// a cycle through all items plus references shared between far apart items
+			item.next = g.items[(i + 1) % n];
+			item.peer = g.items[(int) (i * 7919L % n)];
+			if (i % 10 == 0) {
+				for (int j = 1; j < 4; j++) item.children.add(g.items[(i + j * 31) % n]);
+			}
+		}
+		g.list = new ArrayList<>(List.of(g.items).subList(0, n / 2));
+		for (int i = 0; i < n; i += 3) g.map.put(i, g.items[i]);
+		g.wide = new Object[]{g.items[0], g.items[n - 1], g.items, g.list};
+		return g;
+	}
+
+	@Test
+	public void preservesSharingAndCycles() {
+		Cloner cloner = new Cloner();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int round = 0; round < 5; round++) {
+				int n = 100_000;
+				Graph g = graph(n);
+				Graph c = cloner.deepCloneParallel(g, pool);
+				assertNotSame(g, c);
+				for (int i = 0; i < n; i++) {
+					Item item = c.items[i];
+					assertNotSame(g.items[i], item);
+					assertEquals(i, item.id);
+					assertSame(c.items[(i + 1) % n], item.next);
+					assertSame(c.items[(int) (i * 7919L % n)], item.peer);
+					assertNotSame(g.items[i].values, item.values);
+					assertArrayEquals(g.items[i].values, item.values);
+					assertEquals(g.items[i].children.size(), item.children.size());
+					for (int j = 0; j < item.children.size(); j++) {
+						assertSame(c.items[(i + (j + 1) * 31) % n], item.children.get(j));
+					}
+				}
+				assertEquals(n / 2, c.list.size());
+				for (int i = 0; i < c.list.size(); i++) {
+					assertSame(c.items[i], c.list.get(i));
+				}
+				assertEquals(g.map.size(), c.map.size());
+				for (Map.Entry<Integer, Item> e : c.map.entrySet()) {
+					assertSame(c.items[e.getKey()], e.getValue());
+				}
+				assertSame(c.items[0], c.wide[0]);
+				assertSame(c.items, c.wide[2]);
+				assertSame(c.list, c.wide[3]);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	static class Key {
+		final String name;
+
+		Key(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Objects.equals(name, ((Key) o).name);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(name);
+		}
+	}
+
+	static class Holder {
+		Key key;
+		Map<Key, Integer> map = new HashMap<>();
+	}
+
+	@Test
+	public void hashesCompleteKeys() {
+		Cloner cloner = new Cloner();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			int n = 50_000;
+			Holder[] holders = new Holder[n];
+			for (int i = 0; i < n; i++) {
+				holders[i] = new Holder();
+				holders[i].key = new Key("k" + i);
+			}
+			for (int i = 0; i < n; i++) {
+				// its own key, which is pending when the map is cloned, and a key likely pending in another task
+				holders[i].map.put(holders[i].key, i);
+				holders[i].map.put(holders[(int) (i * 7919L % n)].key, -i);
+			}
+			for (int round = 0; round < 3; round++) {
+				Holder[] c = cloner.deepCloneParallel(holders, pool);
+				for (int i = 0; i < n; i++) {
+					Holder h = c[i];
+					int peer = (int) (i * 7919L % n);
+					assertNotSame(holders[i].key, h.key);
+					assertEquals(holders[i].map.size(), h.map.size());
+					assertEquals(Integer.valueOf(peer == i ? -i : i), h.map.get(h.key));
+					assertEquals(Integer.valueOf(-i), h.map.get(c[peer].key));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	static class Payload {
+		int value;
+	}
+
+	static class LinkedKey extends Key {
+		// referenced by this key only
+		Payload payload = new Payload();
+		// keys of other holders, which reference this key again
+		Map<LinkedKey, Integer> peers = new HashMap<>();
+
+		LinkedKey(String name) {
+			super(name);
+		}
+	}
+
+	private static LinkedKey[] linkedKeys(int n, boolean peers) {
+		LinkedKey[] keys = new LinkedKey[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = new LinkedKey("k" + i);
+			keys[i].payload.value = i;
+		}
+		if (peers) {
+			for (int i = 0; i < n; i++) {
+				// cycles between the keys, whose clones are hashed by several tasks
+				LinkedKey peer = keys[(int) (i * 7919L % n)];
+				keys[i].peers.put(peer, i);
+				peer.peers.put(keys[i], -i);
+			}
+		}
+		return keys;
+	}
+
+	private static Map<?, ?>[] maps(LinkedKey[] keys) {
+		int n = keys.length;
+		Map<?, ?>[] maps = new Map<?, ?>[n];
+		for (int i = 0; i < n; i++) {
+			Map<LinkedKey, Integer> map = new HashMap<>();
+			map.put(keys[i], i);
+			map.put(keys[(i + n / 2) % n], -i);
+			maps[i] = map;
+		}
+		return maps;
+	}
+
+	private static void assertMaps(int n, LinkedKey[] keys, LinkedKey[] clonedKeys, Map<?, ?>[] clonedMaps) {
+		for (int i = 0; i < n; i++) {
+			assertNotSame(keys[i], clonedKeys[i]);
+			assertEquals(i, clonedKeys[i].payload.value);
+			assertEquals(Integer.valueOf(i), clonedMaps[i].get(clonedKeys[i]));
+			assertEquals(Integer.valueOf(-i), clonedMaps[i].get(clonedKeys[(i + n / 2) % n]));
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void fillsSharedKeysOnce() {
+		final AtomicInteger payloads = new AtomicInteger();
+		Cloner cloner = new Cloner() {
+			@Override
+			protected <T> T cloneInternal(T o, Map<Object, Object> clones) {
+				if (o instanceof Payload) payloads.incrementAndGet();
+				return super.cloneInternal(o, clones);
+			}
+		};
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			int n = 20_000;
+			LinkedKey[] keys = linkedKeys(n, false);
+			Map<?, ?>[] maps = maps(keys);
+			for (int round = 0; round < 3; round++) {
+				payloads.set(0);
+				Object[] c = cloner.deepCloneParallel(new Object[]{keys, maps}, pool);
+				assertEquals(n, payloads.get());
+				assertMaps(n, keys, (LinkedKey[]) c[0], (Map<?, ?>[]) c[1]);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void clonesHashCyclesLikeOnOneThread() {
+		Cloner cloner = new Cloner();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			int n = 20_000;
+			LinkedKey[] keys = linkedKeys(n, true);
+			Map<?, ?>[] maps = maps(keys);
+			for (int round = 0; round < 3; round++) {
+				// tasks needing each other's keys complete clone the graph on one thread instead of using half-filled keys
+				Object[] c = cloner.deepCloneParallel(new Object[]{keys, maps}, pool);
+				// like on one thread, a peer may be hashed while its name is still being filled, so the peers aren't checked
+				assertMaps(n, keys, (LinkedKey[]) c[0], (Map<?, ?>[]) c[1]);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void smallGraphsAndNulls() {
+		Cloner cloner = new Cloner();
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			assertNull(cloner.deepCloneParallel(null, pool));
+			assertSame("s", cloner.deepCloneParallel("s", pool));
+			Graph c = cloner.deepCloneParallel(graph(10), pool);
+			assertSame(c.items[1], c.items[0].next);
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
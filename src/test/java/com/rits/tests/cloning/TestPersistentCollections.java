@@ -0,0 +1,262 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.ClonerBuilder;
+import com.rits.cloning.CloningEngine;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class TestPersistentCollections {
+	private final Cloner cloner = new Cloner();
+
+	@Before
+	public void persistent() {
+		cloner.setPersistentCollections(true);
+	}
+
+	// equal hash codes for different keys
+	static final class Colliding {
+		final int id;
+
+		Colliding(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return id % 3;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Colliding && ((Colliding) o).id == id;
+		}
+	}
+
+	static class Holder {
+		final List<String> list = new ArrayList<>();
+		final Map<Integer, String> map = new HashMap<>();
+	}
+
+	@Test
+	public void maps() {
+		Map<Integer, String> map = new HashMap<>();
+		for (int i = 0; i < 10000; i++) map.put(i, "v" + i);
+		Map<Integer, String> clone = cloner.deepClone(map);
+		assertNotSame(map, clone);
+		assertEquals(map, clone);
+		assertEquals(map.hashCode(), clone.hashCode());
+		assertEquals("v42", clone.get(42));
+		assertNull(clone.get(-1));
+		try {
+			clone.put(1, "x");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		assertSame(clone, cloner.deepClone(map));
+
+		map.put(5, "changed");
+		map.remove(6);
+		map.put(10000, "new");
+		Map<Integer, String> next = cloner.deepClone(map);
+		assertEquals(map, next);
+		assertEquals("v5", clone.get(5));
+		assertEquals("v6", clone.get(6));
+		assertFalse(clone.containsKey(10000));
+	}
+
+	@Test
+	public void collisions() {
+		Map<Colliding, Integer> map = new HashMap<>();
+		for (int i = 0; i < 100; i++) map.put(new Colliding(i), i);
+		Map<Colliding, Integer> clone = cloner.deepClone(map);
+		assertEquals(map, clone);
+		map.remove(new Colliding(7));
+		map.put(new Colliding(100), 100);
+		Map<Colliding, Integer> next = cloner.deepClone(map);
+		assertEquals(map, next);
+		assertEquals(Integer.valueOf(7), clone.get(new Colliding(7)));
+		assertNull(next.get(new Colliding(7)));
+	}
+
+	@Test
+	public void lists() {
+		List<Integer> list = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) list.add(i);
+		List<Integer> clone = cloner.deepClone(list);
+		assertEquals(list, clone);
+		assertEquals(Integer.valueOf(4321), clone.get(4321));
+		try {
+			clone.add(1);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		list.set(100, -1);
+		list.add(5000);
+		List<Integer> next = cloner.deepClone(list);
+		assertEquals(list, next);
+		assertEquals(Integer.valueOf(100), clone.get(100));
+		assertEquals(5000, clone.size());
+
+		list.remove(0);
+		assertEquals(list, cloner.deepClone(list));
+	}
+
+	@Test
+	public void sets() {
+		Set<String> set = new HashSet<>();
+		for (int i = 0; i < 1000; i++) set.add("e" + i);
+		Set<String> clone = cloner.deepClone(set);
+		assertEquals(set, clone);
+		assertTrue(clone.contains("e999"));
+		set.remove("e1");
+		set.add("e1000");
+		Set<String> next = cloner.deepClone(set);
+		assertEquals(set, next);
+		assertTrue(clone.contains("e1"));
+		assertFalse(next.contains("e1"));
+	}
+
+	@Test
+	public void mutableElementsAreCloned() {
+		List<Holder> list = new ArrayList<>();
+		for (int i = 0; i < 100; i++) list.add(new Holder());
+		list.get(0).list.add("a");
+		list.get(0).map.put(1, "a");
+		List<Holder> clone = cloner.deepClone(list);
+		assertEquals(100, clone.size());
+		assertNotSame(list.get(0), clone.get(0));
+		assertEquals(List.of("a"), clone.get(0).list);
+		assertEquals(Map.of(1, "a"), clone.get(0).map);
+	}
+
+	@Test
+	public void mutableKeysAreNotSharedBetweenClones() {
+		Map<Object, String> map = new HashMap<>();
+		Set<Object> set = new HashSet<>();
+		for (int i = 0; i < 100; i++) {
+			map.put("k" + i, "v" + i);
+			set.add("e" + i);
+		}
+		final Colliding key = new Colliding(1);
+		final Colliding other = new Colliding(4);
+		map.put(key, "colliding");
+		map.put(other, "other");
+		set.add(key);
+		set.add(other);
+		Map<Object, String> first = cloner.deepClone(map);
+		Map<Object, String> second = cloner.deepClone(map);
+		Set<Object> firstSet = cloner.deepClone(set);
+		Set<Object> secondSet = cloner.deepClone(set);
+		assertEquals(map, second);
+		assertEquals(set, secondSet);
+		for (Object k : first.keySet()) {
+			if (k instanceof Colliding) {
+				for (Object k2 : second.keySet()) assertNotSame(k, k2);
+			}
+		}
+		for (Object e : firstSet) {
+			if (e instanceof Colliding) {
+				for (Object e2 : secondSet) assertNotSame(e, e2);
+			}
+		}
+	}
+
+	static class Typed {
+		ArrayList<String> arrayList;
+		HashMap<String, String> hashMap;
+		HashSet<String> hashSet;
+		List<String> list;
+		Map<String, String> map;
+		Set<String> set;
+		Object any;
+	}
+
+	private static Typed typed() {
+		Typed t = new Typed();
+		t.arrayList = new ArrayList<>(List.of("a", "b"));
+		t.hashMap = new HashMap<>(Map.of("k", "v"));
+		t.hashSet = new HashSet<>(Set.of("e"));
+		// the same collections referenced by fields of interface types too
+		t.list = t.arrayList;
+		t.map = t.hashMap;
+		t.set = t.hashSet;
+		t.any = new ArrayList<>(List.of("x"));
+		return t;
+	}
+
+	@Test
+	public void onlyFieldsOfInterfaceTypesReferencePersistentCollections() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			for (boolean iterative : new boolean[]{false, true}) {
+				Cloner c = new ClonerBuilder().persistentCollections(true).engine(engine).iterative(iterative).build();
+				Typed t = typed();
+				assertTyped(t, c.deepClone(t));
+				assertTyped(t, c.deepCloneParallel(t, ForkJoinPool.commonPool()));
+				assertTyped(t, c.deepCloneAll(List.of(t)).get(0));
+			}
+		}
+	}
+
+	private static void assertTyped(Typed t, Typed clone) {
+		assertEquals(ArrayList.class, clone.arrayList.getClass());
+		assertEquals(HashMap.class, clone.hashMap.getClass());
+		assertEquals(HashSet.class, clone.hashSet.getClass());
+		assertEquals(t.arrayList, clone.arrayList);
+		assertEquals(t.hashMap, clone.hashMap);
+		assertEquals(t.hashSet, clone.hashSet);
+		assertEquals(t.list, clone.list);
+		assertEquals(t.map, clone.map);
+		assertEquals(t.set, clone.set);
+		assertEquals(t.any, clone.any);
+		clone.arrayList.add("c");
+		clone.hashMap.put("k2", "v2");
+		clone.hashSet.add("f");
+	}
+
+	@Test
+	public void fieldsOfInterfaceTypes() {
+		Typed t = new Typed();
+		t.list = new ArrayList<>(List.of("a"));
+		t.map = new HashMap<>(Map.of("k", "v"));
+		t.set = new HashSet<>(Set.of("e"));
+		t.any = new ArrayList<>(List.of("x"));
+		Typed clone = cloner.deepClone(t);
+		assertNotEquals(ArrayList.class, clone.list.getClass());
+		assertNotEquals(HashMap.class, clone.map.getClass());
+		assertNotEquals(HashSet.class, clone.set.getClass());
+		assertNotEquals(ArrayList.class, clone.any.getClass());
+		assertEquals(t.list, clone.list);
+		assertEquals(t.map, clone.map);
+		assertEquals(t.set, clone.set);
+		assertEquals(t.any, clone.any);
+		// elements get ordinary clones
+		List<ArrayList<String>> nested = new ArrayList<>();
+		nested.add(new ArrayList<>(List.of("n")));
+		ArrayList<String> element = cloner.deepClone(nested).get(0);
+		element.add("m");
+	}
+
+	@Test
+	public void disabled() {
+		cloner.setPersistentCollections(false);
+		List<Integer> list = new ArrayList<>(List.of(1, 2));
+		List<Integer> clone = cloner.deepClone(list);
+		assertEquals(ArrayList.class, clone.getClass());
+		clone.add(3);
+	}
+}
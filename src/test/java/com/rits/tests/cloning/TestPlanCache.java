@@ -0,0 +1,263 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.ClonerBuilder;
+import com.rits.cloning.CloningEngine;
+import com.rits.cloning.CloningStrategyFactory;
+import com.rits.cloning.ICloningStrategy;
+import com.rits.cloning.Immutable;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestPlanCache {
+
+	public static class Data {
+		public List<String> values = new ArrayList<>();
+		public Data next;
+	}
+
+	@Immutable
+	static final class Money {
+		final long cents;
+
+		Money(long cents) {
+			this.cents = cents;
+		}
+	}
+
+	static class Entity {
+		@Deprecated
+		String name = "name";
+		UUID id = UUID.randomUUID();
+		TimeUnit unit = TimeUnit.SECONDS;
+		Money price = new Money(10);
+		Object any = new Money(5);
+		Data data = new Data();
+	}
+
+	@Test
+	public void fieldsOfIgnorableFinalTypesAreCopiedByReference() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner cloner = new Cloner();
+			cloner.setEngine(engine);
+			Entity e = new Entity();
+			Entity c = cloner.deepClone(e);
+			assertSame(e.name, c.name);
+			assertSame(e.id, c.id);
+			assertSame(e.unit, c.unit);
+			assertSame(e.price, c.price);
+			assertSame(e.any, c.any);
+			assertNotSame(e.data, c.data);
+
+			// a cloning strategy applies to the pruned fields too
+			cloner.registerCloningStrategy(CloningStrategyFactory.annotatedField(Deprecated.class, ICloningStrategy.Strategy.NULL_INSTEAD_OF_CLONE));
+			assertNull(cloner.deepClone(e).name);
+
+			// types which are no longer ignored aren't pruned
+			cloner = new Cloner();
+			cloner.setEngine(engine);
+			cloner.deepClone(e);
+			cloner.nullInsteadOfClone(UUID.class);
+			assertNull(cloner.deepClone(e).id);
+		}
+	}
+
+	@Test
+	public void overriddenCloneInternalSeesPrunableFields() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner masking = new Cloner() {
+				@Override
+				@SuppressWarnings("unchecked")
+				protected <T> T cloneInternal(T o, java.util.Map<Object, Object> clones) {
+					return o instanceof String ? (T) "masked" : super.cloneInternal(o, clones);
+				}
+			};
+			masking.setEngine(engine);
+			Entity e = new Entity();
+			e.name = "secret";
+			assertEquals("masked", masking.deepClone(e).name);
+		}
+	}
+
+	@Test
+	public void configurationChangesAfterTheFirstClone() {
+		Cloner cloner = new Cloner();
+		Data d = new Data();
+		d.next = new Data();
+		assertNotSame(d.next, cloner.deepClone(d).next);
+
+		cloner.dontClone(Data.class);
+		assertSame(d, cloner.deepClone(d));
+
+		cloner = new Cloner();
+		assertNotSame(d.values, cloner.deepClone(d).values);
+		cloner.registerFastCloner(Data.class, (t, c, clones) -> new Data());
+		assertNull(cloner.deepClone(d).next);
+		cloner.unregisterFastCloner(Data.class);
+		assertNotNull(cloner.deepClone(d).next);
+
+		cloner.nullInsteadOfClone(ArrayList.class);
+		assertNull(cloner.deepClone(d).values);
+	}
+
+	@Test
+	public void doesNotKeepClassLoadersAlive() throws Exception {
+		Cloner cloner = new Cloner();
+		WeakReference<ClassLoader> loader = cloneWithOwnClassLoader(cloner);
+		for (int i = 0; i < 50 && loader.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertNull(loader.get());
+		// the cloner is still usable
+		assertNotNull(cloner.deepClone(new Data()));
+	}
+
+	private WeakReference<ClassLoader> cloneWithOwnClassLoader(Cloner cloner) throws Exception {
+		URL classes = Data.class.getProtectionDomain().getCodeSource().getLocation();
+		URLClassLoader cl = new URLClassLoader(new URL[]{classes}, ClassLoader.getPlatformClassLoader());
+		Class<?> c = cl.loadClass(Data.class.getName());
+		assertNotSame(Data.class, c);
+		Object o = c.getConstructor().newInstance();
+		assertNotSame(o, cloner.deepClone(o));
+		cl.close();
+		return new WeakReference<>(cl);
+	}
+
+	@Test
+	public void doesNotKeepClassLoadersOfFieldValuesAlive() throws Exception {
+		for (CloningEngine engine : CloningEngine.values()) {
+			for (int kind = 0; kind < 3; kind++) {
+				Cloner cloner = new Cloner();
+				cloner.setEngine(engine);
+				WeakReference<ClassLoader> loader = cloneValueOfOwnClassLoader(cloner, kind);
+				for (int i = 0; i < 50 && loader.get() != null; i++) {
+					System.gc();
+					Thread.sleep(20);
+				}
+				assertNull(engine + " " + kind, loader.get());
+			}
+		}
+	}
+
+	/**
+	 * clones an instance of a class of its own class loader referenced by a field, an Optional or an Object[], i.e. from
+	 * the plans of classes of the parent class loaders
+	 */
+	private WeakReference<ClassLoader> cloneValueOfOwnClassLoader(Cloner cloner, int kind) throws Exception {
+		URL classes = Data.class.getProtectionDomain().getCodeSource().getLocation();
+		URLClassLoader cl = new URLClassLoader(new URL[]{classes}, ClassLoader.getPlatformClassLoader());
+		Object o = cl.loadClass(Data.class.getName()).getConstructor().newInstance();
+		for (int i = 0; i < 2; i++) {
+			if (kind == 0) {
+				Holder h = new Holder();
+				h.value = o;
+				assertNotSame(o, cloner.deepClone(h).value);
+			} else if (kind == 1) {
+				assertNotSame(o, cloner.deepClone(Optional.of(o)).get());
+			} else {
+				assertNotSame(o, cloner.deepClone(new Object[]{o})[0]);
+			}
+		}
+		cl.close();
+		return new WeakReference<>(cl);
+	}
+
+	@Test
+	public void doesNotKeepDiscardedClonersAlive() throws Exception {
+		for (CloningEngine engine : CloningEngine.values()) {
+			for (int config = 0; config < 3; config++) {
+				WeakReference<Cloner> cloner = cloneWithDiscardedCloner(engine, config);
+				for (int i = 0; i < 50 && cloner.get() != null; i++) {
+					System.gc();
+					Thread.sleep(20);
+				}
+				assertNull(engine + " " + config, cloner.get());
+			}
+		}
+	}
+
+	static class Graph {
+		Data data = new Data();
+		Object[] array = {new Data(), "s"};
+		List<String> list = new ArrayList<>(List.of("a"));
+		Set<String> set = new HashSet<>(Set.of("b"));
+		Map<String, Data> map = new HashMap<>(Map.of("c", new Data()));
+	}
+
+	private WeakReference<Cloner> cloneWithDiscardedCloner(CloningEngine engine, int config) {
+		ClonerBuilder builder = new ClonerBuilder().engine(engine);
+		if (config == 1) builder.iterative(true).persistentCollections(true).dumpClonedClasses(true);
+		if (config == 2) builder.compactImmutableCollections(true).compacting(true).recycling(4).canonicalizing(16);
+		Cloner cloner = builder.build();
+		Graph g = new Graph();
+		g.data.values.add("v");
+		g.data.next = new Data();
+		assertNotSame(g, cloner.deepClone(g));
+		assertNotSame(g, cloner.deepCloneParallel(g, ForkJoinPool.commonPool()));
+		assertNotSame(g.list, cloner.deepClone(g.list));
+		return new WeakReference<>(cloner);
+	}
+
+	static class Holder {
+		Object value;
+	}
+
+	@Test
+	public void polymorphicFields() {
+		for (CloningEngine engine : CloningEngine.values()) {
+			Cloner cloner = new Cloner();
+			cloner.setEngine(engine);
+			Object[] values = {new Data(), new ArrayList<>(), new int[]{1}, "s", TimeUnit.DAYS, new Money(1), new Entity(),
+					new StringBuilder("sb"), new Object(), new long[]{1}, new Holder(), UUID.randomUUID(), null, new Data()};
+			// the same field sees monomorphic, bimorphic and megamorphic phases
+			for (int round = 0; round < 3; round++) {
+				for (int i = 0; i < values.length; i++) {
+					Holder h = new Holder();
+					h.value = values[i];
+					Object c = cloner.deepClone(h).value;
+					Object v = values[i];
+					if (v == null || v instanceof String || v instanceof TimeUnit || v instanceof Money || v instanceof UUID) {
+						assertSame(v, c);
+					} else {
+						assertNotSame(v, c);
+						assertSame(v.getClass(), c.getClass());
+					}
+					Holder same = new Holder();
+					same.value = values[round];
+					Object sc = cloner.deepClone(same).value;
+					assertSame(values[round].getClass(), sc.getClass());
+				}
+			}
+			// an overridden cloneInternal is still called for every value
+			int[] calls = new int[1];
+			Cloner overriding = new Cloner() {
+				@Override
+				protected <T> T cloneInternal(T o, java.util.Map<Object, Object> clones) {
+					calls[0]++;
+					return super.cloneInternal(o, clones);
+				}
+			};
+			overriding.setEngine(engine);
+			Holder h = new Holder();
+			h.value = new Data();
+			overriding.deepClone(h);
+			assertTrue(calls[0] >= 3);
+		}
+	}
+}
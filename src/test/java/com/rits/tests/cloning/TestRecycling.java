@@ -0,0 +1,191 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import com.rits.cloning.ClonerBuilder;
+import com.rits.cloning.ICloningStrategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestRecycling {
+	static class Request {
+		long id;
+		String path;
+		transient Object session;
+		final List<Item> items = new ArrayList<>();
+		final Map<String, Item> byName = new HashMap<>();
+		Item[] top = new Item[1];
+		Config config;
+	}
+
+	static class Item {
+		int quantity;
+		String name;
+		Request owner;
+	}
+
+	static class Config {
+		String value = "c";
+	}
+
+	private static Request request(long id, int items) {
+		Request r = new Request();
+		r.id = id;
+		r.path = "/r" + id;
+		for (int i = 0; i < items; i++) {
+			Item item = new Item();
+			item.quantity = i;
+			item.name = "i" + i;
+			item.owner = r;
+			r.items.add(item);
+			r.byName.put(item.name, item);
+		}
+		r.top[0] = r.items.isEmpty() ? null : r.items.get(0);
+		return r;
+	}
+
+	private static void assertClone(Request src, Request clone) {
+		assertNotSame(src, clone);
+		assertEquals(src.id, clone.id);
+		assertEquals(src.path, clone.path);
+		assertEquals(src.items.size(), clone.items.size());
+		for (int i = 0; i < src.items.size(); i++) {
+			Item item = clone.items.get(i);
+			assertEquals(i, item.quantity);
+			assertEquals("i" + i, item.name);
+			assertSame(clone, item.owner);
+			assertSame(item, clone.byName.get(item.name));
+		}
+		assertEquals(src.byName.keySet(), clone.byName.keySet());
+	}
+
+	private static Set<Object> objects(Request r) {
+		Set<Object> s = java.util.Collections.newSetFromMap(new IdentityHashMap<>());
+		s.add(r);
+		s.add(r.items);
+		s.add(r.byName);
+		s.addAll(r.items);
+		return s;
+	}
+
+	@Test
+	public void releasedClonesAreReused() {
+		Cloner cloner = new Cloner();
+		cloner.setRecycling(16);
+		cloner.setNullTransient(true);
+		Request first = cloner.deepClone(request(1, 3));
+		first.session = "s";
+		Set<Object> released = objects(first);
+		List<Item> items = first.items;
+		Map<String, Item> byName = first.byName;
+		cloner.release(first);
+		assertNull(first.path);
+		assertEquals(0, first.id);
+		assertNull(first.session);
+		assertNull(first.items);
+		assertTrue(items.isEmpty());
+		assertTrue(byName.isEmpty());
+
+		Request src = request(2, 3);
+		Request second = cloner.deepClone(src);
+		assertClone(src, second);
+		assertNull(second.session);
+		Set<Object> reused = objects(second);
+		reused.retainAll(released);
+		assertEquals(released.size(), reused.size());
+
+		// more items than released ones are allocated
+		Request bigger = request(3, 10);
+		assertClone(bigger, cloner.deepClone(bigger));
+	}
+
+	@Test
+	public void sharedObjectsAreNotReleased() {
+		Cloner cloner = new ClonerBuilder().recycling(4).registerImmutable(Config.class).build();
+		Request src = request(1, 2);
+		src.config = new Config();
+		Item frozen = new Item();
+		frozen.name = "frozen";
+		cloner.registerFrozenGraph(frozen);
+		src.items.add(frozen);
+		Request clone = cloner.deepClone(src);
+		assertSame(frozen, clone.items.get(2));
+		cloner.release(clone);
+		assertEquals("c", src.config.value);
+		assertEquals("frozen", frozen.name);
+		Request next = cloner.deepClone(request(2, 2));
+		assertNotSame(frozen, next.items.get(0));
+		assertNotSame(frozen, next.items.get(1));
+	}
+
+	@Test
+	public void poolsAreBounded() {
+		Cloner cloner = new Cloner();
+		cloner.setRecycling(2);
+		List<Request> clones = new ArrayList<>();
+		for (int i = 0; i < 5; i++) clones.add(cloner.deepClone(request(i, 0)));
+		for (Request r : clones) cloner.release(r);
+		Set<Object> released = java.util.Collections.newSetFromMap(new IdentityHashMap<>());
+		released.addAll(clones);
+		int reused = 0;
+		for (int i = 0; i < 5; i++) {
+			Request src = request(i, 1);
+			Request clone = cloner.deepClone(src);
+			assertClone(src, clone);
+			if (released.contains(clone)) reused++;
+		}
+		assertEquals(2, reused);
+	}
+
+	@Test
+	public void iterativeAndWithoutRecycling() {
+		Cloner cloner = new ClonerBuilder().recycling(8).iterative(true).build();
+		Request src = request(1, 5);
+		Request clone = cloner.deepClone(src);
+		cloner.release(clone);
+		assertClone(src, cloner.deepClone(src));
+
+		Cloner plain = new Cloner();
+		Request c = plain.deepClone(src);
+		plain.release(c);
+		assertClone(src, c);
+	}
+
+	@Test
+	public void refusedWhileClonesMayShareObjects() {
+		Cloner strategies = new Cloner();
+		strategies.setRecycling(4);
+		strategies.registerCloningStrategy((toBeCloned, field) -> "config".equals(field.getName())
+				? ICloningStrategy.Strategy.SAME_INSTANCE_INSTEAD_OF_CLONE : ICloningStrategy.Strategy.IGNORE);
+		Request src = request(1, 1);
+		src.config = new Config();
+		Request clone = strategies.deepClone(src);
+		assertSame(src.config, clone.config);
+		try {
+			strategies.release(clone);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		assertEquals("c", src.config.value);
+
+		Cloner fast = new Cloner();
+		fast.setRecycling(4);
+		fast.registerFastCloner(Config.class, (t, cloner, clones) -> t);
+		Request c = fast.deepClone(src);
+		try {
+			fast.release(c);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		assertEquals("c", src.config.value);
+		fast.unregisterFastCloner(Config.class);
+		fast.release(fast.deepClone(src));
+	}
+}
@@ -0,0 +1,178 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.Cloner;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestRefreshClone {
+	private final Cloner cloner = new Cloner();
+
+	static class Entity {
+		final long id;
+		double x;
+		String name;
+		Entity target;
+		int[] stats = {1, 2};
+		final List<Entity> children = new ArrayList<>();
+
+		Entity(long id) {
+			this.id = id;
+			this.name = "e" + id;
+		}
+	}
+
+	static class World {
+		long tick;
+		final Map<Long, Entity> entities = new HashMap<>();
+		final Map<String, Entity> byName = new LinkedHashMap<>();
+		Entity[] zones = new Entity[3];
+	}
+
+	private static World world() {
+		World w = new World();
+		for (long i = 0; i < 20; i++) {
+			Entity e = new Entity(i);
+			w.entities.put(i, e);
+			w.byName.put(e.name, e);
+		}
+		w.entities.get(1L).children.add(w.entities.get(2L));
+		w.entities.get(2L).target = w.entities.get(1L);
+		w.zones[0] = w.entities.get(3L);
+		return w;
+	}
+
+	@Test
+	public void unchangedGraphIsReused() {
+		World w = world();
+		World previous = cloner.deepClone(w);
+		assertSame(previous, cloner.refreshClone(w, previous));
+	}
+
+	@Test
+	public void primitivesAreComparedByValue() {
+		World w = world();
+		w.entities.get(4L).x = Double.NaN;
+		World previous = cloner.deepClone(w);
+		// like Double.equals, NaN equals NaN
+		assertSame(previous, cloner.refreshClone(w, previous));
+		w.entities.get(4L).x = -0.0;
+		World refreshed = cloner.refreshClone(w, previous);
+		assertNotSame(previous.entities.get(4L), refreshed.entities.get(4L));
+		w.tick = 1;
+		assertNotSame(refreshed, cloner.refreshClone(w, refreshed));
+	}
+
+	@Test
+	public void onlyChangedPartsAreCloned() {
+		World w = world();
+		World previous = cloner.deepClone(w);
+		w.entities.get(5L).x = 1.5;
+		World refreshed = cloner.refreshClone(w, previous);
+
+		assertNotSame(previous, refreshed);
+		assertNotSame(previous.entities, refreshed.entities);
+		assertNotSame(previous.entities.get(5L), refreshed.entities.get(5L));
+		assertEquals(1.5, refreshed.entities.get(5L).x, 0);
+		assertEquals(0, previous.entities.get(5L).x, 0);
+		assertSame(previous.entities.get(6L), refreshed.entities.get(6L));
+		assertSame(previous.entities.get(1L), refreshed.entities.get(1L));
+		assertSame(refreshed.entities.get(1L), refreshed.entities.get(2L).target);
+		// the LinkedHashMap references the changed entity too
+		assertNotSame(previous.byName, refreshed.byName);
+		assertSame(refreshed.entities.get(5L), refreshed.byName.get("e5"));
+		assertSame(previous.zones, refreshed.zones);
+		assertNotSame(w.entities.get(5L), refreshed.entities.get(5L));
+	}
+
+	@Test
+	public void changesPropagateThroughCycles() {
+		World w = world();
+		World previous = cloner.deepClone(w);
+		w.entities.get(2L).stats[1] = 7;
+		World refreshed = cloner.refreshClone(w, previous);
+		Entity one = refreshed.entities.get(1L);
+		Entity two = refreshed.entities.get(2L);
+		assertNotSame(previous.entities.get(2L), two);
+		assertNotSame(previous.entities.get(1L), one);
+		assertSame(two, one.children.get(0));
+		assertSame(one, two.target);
+		assertEquals(7, two.stats[1]);
+		assertEquals(2, previous.entities.get(2L).stats[1]);
+	}
+
+	@Test
+	public void structuralChanges() {
+		World w = world();
+		World previous = cloner.deepClone(w);
+		Entity added = new Entity(100);
+		w.entities.put(100L, added);
+		w.entities.get(4L).target = w.entities.get(7L);
+		w.entities.get(2L).target = null;
+		w.zones[1] = w.entities.get(3L);
+		w.byName.remove("e0");
+		w.byName.put("e0", w.entities.get(0L));
+		w.entities.get(8L).name = "renamed";
+		World refreshed = cloner.refreshClone(w, previous);
+
+		assertEquals(21, refreshed.entities.size());
+		assertNotSame(added, refreshed.entities.get(100L));
+		assertSame(refreshed.entities.get(7L), refreshed.entities.get(4L).target);
+		assertSame(previous.entities.get(7L), refreshed.entities.get(7L));
+		assertNull(refreshed.entities.get(2L).target);
+		assertSame(refreshed.zones[0], refreshed.zones[1]);
+		assertEquals(List.copyOf(w.byName.keySet()), List.copyOf(refreshed.byName.keySet()));
+		assertEquals("renamed", refreshed.entities.get(8L).name);
+		assertEquals("e8", previous.entities.get(8L).name);
+		assertEquals(List.copyOf(previous.byName.keySet()), List.copyOf(world().byName.keySet()));
+
+		World again = cloner.refreshClone(w, refreshed);
+		assertSame(refreshed, again);
+	}
+
+	@Test
+	public void previousCloneOfAnotherShape() {
+		World w = world();
+		World other = world();
+		other.entities.clear();
+		World refreshed = cloner.refreshClone(w, other);
+		assertEquals(20, refreshed.entities.size());
+		assertNotSame(other.entities, refreshed.entities);
+		assertNotSame(w, cloner.refreshClone(w, null));
+		assertNull(cloner.refreshClone(null, other));
+		// the original itself is no previous clone
+		World self = cloner.refreshClone(w, w);
+		assertNotSame(w, self);
+		assertNotSame(w.entities.get(1L), self.entities.get(1L));
+	}
+
+	static class Nullable {
+		final Set<String> set = new HashSet<>(Arrays.asList(null, "a"));
+		final Map<String, String> map = new HashMap<>();
+	}
+
+	@Test
+	public void nullElements() {
+		Cloner compact = new Cloner();
+		compact.setCompactImmutableCollections(true);
+		Nullable n = new Nullable();
+		n.map.put(null, "x");
+		n.map.put("a", "y");
+		Nullable previous = compact.deepClone(n);
+		assertSame(previous, compact.refreshClone(n, previous));
+		n.set.add("b");
+		n.map.put(null, "z");
+		Nullable refreshed = compact.refreshClone(n, previous);
+		assertEquals(n.set, refreshed.set);
+		assertEquals(n.map, refreshed.map);
+	}
+}
@@ -0,0 +1,136 @@
+package com.rits.tests.cloning;
+
+import com.rits.cloning.CloneAsTree;
+import com.rits.cloning.Cloner;
+import com.rits.cloning.CloningException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestTreeCloning {
+
+	static class Item {
+		String name;
+		int[] values;
+		final List<Item> children = new ArrayList<>();
+
+		Item(String name, int... values) {
+			this.name = name;
+			this.values = values;
+		}
+	}
+
+	@CloneAsTree
+	static class Message {
+		Item body;
+		Object lock;
+	}
+
+	static class SubMessage extends Message {
+	}
+
+	private static final Object LOCK = new Object();
+
+	private Item tree() {
+		Item root = new Item("root", 1, 2);
+		for (int i = 0; i < 3; i++) {
+			Item child = new Item("child" + i, i);
+			child.children.add(new Item("leaf" + i));
+			root.children.add(child);
+		}
+		return root;
+	}
+
+	private void assertTree(Item o, Item c) {
+		assertNotSame(o, c);
+		assertEquals(o.name, c.name);
+		assertNotSame(o.values, c.values);
+		assertArrayEquals(o.values, c.values);
+		assertNotSame(o.children, c.children);
+		assertEquals(o.children.size(), c.children.size());
+		for (int i = 0; i < o.children.size(); i++) {
+			assertTree(o.children.get(i), c.children.get(i));
+		}
+	}
+
+	@Test
+	public void deepCloneTree() {
+		Cloner cloner = new Cloner();
+		Item o = tree();
+		assertTree(o, cloner.deepCloneTree(o));
+		cloner.setIterative(true);
+		assertTree(o, cloner.deepCloneTree(o));
+	}
+
+	@Test
+	public void sharedReferencesAreNotTracked() {
+		Cloner cloner = new Cloner();
+		Item o = tree();
+		o.children.get(1).values = o.values;
+		Item c = cloner.deepCloneTree(o);
+		assertArrayEquals(c.values, c.children.get(1).values);
+		assertNotSame(c.values, c.children.get(1).values);
+		// deepClone still tracks them
+		c = cloner.deepClone(o);
+		assertSame(c.values, c.children.get(1).values);
+	}
+
+	@Test
+	public void annotatedRoots() {
+		Cloner cloner = new Cloner();
+		cloner.registerConstant(LOCK);
+		Message m = new SubMessage();
+		m.body = tree();
+		m.lock = LOCK;
+		m.body.children.get(0).values = m.body.values;
+		Message c = cloner.deepClone(m);
+		assertTrue(c instanceof SubMessage);
+		assertTree(m.body, c.body);
+		assertNotSame(c.body.values, c.body.children.get(0).values);
+		assertSame(LOCK, c.lock);
+	}
+
+	@Test
+	public void verify() {
+		Cloner cloner = new Cloner();
+		cloner.setVerifyTrees(true);
+		Item o = tree();
+		assertTree(o, cloner.deepCloneTree(o));
+		o.children.get(2).children.add(o);
+		try {
+			cloner.deepCloneTree(o);
+			fail("cycle not detected");
+		} catch (CloningException e) {
+			// expected
+		}
+		o.children.get(2).children.clear();
+		o.children.get(2).values = o.values;
+		cloner.setIterative(true);
+		try {
+			cloner.deepCloneTree(o);
+			fail("shared reference not detected");
+		} catch (CloningException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void iterativeCyclesFail() {
+		Cloner cloner = new Cloner();
+		cloner.setIterative(true);
+		Item o = tree();
+		o.children.get(2).children.add(o);
+		try {
+			cloner.deepCloneTree(o);
+			fail("cycle not detected");
+		} catch (CloningException e) {
+			// expected
+		}
+		// the context is reused for the next tree
+		o.children.get(2).children.remove(o);
+		assertTree(o, cloner.deepCloneTree(o));
+	}
+}